@@ -0,0 +1,73 @@
+package com.clevergump.progresscircle.benchmark;
+
+import com.clevergump.progresscircle.library.core.ProgressInputStream;
+import com.clevergump.progresscircle.library.core.ProgressSink;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 比较直接读取和通过 {@link ProgressInputStream} 读取内存中的 1MB 数据, 也就是包装本身的开销.
+ * 数据在内存中, 没有真实的 I/O, 所以这是开销最明显的情况.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ProgressInputStreamBenchmark {
+
+    private static final int DATA_SIZE = 1024 * 1024;
+
+    @Param({"512", "8192", "65536"})
+    public int bufferSize;
+
+    private byte[] mData;
+    private byte[] mBuffer;
+    private final ProgressSink mSink = new ProgressSink() {
+        @Override
+        public void setProgress(long progress, long maxProgress) {
+        }
+    };
+
+    @Setup
+    public void setUp() {
+        mData = new byte[DATA_SIZE];
+        mBuffer = new byte[bufferSize];
+    }
+
+    @Benchmark
+    public long raw() throws IOException {
+        return readAll(new ByteArrayInputStream(mData));
+    }
+
+    @Benchmark
+    public long wrapped() throws IOException {
+        return readAll(new ProgressInputStream(new ByteArrayInputStream(mData), mSink, DATA_SIZE));
+    }
+
+    private long readAll(InputStream in) throws IOException {
+        long total = 0;
+        int n;
+        while ((n = in.read(mBuffer)) > 0) {
+            total += n;
+        }
+        in.close();
+        return total;
+    }
+}
@@ -0,0 +1,65 @@
+package com.clevergump.progresscircle.benchmark;
+
+import com.clevergump.progresscircle.library.core.PercentLabels;
+import com.clevergump.progresscircle.library.core.ProgressMath;
+import com.clevergump.progresscircle.library.core.ProgressTextFormatter;
+import com.clevergump.progresscircle.library.core.RateTextFormatter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ProgressCircleDrawable.drawProgressPercentText() 中每一帧都要进行的文字生成.
+ * 除了对比用的字符串拼接之外, 其他几项的 gc.alloc.rate.norm 都应该是0.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ProgressLabelBenchmark {
+
+    private static final long MAX_PROGRESS = 5L * 1024 * 1024 * 1024;
+
+    // 格式化器写入文字使用的可复用数组, 和 Drawable 中的相同.
+    private final char[] mBuffer = new char[ProgressTextFormatter.MAX_TEXT_LENGTH];
+    // 每次调用都使用不同的进度, 避免 JIT 把结果当作常量.
+    private long mProgress;
+
+    @Benchmark
+    public char[] percentLabel() {
+        mProgress = (mProgress + 4093) % MAX_PROGRESS;
+        return PercentLabels.get(ProgressMath.percent(mProgress, MAX_PROGRESS));
+    }
+
+    /**
+     * 对比: 修改之前的写法, 每一帧都拼接出一个新的 String.
+     */
+    @Benchmark
+    public String percentLabelConcatBaseline() {
+        mProgress = (mProgress + 4093) % MAX_PROGRESS;
+        return (int) (mProgress * 100 / MAX_PROGRESS) + "%";
+    }
+
+    @Benchmark
+    public int rateLabel() {
+        mProgress = (mProgress + 4093) % MAX_PROGRESS;
+        return RateTextFormatter.formatRate(mProgress, mBuffer, 0);
+    }
+
+    @Benchmark
+    public int remainingTimeLabel() {
+        mProgress = (mProgress + 4093) % 3600000;
+        return RateTextFormatter.formatRemainingTime(mProgress, mBuffer, 0);
+    }
+}
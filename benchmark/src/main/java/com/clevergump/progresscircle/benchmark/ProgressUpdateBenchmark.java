@@ -0,0 +1,225 @@
+package com.clevergump.progresscircle.benchmark;
+
+import com.clevergump.progresscircle.library.core.AtomicProgress;
+import com.clevergump.progresscircle.library.core.ProgressState;
+import com.clevergump.progresscircle.library.core.ProgressUpdateBuffer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 工作线程跨线程更新进度的路径, 1 ~ 16 个写入线程同时更新, 另外有一个线程模拟主线程读取.
+ * <ul>
+ * <li>circle: 和 ProgressCircle.setProgress() 在工作线程中的路径相同. CAS 整体更新 {@link AtomicProgress},
+ * 进度有变化并且还没有待执行的刷新任务时才投递一次 (这里只记录, 不真正投递).</li>
+ * <li>group: 和 ProgressCircleGroup.publish() 的路径相同, 每个写入线程更新自己的 id.</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProgressUpdateBenchmark {
+
+    private static final long MAX_PROGRESS = Long.MAX_VALUE;
+    private static final int GROUP_CAPACITY = 64;
+
+    /**
+     * 同一组写入线程和读取线程共用的数据.
+     */
+    @State(Scope.Group)
+    public static class Shared {
+        AtomicProgress progress;
+        AtomicBoolean updateScheduled;
+        ProgressUpdateBuffer buffer;
+        ProgressUpdateBuffer.Receiver receiver;
+        long received;
+
+        @Setup
+        public void setUp() {
+            progress = new AtomicProgress(0, MAX_PROGRESS);
+            updateScheduled = new AtomicBoolean(false);
+            buffer = new ProgressUpdateBuffer(GROUP_CAPACITY);
+            receiver = new ProgressUpdateBuffer.Receiver() {
+                @Override
+                public void onProgress(int id, long progress, long maxProgress) {
+                    received += progress;
+                }
+            };
+        }
+    }
+
+    /**
+     * 每个写入线程自己的数据.
+     */
+    @State(Scope.Thread)
+    public static class Writer {
+        private static final AtomicInteger sNextId = new AtomicInteger();
+        int id;
+        long progress;
+
+        @Setup
+        public void setUp() {
+            id = sNextId.getAndIncrement() % GROUP_CAPACITY;
+        }
+    }
+
+    /*--------------------------- circle ---------------------------------*/
+
+    @Benchmark
+    @Group("circle_1")
+    @GroupThreads(1)
+    public boolean circle_1_write(Shared shared, Writer writer) {
+        return circleWrite(shared, writer);
+    }
+
+    @Benchmark
+    @Group("circle_1")
+    @GroupThreads(1)
+    public ProgressState circle_1_read(Shared shared) {
+        return circleRead(shared);
+    }
+
+    @Benchmark
+    @Group("circle_2")
+    @GroupThreads(2)
+    public boolean circle_2_write(Shared shared, Writer writer) {
+        return circleWrite(shared, writer);
+    }
+
+    @Benchmark
+    @Group("circle_2")
+    @GroupThreads(1)
+    public ProgressState circle_2_read(Shared shared) {
+        return circleRead(shared);
+    }
+
+    @Benchmark
+    @Group("circle_4")
+    @GroupThreads(4)
+    public boolean circle_4_write(Shared shared, Writer writer) {
+        return circleWrite(shared, writer);
+    }
+
+    @Benchmark
+    @Group("circle_4")
+    @GroupThreads(1)
+    public ProgressState circle_4_read(Shared shared) {
+        return circleRead(shared);
+    }
+
+    @Benchmark
+    @Group("circle_8")
+    @GroupThreads(8)
+    public boolean circle_8_write(Shared shared, Writer writer) {
+        return circleWrite(shared, writer);
+    }
+
+    @Benchmark
+    @Group("circle_8")
+    @GroupThreads(1)
+    public ProgressState circle_8_read(Shared shared) {
+        return circleRead(shared);
+    }
+
+    @Benchmark
+    @Group("circle_16")
+    @GroupThreads(16)
+    public boolean circle_16_write(Shared shared, Writer writer) {
+        return circleWrite(shared, writer);
+    }
+
+    @Benchmark
+    @Group("circle_16")
+    @GroupThreads(1)
+    public ProgressState circle_16_read(Shared shared) {
+        return circleRead(shared);
+    }
+
+    /*--------------------------- group ---------------------------------*/
+
+    @Benchmark
+    @Group("group_1")
+    @GroupThreads(1)
+    public boolean group_1_write(Shared shared, Writer writer) {
+        return groupWrite(shared, writer);
+    }
+
+    @Benchmark
+    @Group("group_1")
+    @GroupThreads(1)
+    public int group_1_read(Shared shared) {
+        return shared.buffer.drain(shared.receiver);
+    }
+
+    @Benchmark
+    @Group("group_4")
+    @GroupThreads(4)
+    public boolean group_4_write(Shared shared, Writer writer) {
+        return groupWrite(shared, writer);
+    }
+
+    @Benchmark
+    @Group("group_4")
+    @GroupThreads(1)
+    public int group_4_read(Shared shared) {
+        return shared.buffer.drain(shared.receiver);
+    }
+
+    @Benchmark
+    @Group("group_16")
+    @GroupThreads(16)
+    public boolean group_16_write(Shared shared, Writer writer) {
+        return groupWrite(shared, writer);
+    }
+
+    @Benchmark
+    @Group("group_16")
+    @GroupThreads(1)
+    public int group_16_read(Shared shared) {
+        return shared.buffer.drain(shared.receiver);
+    }
+
+    /*--------------------------- 私有方法 ---------------------------------*/
+
+    /**
+     * 和 ProgressCircle.updateProgress() 以及 scheduleInvalidate() 在工作线程中的路径相同.
+     *
+     * @return 是否需要向主线程投递刷新任务
+     */
+    private static boolean circleWrite(Shared shared, Writer writer) {
+        writer.progress++;
+        return shared.progress.set(writer.progress, MAX_PROGRESS) && shared.updateScheduled.compareAndSet(false, true);
+    }
+
+    /**
+     * 和主线程中执行的刷新任务相同: 先清除标记, 再读取最新的进度.
+     */
+    private static ProgressState circleRead(Shared shared) {
+        if (!shared.updateScheduled.get()) {
+            return null;
+        }
+        shared.updateScheduled.set(false);
+        return shared.progress.get();
+    }
+
+    private static boolean groupWrite(Shared shared, Writer writer) {
+        writer.progress++;
+        return shared.buffer.publish(writer.id, writer.progress, MAX_PROGRESS);
+    }
+}
@@ -0,0 +1,63 @@
+package com.clevergump.progresscircle.benchmark;
+
+import com.clevergump.progresscircle.library.core.ProgressMath;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ProgressCircleDrawable.drawInnerPie() 中每一帧都要进行的扇形角度计算.
+ * 分别测试普通的百分比进度和以字节为单位的大文件进度 (需要移位避免乘法溢出), 并和直接用 float 计算的写法对比.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SweepAngleBenchmark {
+
+    // 以字节为单位的 5GB 文件
+    private static final long LARGE_MAX = 5L * 1024 * 1024 * 1024;
+
+    // 每次调用都使用不同的进度, 避免 JIT 把结果当作常量.
+    private long mProgress;
+
+    @Benchmark
+    public float percentProgress() {
+        mProgress = (mProgress + 1) % 101;
+        return ProgressMath.sweepAngle(mProgress, 100);
+    }
+
+    @Benchmark
+    public float largeFileProgress() {
+        mProgress = (mProgress + 4093) % LARGE_MAX;
+        return ProgressMath.sweepAngle(mProgress, LARGE_MAX);
+    }
+
+    @Benchmark
+    public float hugeProgressNeedsShift() {
+        // 乘以 360 << 16 之后会溢出, 需要先移位.
+        long max = Long.MAX_VALUE - 1;
+        mProgress = (mProgress + 0x7fffffffffffL) & (Long.MAX_VALUE >> 1);
+        return ProgressMath.sweepAngle(mProgress, max);
+    }
+
+    /**
+     * 对比: 直接用 float 计算. 更快, 但进度超过 2^24 时不再精确.
+     */
+    @Benchmark
+    public float floatBaseline() {
+        mProgress = (mProgress + 4093) % LARGE_MAX;
+        return 360f * mProgress / LARGE_MAX;
+    }
+}
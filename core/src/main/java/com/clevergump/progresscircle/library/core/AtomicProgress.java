@@ -0,0 +1,113 @@
+package com.clevergump.progresscircle.library.core;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 线程安全的 (当前进度, 最大进度) 组合.
+ * <p>
+ * 两个数值保存在同一个不可修改的 {@link ProgressState} 对象中, 通过 CAS 整体替换,
+ * 所以读取方拿到的永远是同一次更新写入的一对数值, 不会出现 "新的进度 + 旧的最大进度" 这样的撕裂状态,
+ * 并且整个过程不需要加锁. 读取不会创建任何对象, 只有数值真正变化的写入才会创建一个新的状态对象.
+ */
+public final class AtomicProgress {
+
+    // 当前的 (当前进度, 最大进度)
+    private final AtomicReference<ProgressState> mState;
+    // 是否只允许进度单调递增. 开启后, 最大进度不变时比当前进度小的更新会被直接丢弃.
+    private volatile boolean mMonotonic;
+
+    public AtomicProgress(long progress, long maxProgress) {
+        mState = new AtomicReference<ProgressState>(new ProgressState(progress, maxProgress));
+    }
+
+    /**
+     * 获取当前状态的快照.
+     *
+     * @return
+     */
+    public ProgressState get() {
+        return mState.get();
+    }
+
+    /**
+     * 同时设置当前进度和最大进度.
+     *
+     * @param progress    当前进度
+     * @param maxProgress 最大进度, 不大于0表示总大小未知.
+     * @return 如果数值没有变化, 或者因为单调递增模式而被丢弃, 返回 false.
+     */
+    public boolean set(long progress, long maxProgress) {
+        ProgressState update = null;
+        while (true) {
+            ProgressState current = mState.get();
+            if (current.matches(progress, maxProgress)) {
+                return false;
+            }
+            if (mMonotonic && current.getMaxProgress() == maxProgress && current.getProgress() > progress) {
+                return false;
+            }
+            if (update == null) {
+                update = new ProgressState(progress, maxProgress);
+            }
+            if (mState.compareAndSet(current, update)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 只设置当前进度, 最大进度保持不变.
+     *
+     * @param progress 当前进度
+     * @return 如果数值没有变化, 超过了最大进度, 或者因为单调递增模式而被丢弃, 返回 false.
+     * 总大小未知时不会因为超过最大进度而被丢弃.
+     */
+    public boolean setProgress(long progress) {
+        while (true) {
+            ProgressState current = mState.get();
+            long maxProgress = current.getMaxProgress();
+            if (!current.isIndeterminate() && progress > maxProgress) {
+                return false;
+            }
+            if (current.getProgress() == progress) {
+                return false;
+            }
+            if (mMonotonic && current.getProgress() > progress) {
+                return false;
+            }
+            if (mState.compareAndSet(current, new ProgressState(progress, maxProgress))) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 将当前进度清零, 不受单调递增模式的限制.
+     *
+     * @return 如果当前进度本来就是0, 返回 false.
+     */
+    public boolean reset() {
+        while (true) {
+            ProgressState current = mState.get();
+            if (current.getProgress() == 0) {
+                return false;
+            }
+            if (mState.compareAndSet(current, new ProgressState(0, current.getMaxProgress()))) {
+                return true;
+            }
+        }
+    }
+
+    public boolean isMonotonic() {
+        return mMonotonic;
+    }
+
+    /**
+     * 设置是否只允许进度单调递增. 多个线程池线程乱序上报进度时, 开启后可以丢弃迟到的旧进度.
+     *
+     * @param monotonic
+     */
+    public void setMonotonic(boolean monotonic) {
+        mMonotonic = monotonic;
+    }
+}
@@ -0,0 +1,273 @@
+package com.clevergump.progresscircle.library.core;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+
+/**
+ * 在进度越过预先登记的百分比 (里程碑), 完成或者被清零时回调, 代替轮询 getProgress()/getMaxProgress().
+ * <p>
+ * 里程碑按从小到大的顺序保存, 只记录下一个还没有越过的里程碑. 对于当前的最大进度, 预先算出下一个里程碑和上一个里程碑对应的进度值,
+ * 绝大多数更新只需要和这两个值比较一次, 不加锁, 也不创建任何对象. 只有越过里程碑, 完成, 回退或者最大进度变化时才加锁重新计算.
+ * <p>
+ * 事件先按发生的顺序保存起来, 再通过指定的 {@link Executor} 成批地回调: 两次回调之间发生的所有事件在同一次执行中依次回调,
+ * 同一时刻最多只有一个待执行的回调任务. 回调的先后顺序和事件发生的顺序相同, 并且不会同时在两个线程中回调.
+ */
+public final class MilestoneTracker {
+
+    /**
+     * 里程碑, 完成和清零事件的回调. 在构造时指定的 {@link Executor} 中调用.
+     */
+    public interface Listener {
+
+        /**
+         * 进度从低于一个里程碑变为不低于它. 一次更新越过了多个里程碑时, 从小到大依次回调.
+         *
+         * @param tracker
+         * @param percent 登记的百分比
+         */
+        void onMilestone(MilestoneTracker tracker, int percent);
+
+        /**
+         * 进度达到了最大进度.
+         *
+         * @param tracker
+         */
+        void onCompleted(MilestoneTracker tracker);
+
+        /**
+         * 进度被清零. 之后所有的里程碑和完成事件都会重新回调.
+         *
+         * @param tracker
+         */
+        void onReset(MilestoneTracker tracker);
+    }
+
+    // 事件的编码: 大于0的值是里程碑的百分比, 其余是下面两种事件.
+    private static final int EVENT_COMPLETED = -1;
+    private static final int EVENT_RESET = -2;
+    // 待回调事件的初始容量
+    private static final int INITIAL_EVENT_CAPACITY = 16;
+    // 最大进度超过这个值时, ProgressMath.percent() 会先移位再计算, 无法精确地反推出里程碑对应的进度值, 每次更新都重新计算百分比.
+    private static final long MAX_EXACT_MAX_PROGRESS = Long.MAX_VALUE / PercentLabels.MAX_PERCENT;
+
+    // 从小到大排列的里程碑, 范围 1 ~ 99.
+    private final int[] mThresholds;
+    private final Listener mListener;
+    private final Executor mExecutor;
+
+    // 下一个还没有越过的里程碑在 mThresholds 中的位置
+    private int mNextIndex;
+    // 是否已经完成
+    private boolean mCompleted;
+    // 下面三个值是无锁判断时使用的快速路径: 最大进度等于 mBoundaryMaxProgress, 并且进度在 [mLowerBoundary, mUpperBoundary)
+    // 之间时, 不会有任何事件. 修改时先写两个边界, 最后写最大进度; 读取时先读最大进度, 所以读到新的最大进度时一定也能读到新的边界.
+    private volatile long mLowerBoundary = Long.MAX_VALUE;
+    private volatile long mUpperBoundary = Long.MIN_VALUE;
+    private volatile long mBoundaryMaxProgress = -1;
+
+    // 还没有回调的事件
+    private int[] mPendingEvents = new int[INITIAL_EVENT_CAPACITY];
+    private int mPendingCount;
+    // 正在回调的事件, 和 mPendingEvents 交替使用.
+    private int[] mDeliveringEvents = new int[INITIAL_EVENT_CAPACITY];
+    // 是否已经安排了回调任务. 回调任务把事件全部回调完之后才会清除.
+    private boolean mDeliveryScheduled;
+    // 回调所有待回调事件的任务
+    private final Runnable mDeliverRunnable = new Runnable() {
+        @Override
+        public void run() {
+            deliverPendingEvents();
+        }
+    };
+
+    /**
+     * @param thresholdPercents 里程碑的百分比, 范围 1 ~ 99, 可以是任意顺序, 重复的会被合并. 100% 通过
+     *                          {@link Listener#onCompleted(MilestoneTracker)} 回调.
+     * @param listener
+     * @param executor          执行回调的 Executor. 在 Android 中可以使用 ProgressCircle.getMainThreadExecutor() 在主线程中回调.
+     */
+    public MilestoneTracker(int[] thresholdPercents, Listener listener, Executor executor) {
+        if (listener == null || executor == null) {
+            throw new NullPointerException("Listener and executor can't be null");
+        }
+        int[] thresholds = thresholdPercents.clone();
+        Arrays.sort(thresholds);
+        int count = 0;
+        for (int threshold : thresholds) {
+            if (threshold <= 0 || threshold >= PercentLabels.MAX_PERCENT) {
+                throw new IllegalArgumentException("Milestone must be between 1 and 99: " + threshold);
+            }
+            if (count == 0 || thresholds[count - 1] != threshold) {
+                thresholds[count++] = threshold;
+            }
+        }
+        // Arrays.copyOf() 在 Android 2.2 中还不存在.
+        mThresholds = new int[count];
+        System.arraycopy(thresholds, 0, mThresholds, 0, count);
+        mListener = listener;
+        mExecutor = executor;
+    }
+
+    /**
+     * 更新进度. 可以在任意线程中调用, 越过里程碑, 完成或者回退时才会加锁.
+     *
+     * @param progress    当前进度
+     * @param maxProgress 最大进度, 不大于0表示总大小未知, 此时不会有任何事件.
+     */
+    public void update(long progress, long maxProgress) {
+        if (maxProgress == mBoundaryMaxProgress && progress >= mLowerBoundary && progress < mUpperBoundary) {
+            return;
+        }
+        boolean schedule;
+        synchronized (this) {
+            schedule = advance(progress, maxProgress);
+        }
+        if (schedule) {
+            mExecutor.execute(mDeliverRunnable);
+        }
+    }
+
+    /**
+     * 把进度清零: 回调 {@link Listener#onReset(MilestoneTracker)}, 之后所有的里程碑和完成事件都会重新回调. 可以在任意线程中调用.
+     */
+    public void reset() {
+        boolean schedule;
+        synchronized (this) {
+            mNextIndex = 0;
+            mCompleted = false;
+            schedule = enqueue(EVENT_RESET);
+            updateBoundaries(mBoundaryMaxProgress);
+        }
+        if (schedule) {
+            mExecutor.execute(mDeliverRunnable);
+        }
+    }
+
+    /**
+     * 获取下一个还没有越过的里程碑.
+     *
+     * @return 所有里程碑都已经越过时返回100.
+     */
+    public synchronized int getNextMilestone() {
+        return mNextIndex < mThresholds.length ? mThresholds[mNextIndex] : PercentLabels.MAX_PERCENT;
+    }
+
+    /**
+     * 根据新的进度移动里程碑的位置, 并记录事件. 只能在持有锁时调用.
+     *
+     * @return 是否需要安排回调任务
+     */
+    private boolean advance(long progress, long maxProgress) {
+        boolean schedule = false;
+        if (maxProgress > 0) {
+            int percent = ProgressMath.percent(progress, maxProgress);
+            // 进度回退 (例如重新开始但没有调用 reset()) 时, 越过的里程碑重新生效, 但不回调.
+            while (mNextIndex > 0 && percent < mThresholds[mNextIndex - 1]) {
+                mNextIndex--;
+            }
+            boolean completed = progress >= maxProgress;
+            if (mCompleted && !completed) {
+                mCompleted = false;
+            }
+            while (mNextIndex < mThresholds.length && percent >= mThresholds[mNextIndex]) {
+                schedule |= enqueue(mThresholds[mNextIndex]);
+                mNextIndex++;
+            }
+            if (completed && !mCompleted) {
+                mCompleted = true;
+                schedule |= enqueue(EVENT_COMPLETED);
+            }
+        }
+        updateBoundaries(maxProgress);
+        return schedule;
+    }
+
+    /**
+     * 根据当前的位置计算快速路径使用的两个边界. 只能在持有锁时调用.
+     *
+     * @param maxProgress
+     */
+    private void updateBoundaries(long maxProgress) {
+        long lower;
+        long upper;
+        if (maxProgress <= 0) {
+            // 总大小未知时没有任何事件, 直到最大进度变化.
+            lower = Long.MIN_VALUE;
+            upper = Long.MAX_VALUE;
+        } else if (maxProgress > MAX_EXACT_MAX_PROGRESS) {
+            // 无法精确反推, 每次都加锁计算.
+            lower = Long.MAX_VALUE;
+            upper = Long.MIN_VALUE;
+        } else if (mCompleted) {
+            lower = maxProgress;
+            upper = Long.MAX_VALUE;
+        } else {
+            lower = mNextIndex > 0 ? thresholdProgress(mThresholds[mNextIndex - 1], maxProgress) : Long.MIN_VALUE;
+            upper = mNextIndex < mThresholds.length
+                    ? thresholdProgress(mThresholds[mNextIndex], maxProgress) : maxProgress;
+        }
+        mLowerBoundary = lower;
+        mUpperBoundary = upper;
+        mBoundaryMaxProgress = maxProgress;
+    }
+
+    /**
+     * 计算百分比达到 percent 时的最小进度值, 即 ceil(percent * maxProgress / 100). 先除后乘, 不会溢出.
+     */
+    private static long thresholdProgress(int percent, long maxProgress) {
+        long quotient = maxProgress / PercentLabels.MAX_PERCENT;
+        long remainder = maxProgress % PercentLabels.MAX_PERCENT;
+        return quotient * percent + (remainder * percent + PercentLabels.MAX_PERCENT - 1) / PercentLabels.MAX_PERCENT;
+    }
+
+    /**
+     * 记录一个事件. 只能在持有锁时调用. 容量不够时扩容, 只有事件很多又来不及回调时才会发生.
+     *
+     * @return 是否需要安排回调任务
+     */
+    private boolean enqueue(int event) {
+        if (mPendingCount == mPendingEvents.length) {
+            int[] events = new int[mPendingCount * 2];
+            System.arraycopy(mPendingEvents, 0, events, 0, mPendingCount);
+            mPendingEvents = events;
+        }
+        mPendingEvents[mPendingCount++] = event;
+        if (mDeliveryScheduled) {
+            return false;
+        }
+        mDeliveryScheduled = true;
+        return true;
+    }
+
+    /**
+     * 依次回调所有事件, 直到没有新的事件. 回调时不持有锁, 回调中可以更新进度.
+     */
+    private void deliverPendingEvents() {
+        while (true) {
+            int[] events;
+            int count;
+            synchronized (this) {
+                count = mPendingCount;
+                if (count == 0) {
+                    mDeliveryScheduled = false;
+                    return;
+                }
+                events = mPendingEvents;
+                mPendingEvents = mDeliveringEvents.length >= events.length
+                        ? mDeliveringEvents : new int[events.length];
+                mDeliveringEvents = events;
+                mPendingCount = 0;
+            }
+            for (int i = 0; i < count; i++) {
+                int event = events[i];
+                if (event == EVENT_COMPLETED) {
+                    mListener.onCompleted(this);
+                } else if (event == EVENT_RESET) {
+                    mListener.onReset(this);
+                } else {
+                    mListener.onMilestone(this, event);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.clevergump.progresscircle.library.core;
+
+/**
+ * 把 (当前进度, 最大进度) 打包到一个 long 值中, 这样一次写入就能整体更新两个数值, 读取方也不会读到撕裂的数值.
+ * <p>
+ * 高6位是右移的位数, 接下来的29位是右移后的最大进度, 最低的29位是右移后的当前进度. 两个数值都不超过 2^29 - 1
+ * (约5亿) 时不需要右移, 数值是精确的; 更大时两者右移相同的位数, 损失的只是低位, 两者的比例仍然精确到 1/2^29.
+ */
+public final class PackedProgress {
+
+    // 表示没有数值. 正常打包的结果右移位数不会超过34, 不会和这个值相同.
+    public static final long NONE = -1;
+
+    // 每个数值占用的位数
+    private static final int VALUE_BITS = 29;
+    // 每个数值的掩码
+    private static final long VALUE_MASK = (1L << VALUE_BITS) - 1;
+    // 右移位数在打包后的值中的偏移
+    private static final int SHIFT_OFFSET = VALUE_BITS * 2;
+
+    private PackedProgress() {
+    }
+
+    /**
+     * 打包.
+     *
+     * @param progress    当前进度, 不能小于0.
+     * @param maxProgress 最大进度, 不能小于0.
+     * @return
+     */
+    public static long pack(long progress, long maxProgress) {
+        long larger = Math.max(progress, maxProgress);
+        int shift = 0;
+        while ((larger >> shift) > VALUE_MASK) {
+            shift++;
+        }
+        return ((long) shift << SHIFT_OFFSET) | ((maxProgress >> shift) << VALUE_BITS) | (progress >> shift);
+    }
+
+    /**
+     * 从打包后的值中解析出当前进度.
+     *
+     * @param packed
+     * @return
+     */
+    public static long progressOf(long packed) {
+        return (packed & VALUE_MASK) << shiftOf(packed);
+    }
+
+    /**
+     * 从打包后的值中解析出最大进度.
+     *
+     * @param packed
+     * @return
+     */
+    public static long maxOf(long packed) {
+        return ((packed >>> VALUE_BITS) & VALUE_MASK) << shiftOf(packed);
+    }
+
+    private static int shiftOf(long packed) {
+        return (int) (packed >>> SHIFT_OFFSET);
+    }
+}
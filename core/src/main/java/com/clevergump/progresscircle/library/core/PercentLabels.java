@@ -0,0 +1,50 @@
+package com.clevergump.progresscircle.library.core;
+
+/**
+ * 0% ~ 100% 共101个百分比文字的常量表.
+ * <p>
+ * 绘制时直接使用表中的 char[], 避免每一帧都通过字符串拼接生成新的 String 对象.
+ * 表中的数组是共享的, 调用方不能修改其内容.
+ */
+public final class PercentLabels {
+
+    // 百分比的最大值
+    public static final int MAX_PERCENT = 100;
+
+    private static final char[][] LABELS = new char[MAX_PERCENT + 1][];
+
+    static {
+        for (int percent = 0; percent <= MAX_PERCENT; percent++) {
+            LABELS[percent] = (percent + "%").toCharArray();
+        }
+    }
+
+    private PercentLabels() {
+    }
+
+    /**
+     * 获取指定百分比对应的文字. 返回的数组是共享的, 不能修改.
+     *
+     * @param percent 百分比, 范围 [0, 100], 超出范围时按边界值处理.
+     * @return
+     */
+    public static char[] get(int percent) {
+        return LABELS[clamp(percent)];
+    }
+
+    /**
+     * 将百分比限制在 [0, 100] 范围内.
+     *
+     * @param percent
+     * @return
+     */
+    public static int clamp(int percent) {
+        if (percent < 0) {
+            return 0;
+        }
+        if (percent > MAX_PERCENT) {
+            return MAX_PERCENT;
+        }
+        return percent;
+    }
+}
@@ -0,0 +1,339 @@
+package com.clevergump.progresscircle.library.core;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 把多个并发的进度来源合并成一个总进度, 例如一个相册中由线程池并行下载的所有图片. 不使用任何锁.
+ * <p>
+ * 每个来源通过 {@link #newSource(long)} 注册, 之后只更新属于自己的那一组计数器. 每组计数器之间用空白的 long 隔开,
+ * 不同线程更新不同的来源时不会竞争同一个缓存行. 读取总进度时再把所有来源的计数器加起来.
+ * <p>
+ * 总大小未知的来源在调用 {@link Source#setTotal(long)} 之前不计入总进度; 取消的来源不再计入总进度;
+ * 来源完成的先后顺序没有任何限制.
+ */
+public final class ProgressAggregator {
+
+    /**
+     * 总进度发生变化时的回调.
+     */
+    public interface Listener {
+
+        /**
+         * 上一次调用 {@link #snapshot(Snapshot)} 之后总进度第一次发生变化. 在更新进度的线程中调用,
+         * 两次读取之间不管更新了多少次都只会调用一次, 所以这里通常只需要安排一次读取.
+         *
+         * @param aggregator
+         */
+        void onProgressChanged(ProgressAggregator aggregator);
+    }
+
+    // 大小未知
+    public static final long UNKNOWN_TOTAL = -1;
+
+    // 每个来源占用的 long 的个数. 实际只用到前3个, 其余的用来把不同来源的计数器隔开到不同的缓存行中 (64字节).
+    private static final int SLOT_STRIDE = 8;
+    // 来源的计数器在数组中的偏移
+    private static final int OFFSET_PROGRESS = 0;
+    private static final int OFFSET_TOTAL = 1;
+    private static final int OFFSET_STATE = 2;
+    // 来源的状态
+    private static final long STATE_ACTIVE = 0;
+    private static final long STATE_COMPLETED = 1;
+    private static final long STATE_CANCELLED = 2;
+
+    // 所有来源的计数器. 第一个来源之前也空出一段, 避免和数组对象头所在的缓存行共用.
+    private final AtomicLongArray mSlots;
+    // 最多可以注册的来源数
+    private final int mCapacity;
+    // 已经注册的来源数
+    private final AtomicInteger mSourceCount = new AtomicInteger();
+    // 上一次读取之后是否有过变化
+    private final AtomicBoolean mChanged = new AtomicBoolean(false);
+    // 总进度变化时的回调. 添加或移除时整体替换, 通知时不需要加锁.
+    private volatile Listener[] mListeners = new Listener[0];
+
+    /**
+     * @param capacity 最多可以注册的来源数
+     */
+    public ProgressAggregator(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        mCapacity = capacity;
+        mSlots = new AtomicLongArray((capacity + 1) * SLOT_STRIDE);
+    }
+
+    /**
+     * 注册一个新的来源. 可以在任意线程中调用.
+     *
+     * @param total 这个来源的总大小, 还不知道时传入 {@link #UNKNOWN_TOTAL}.
+     * @return
+     * @throws IllegalStateException 已经注册了 capacity 个来源
+     */
+    public Source newSource(long total) {
+        int index = mSourceCount.get();
+        while (true) {
+            if (index >= mCapacity) {
+                throw new IllegalStateException("Too many sources, capacity is " + mCapacity);
+            }
+            // 用 CAS 抢占位置, 抢到之后再写入总大小. 读取的线程可能在写入之前就读到了这个来源,
+            // 此时它的进度和总大小都是0, 不影响结果.
+            if (mSourceCount.compareAndSet(index, index + 1)) {
+                break;
+            }
+            index = mSourceCount.get();
+        }
+        int base = (index + 1) * SLOT_STRIDE;
+        mSlots.set(base + OFFSET_TOTAL, total < 0 ? UNKNOWN_TOTAL : total);
+        markChanged();
+        return new Source(base);
+    }
+
+    /**
+     * 添加总进度变化时的回调. 同一个聚合器可以同时显示在多个控件中, 每个控件各自添加一个回调.
+     * 重复添加同一个回调不会有任何效果.
+     *
+     * @param listener
+     */
+    public synchronized void addListener(Listener listener) {
+        Listener[] listeners = mListeners;
+        for (Listener l : listeners) {
+            if (l == listener) {
+                return;
+            }
+        }
+        Listener[] newListeners = new Listener[listeners.length + 1];
+        System.arraycopy(listeners, 0, newListeners, 0, listeners.length);
+        newListeners[listeners.length] = listener;
+        mListeners = newListeners;
+    }
+
+    /**
+     * 移除总进度变化时的回调.
+     *
+     * @param listener
+     */
+    public synchronized void removeListener(Listener listener) {
+        Listener[] listeners = mListeners;
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == listener) {
+                Listener[] newListeners = new Listener[listeners.length - 1];
+                System.arraycopy(listeners, 0, newListeners, 0, i);
+                System.arraycopy(listeners, i + 1, newListeners, i, listeners.length - i - 1);
+                mListeners = newListeners;
+                return;
+            }
+        }
+    }
+
+    /**
+     * 读取所有来源合并后的进度. 可以在任意线程中调用, 整个过程不会创建新的对象.
+     * <p>
+     * 每个来源的计数器都是原子地读取的, 但不同来源之间不是同一时刻的数值, 所以读取的结果只是一个近似的快照,
+     * 适合用于显示. 每个来源的进度都不会超过它的总大小.
+     *
+     * @param out 用于保存结果的对象
+     */
+    public void snapshot(Snapshot out) {
+        // 先清除标记再读取, 这样读取过程中的更新一定会再触发一次回调.
+        mChanged.set(false);
+        long progress = 0;
+        long total = 0;
+        int unknownTotalSources = 0;
+        int activeSources = 0;
+        int count = mSourceCount.get();
+        for (int i = 0; i < count; i++) {
+            int base = (i + 1) * SLOT_STRIDE;
+            long state = mSlots.get(base + OFFSET_STATE);
+            if (state == STATE_CANCELLED) {
+                continue;
+            }
+            if (state == STATE_ACTIVE) {
+                activeSources++;
+            }
+            long sourceTotal = mSlots.get(base + OFFSET_TOTAL);
+            if (sourceTotal == UNKNOWN_TOTAL) {
+                unknownTotalSources++;
+                continue;
+            }
+            long sourceProgress = state == STATE_COMPLETED ? sourceTotal : mSlots.get(base + OFFSET_PROGRESS);
+            progress += Math.min(sourceProgress, sourceTotal);
+            total += sourceTotal;
+        }
+        out.mProgress = progress;
+        out.mTotal = total;
+        out.mActiveSources = activeSources;
+        out.mUnknownTotalSources = unknownTotalSources;
+    }
+
+    /**
+     * 获取已经注册的来源数, 包括已经完成和已经取消的.
+     *
+     * @return
+     */
+    public int getSourceCount() {
+        return mSourceCount.get();
+    }
+
+    private void markChanged() {
+        if (!mChanged.get() && mChanged.compareAndSet(false, true)) {
+            // 所有回调共用一个变化标记: 任何一个回调的持有者读取之后, 下一次变化会再通知所有回调.
+            for (Listener listener : mListeners) {
+                listener.onProgressChanged(this);
+            }
+        }
+    }
+
+    /**
+     * 一个进度来源. 通常只由一个线程更新, 但多个线程同时更新也是安全的.
+     * 完成或取消之后的所有更新都会被忽略.
+     */
+    public final class Source implements ProgressSink {
+
+        // 这个来源的计数器在数组中的起始位置
+        private final int mBase;
+
+        private Source(int base) {
+            mBase = base;
+        }
+
+        /**
+         * 增加进度, 例如每读取一块数据之后调用一次.
+         *
+         * @param delta 增加的字节数等
+         */
+        public void add(long delta) {
+            if (isActive()) {
+                mSlots.addAndGet(mBase + OFFSET_PROGRESS, delta);
+                markChanged();
+            }
+        }
+
+        /**
+         * 直接设置进度.
+         *
+         * @param progress
+         */
+        public void setProgress(long progress) {
+            if (isActive()) {
+                mSlots.set(mBase + OFFSET_PROGRESS, progress);
+                markChanged();
+            }
+        }
+
+        /**
+         * 同时设置进度和总大小, 用于作为 {@link ProgressSink} 接收 {@link ProgressReporter} 等报告的进度.
+         *
+         * @param progress
+         * @param maxProgress 总大小, 为0表示总大小未知.
+         */
+        @Override
+        public void setProgress(long progress, long maxProgress) {
+            if (isActive()) {
+                mSlots.set(mBase + OFFSET_TOTAL, maxProgress <= 0 ? UNKNOWN_TOTAL : maxProgress);
+                mSlots.set(mBase + OFFSET_PROGRESS, progress);
+                markChanged();
+            }
+        }
+
+        /**
+         * 设置总大小, 用于开始时还不知道总大小, 之后才知道的情况 (例如收到响应头之后).
+         *
+         * @param total
+         */
+        public void setTotal(long total) {
+            if (isActive()) {
+                mSlots.set(mBase + OFFSET_TOTAL, total < 0 ? UNKNOWN_TOTAL : total);
+                markChanged();
+            }
+        }
+
+        /**
+         * 标记为已完成, 之后这个来源的进度等于它的总大小. 总大小仍然未知时以当前进度作为总大小.
+         */
+        public void complete() {
+            if (mSlots.get(mBase + OFFSET_TOTAL) == UNKNOWN_TOTAL) {
+                mSlots.compareAndSet(mBase + OFFSET_TOTAL, UNKNOWN_TOTAL, mSlots.get(mBase + OFFSET_PROGRESS));
+            }
+            if (mSlots.compareAndSet(mBase + OFFSET_STATE, STATE_ACTIVE, STATE_COMPLETED)) {
+                markChanged();
+            }
+        }
+
+        /**
+         * 取消, 之后这个来源不再计入总进度.
+         */
+        public void cancel() {
+            if (mSlots.compareAndSet(mBase + OFFSET_STATE, STATE_ACTIVE, STATE_CANCELLED)) {
+                markChanged();
+            }
+        }
+
+        /**
+         * 是否还没有完成, 也没有取消.
+         *
+         * @return
+         */
+        public boolean isActive() {
+            return mSlots.get(mBase + OFFSET_STATE) == STATE_ACTIVE;
+        }
+    }
+
+    /**
+     * 合并后的进度快照. 可以重复使用.
+     */
+    public static final class Snapshot {
+
+        private long mProgress;
+        private long mTotal;
+        private int mActiveSources;
+        private int mUnknownTotalSources;
+
+        /**
+         * 获取所有已知总大小的来源的进度之和.
+         *
+         * @return
+         */
+        public long getProgress() {
+            return mProgress;
+        }
+
+        /**
+         * 获取所有已知总大小的来源的总大小之和.
+         *
+         * @return
+         */
+        public long getTotal() {
+            return mTotal;
+        }
+
+        /**
+         * 获取还没有完成也没有取消的来源数.
+         *
+         * @return
+         */
+        public int getActiveSources() {
+            return mActiveSources;
+        }
+
+        /**
+         * 获取总大小仍然未知, 暂时没有计入总进度的来源数.
+         *
+         * @return
+         */
+        public int getUnknownTotalSources() {
+            return mUnknownTotalSources;
+        }
+
+        /**
+         * 是否所有来源都已经完成或取消.
+         *
+         * @return
+         */
+        public boolean isFinished() {
+            return mActiveSources == 0;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.clevergump.progresscircle.library.core;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 统计读取的字节数并通过 {@link ProgressReporter} 报告进度的 InputStream. 数据直接读入调用方的数组, 不会额外复制.
+ * <p>
+ * 读到末尾或关闭时一定会报告最后的进度. 为了保证进度不会倒退, 不支持 mark/reset.
+ */
+public class ProgressInputStream extends FilterInputStream {
+
+    // 负责累计字节数和按阈值报告
+    private final ProgressReporter mReporter;
+
+    /**
+     * @param in       被包装的输入流
+     * @param reporter
+     */
+    public ProgressInputStream(InputStream in, ProgressReporter reporter) {
+        super(in);
+        mReporter = reporter;
+    }
+
+    /**
+     * 使用默认的阈值创建.
+     *
+     * @param in          被包装的输入流
+     * @param sink        接收进度的对象
+     * @param maxProgress 总字节数, 为0表示总大小未知.
+     */
+    public ProgressInputStream(InputStream in, ProgressSink sink, long maxProgress) {
+        this(in, new ProgressReporter(sink, maxProgress));
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = in.read();
+        if (b >= 0) {
+            mReporter.add(1);
+        } else {
+            mReporter.flush();
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = in.read(b, off, len);
+        if (n > 0) {
+            mReporter.add(n);
+        } else if (n < 0) {
+            mReporter.flush();
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = in.skip(n);
+        mReporter.add(skipped);
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+    @Override
+    public void close() throws IOException {
+        mReporter.flush();
+        super.close();
+    }
+
+    /**
+     * 获取已经读取的字节数.
+     *
+     * @return
+     */
+    public long getCount() {
+        return mReporter.getCount();
+    }
+}
@@ -0,0 +1,81 @@
+package com.clevergump.progresscircle.library.core;
+
+/**
+ * 进度相关的数值计算, 不依赖 Android 的任何类.
+ * <p>
+ * 所有计算都先用 long 类型的定点数完成, 最后才转换为 float, 所以即使进度是几十 GB 的字节数, 结果也不会因为
+ * float 的精度不足 (只有24位有效数字) 而出现误差, 也不会因为乘法溢出而出错.
+ */
+public final class ProgressMath {
+
+    // 扇形角度的定点数中小数部分的位数, 也就是以 1/65536 度为单位. 360 度对应的定点数小于 2^24, 转换为 float 时没有误差.
+    public static final int SWEEP_FRACTION_BITS = 16;
+    // 360 度对应的定点数
+    public static final long FULL_SWEEP_FIXED = 360L << SWEEP_FRACTION_BITS;
+
+    private ProgressMath() {
+    }
+
+    /**
+     * 计算以100为最大进度时的当前进度值, 即百分比. 小数部分直接舍弃.
+     *
+     * @param progress    当前进度
+     * @param maxProgress 最大进度
+     * @return 范围 [0, 100] 的百分比. 最大进度不大于0 (总大小未知) 时返回0.
+     */
+    public static int percent(long progress, long maxProgress) {
+        if (maxProgress <= 0 || progress <= 0) {
+            return 0;
+        }
+        if (progress >= maxProgress) {
+            return PercentLabels.MAX_PERCENT;
+        }
+        return (int) scale(progress, maxProgress, PercentLabels.MAX_PERCENT);
+    }
+
+    /**
+     * 计算扇形扫过的角度.
+     *
+     * @param progress    当前进度
+     * @param maxProgress 最大进度
+     * @return 范围 [0, 360] 的角度. 最大进度不大于0 (总大小未知) 时返回0.
+     */
+    public static float sweepAngle(long progress, long maxProgress) {
+        return (float) sweepAngleFixed(progress, maxProgress) / (1 << SWEEP_FRACTION_BITS);
+    }
+
+    /**
+     * 计算扇形扫过的角度的定点数, 以 1/65536 度为单位.
+     *
+     * @param progress    当前进度
+     * @param maxProgress 最大进度
+     * @return 范围 [0, {@link #FULL_SWEEP_FIXED}]. 最大进度不大于0 (总大小未知) 时返回0.
+     */
+    public static long sweepAngleFixed(long progress, long maxProgress) {
+        if (maxProgress <= 0 || progress <= 0) {
+            return 0;
+        }
+        if (progress >= maxProgress) {
+            return FULL_SWEEP_FIXED;
+        }
+        return scale(progress, maxProgress, FULL_SWEEP_FIXED);
+    }
+
+    /**
+     * 计算 value * range / max, 并且保证乘法不会溢出.
+     * 乘积会溢出时先把 value 和 max 同时右移相同的位数, 两者的比例基本不变, 损失的精度远小于结果的最小单位.
+     *
+     * @param value 范围 [0, max]
+     * @param max   大于0
+     * @param range 结果的范围
+     * @return 范围 [0, range]
+     */
+    static long scale(long value, long max, long range) {
+        long limit = Long.MAX_VALUE / range;
+        while (value > limit) {
+            value >>= 1;
+            max >>= 1;
+        }
+        return value * range / max;
+    }
+}
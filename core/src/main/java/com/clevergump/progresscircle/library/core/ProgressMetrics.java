@@ -0,0 +1,299 @@
+package com.clevergump.progresscircle.library.core;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 进度圆的运行统计, 用于判断界面卡顿时进度圆是否是原因之一. 默认不开启, 可以给单个控件设置, 也可以开启进程内全局的统计.
+ * <p>
+ * 统计每次 setProgress() 调用最终的去向: 刷新了界面, 因为没有可见的变化 (或者不能被看到) 而跳过, 或者和还没有执行的刷新任务合并.
+ * 另外统计 onDraw() 的次数和耗时, 耗时按固定的区间计入直方图.
+ * <p>
+ * 所有计数器都是 {@link AtomicLongArray} 中的元素, 不使用任何锁. 工作线程和主线程更新的计数器之间用空白的 long 隔开,
+ * 不会竞争同一个缓存行. 控件没有设置统计, 全局统计也没有开启时, 每个事件只多一次 null 判断.
+ */
+public final class ProgressMetrics {
+
+    /**
+     * 定期报告统计数据的回调.
+     */
+    public interface Listener {
+
+        /**
+         * 在绘制的线程 (主线程) 中, 某次 onDraw() 结束之后调用. 没有绘制时不会调用.
+         *
+         * @param metrics
+         * @param snapshot 只能在回调中使用, 之后会被复用.
+         */
+        void onReport(ProgressMetrics metrics, Snapshot snapshot);
+    }
+
+    // setProgress() 的调用次数, 包括参数不合法被忽略的调用.
+    public static final int COUNTER_SET_PROGRESS = 0;
+    // 进度变化后刷新界面的次数
+    public static final int COUNTER_INVALIDATE = 1;
+    // 进度变化后没有刷新界面的次数: 进度没有变化, 没有可见的变化, 或者不能被看到.
+    public static final int COUNTER_SKIPPED = 2;
+    // 工作线程中更新进度时, 已经有待执行的刷新任务, 和它合并的次数.
+    public static final int COUNTER_COALESCED = 3;
+    // onDraw() 的次数
+    public static final int COUNTER_DRAW = 4;
+    // onDraw() 的总耗时, 单位ns.
+    public static final int COUNTER_DRAW_NANOS = 5;
+    private static final int COUNTER_COUNT = 6;
+
+    // 绘制耗时直方图的区间数
+    public static final int DRAW_TIME_BUCKETS = 8;
+    // 第一个区间的上限是 2^19 ns (约0.52ms), 之后每个区间的上限翻倍, 最后一个区间没有上限.
+    private static final int BUCKET_SHIFT = 19;
+
+    // 每个计数器占用的 long 的个数, 其余的用来把不同的计数器隔开到不同的缓存行中 (64字节).
+    private static final int SLOT_STRIDE = 8;
+
+    // 进程内全局的统计, 没有开启时为 null.
+    private static volatile ProgressMetrics sGlobal;
+
+    // 所有计数器. 第一个计数器之前也空出一段, 避免和数组对象头所在的缓存行共用.
+    private final AtomicLongArray mCounters = new AtomicLongArray((COUNTER_COUNT + 1) * SLOT_STRIDE);
+    // 绘制耗时的直方图. 只在主线程中更新, 所以放在一起.
+    private final AtomicLongArray mDrawTimeHistogram = new AtomicLongArray(DRAW_TIME_BUCKETS);
+    // 报告统计数据的回调
+    private volatile Listener mListener;
+    // 两次报告之间的最短间隔, 单位ns.
+    private volatile long mReportIntervalNanos;
+    // 上一次报告的时间, 只在主线程中使用.
+    private long mLastReportNanos;
+    // 报告时复用的快照, 只在主线程中使用.
+    private final Snapshot mReportSnapshot = new Snapshot();
+
+    /**
+     * 获取进程内全局的统计.
+     *
+     * @return 没有开启时返回 null.
+     */
+    public static ProgressMetrics getGlobal() {
+        return sGlobal;
+    }
+
+    /**
+     * 开启进程内全局的统计. 所有控件的事件都会计入其中. 已经开启时直接返回已有的统计.
+     *
+     * @return
+     */
+    public static synchronized ProgressMetrics enableGlobal() {
+        if (sGlobal == null) {
+            sGlobal = new ProgressMetrics();
+        }
+        return sGlobal;
+    }
+
+    /**
+     * 关闭进程内全局的统计.
+     */
+    public static synchronized void disableGlobal() {
+        sGlobal = null;
+    }
+
+    /**
+     * 获取绘制耗时直方图中一个区间的上限.
+     *
+     * @param bucket 0 ~ {@link #DRAW_TIME_BUCKETS} - 1
+     * @return 单位ns, 最后一个区间返回 Long.MAX_VALUE.
+     */
+    public static long getBucketUpperBoundNanos(int bucket) {
+        return bucket >= DRAW_TIME_BUCKETS - 1 ? Long.MAX_VALUE : 1L << (BUCKET_SHIFT + bucket);
+    }
+
+    /**
+     * 计数器加1. 可以在任意线程中调用.
+     *
+     * @param counter {@link #COUNTER_SET_PROGRESS}, {@link #COUNTER_INVALIDATE}, {@link #COUNTER_SKIPPED}
+     *                或 {@link #COUNTER_COALESCED}
+     */
+    public void increment(int counter) {
+        mCounters.incrementAndGet((counter + 1) * SLOT_STRIDE);
+    }
+
+    /**
+     * 记录一次 onDraw(). 只能在主线程中调用. 设置了回调并且距离上一次报告超过了间隔时, 在这里报告.
+     *
+     * @param durationNanos 耗时, 单位ns.
+     */
+    public void recordDraw(long durationNanos) {
+        if (durationNanos < 0) {
+            durationNanos = 0;
+        }
+        mCounters.incrementAndGet((COUNTER_DRAW + 1) * SLOT_STRIDE);
+        mCounters.addAndGet((COUNTER_DRAW_NANOS + 1) * SLOT_STRIDE, durationNanos);
+        int bucket = 64 - Long.numberOfLeadingZeros(durationNanos >> BUCKET_SHIFT);
+        mDrawTimeHistogram.incrementAndGet(Math.min(bucket, DRAW_TIME_BUCKETS - 1));
+
+        Listener listener = mListener;
+        if (listener != null) {
+            long now = System.nanoTime();
+            if (now - mLastReportNanos >= mReportIntervalNanos) {
+                mLastReportNanos = now;
+                snapshot(mReportSnapshot);
+                listener.onReport(this, mReportSnapshot);
+            }
+        }
+    }
+
+    /**
+     * 设置定期报告统计数据的回调. 第一次报告在间隔之后. 只能在主线程中调用.
+     *
+     * @param listener       为 null 时不再报告.
+     * @param intervalMillis 两次报告之间的最短间隔, 单位ms.
+     */
+    public void setListener(Listener listener, long intervalMillis) {
+        mReportIntervalNanos = intervalMillis * 1000000L;
+        mLastReportNanos = System.nanoTime();
+        mListener = listener;
+    }
+
+    /**
+     * 读取所有计数器. 可以在任意线程中调用. 各个计数器是分别读取的, 其他线程同时在更新时, 彼此之间可能相差几次.
+     *
+     * @param out 保存结果的快照, 可以重复使用.
+     */
+    public void snapshot(Snapshot out) {
+        out.mSetProgressCount = get(COUNTER_SET_PROGRESS);
+        out.mInvalidateCount = get(COUNTER_INVALIDATE);
+        out.mSkippedCount = get(COUNTER_SKIPPED);
+        out.mCoalescedCount = get(COUNTER_COALESCED);
+        out.mDrawCount = get(COUNTER_DRAW);
+        out.mDrawNanos = get(COUNTER_DRAW_NANOS);
+        for (int i = 0; i < DRAW_TIME_BUCKETS; i++) {
+            out.mDrawTimeHistogram[i] = mDrawTimeHistogram.get(i);
+        }
+    }
+
+    /**
+     * 读取一个计数器.
+     *
+     * @param counter {@link #COUNTER_SET_PROGRESS} 等
+     * @return
+     */
+    public long get(int counter) {
+        return mCounters.get((counter + 1) * SLOT_STRIDE);
+    }
+
+    /**
+     * 把所有计数器清零.
+     */
+    public void reset() {
+        for (int i = 0; i < COUNTER_COUNT; i++) {
+            mCounters.set((i + 1) * SLOT_STRIDE, 0);
+        }
+        for (int i = 0; i < DRAW_TIME_BUCKETS; i++) {
+            mDrawTimeHistogram.set(i, 0);
+        }
+    }
+
+    /**
+     * 某一时刻所有计数器的值.
+     */
+    public static final class Snapshot {
+
+        private long mSetProgressCount;
+        private long mInvalidateCount;
+        private long mSkippedCount;
+        private long mCoalescedCount;
+        private long mDrawCount;
+        private long mDrawNanos;
+        private final long[] mDrawTimeHistogram = new long[DRAW_TIME_BUCKETS];
+
+        /**
+         * 获取 setProgress() 的调用次数.
+         *
+         * @return
+         */
+        public long getSetProgressCount() {
+            return mSetProgressCount;
+        }
+
+        /**
+         * 获取刷新界面的次数.
+         *
+         * @return
+         */
+        public long getInvalidateCount() {
+            return mInvalidateCount;
+        }
+
+        /**
+         * 获取因为没有可见的变化或者不能被看到而没有刷新的次数.
+         *
+         * @return
+         */
+        public long getSkippedCount() {
+            return mSkippedCount;
+        }
+
+        /**
+         * 获取和待执行的刷新任务合并的次数.
+         *
+         * @return
+         */
+        public long getCoalescedCount() {
+            return mCoalescedCount;
+        }
+
+        /**
+         * 获取没有刷新界面的进度更新在所有进度更新中所占的比例.
+         *
+         * @return 0 ~ 1, 还没有任何进度更新时返回0.
+         */
+        public double getCoalescingRatio() {
+            long saved = mSkippedCount + mCoalescedCount;
+            long total = saved + mInvalidateCount;
+            return total == 0 ? 0 : (double) saved / total;
+        }
+
+        /**
+         * 获取 onDraw() 的次数.
+         *
+         * @return
+         */
+        public long getDrawCount() {
+            return mDrawCount;
+        }
+
+        /**
+         * 获取 onDraw() 的总耗时.
+         *
+         * @return 单位ns
+         */
+        public long getDrawNanos() {
+            return mDrawNanos;
+        }
+
+        /**
+         * 获取绘制耗时落在一个区间中的次数.
+         *
+         * @param bucket 0 ~ {@link #DRAW_TIME_BUCKETS} - 1, 区间的上限见 {@link #getBucketUpperBoundNanos(int)}.
+         * @return
+         */
+        public long getDrawTimeBucketCount(int bucket) {
+            return mDrawTimeHistogram[bucket];
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("setProgress=").append(mSetProgressCount)
+                    .append(" invalidate=").append(mInvalidateCount)
+                    .append(" skipped=").append(mSkippedCount)
+                    .append(" coalesced=").append(mCoalescedCount)
+                    .append(" draw=").append(mDrawCount)
+                    .append(" drawMicros=").append(mDrawNanos / 1000)
+                    .append(" drawHistogram=[");
+            for (int i = 0; i < DRAW_TIME_BUCKETS; i++) {
+                if (i > 0) {
+                    sb.append(", ");
+                }
+                sb.append(mDrawTimeHistogram[i]);
+            }
+            return sb.append(']').toString();
+        }
+    }
+}
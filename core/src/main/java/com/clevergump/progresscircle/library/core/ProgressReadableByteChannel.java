@@ -0,0 +1,70 @@
+package com.clevergump.progresscircle.library.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * 统计读取的字节数并通过 {@link ProgressReporter} 报告进度的 ReadableByteChannel. 数据直接读入调用方的 ByteBuffer,
+ * 不会额外复制, 也可以作为 {@link java.nio.channels.FileChannel#transferFrom} 的来源.
+ * <p>
+ * 读到末尾或关闭时一定会报告最后的进度.
+ */
+public class ProgressReadableByteChannel implements ReadableByteChannel {
+
+    // 被包装的通道
+    private final ReadableByteChannel mChannel;
+    // 负责累计字节数和按阈值报告
+    private final ProgressReporter mReporter;
+
+    /**
+     * @param channel  被包装的通道
+     * @param reporter
+     */
+    public ProgressReadableByteChannel(ReadableByteChannel channel, ProgressReporter reporter) {
+        mChannel = channel;
+        mReporter = reporter;
+    }
+
+    /**
+     * 使用默认的阈值创建.
+     *
+     * @param channel     被包装的通道
+     * @param sink        接收进度的对象
+     * @param maxProgress 总字节数, 为0表示总大小未知.
+     */
+    public ProgressReadableByteChannel(ReadableByteChannel channel, ProgressSink sink, long maxProgress) {
+        this(channel, new ProgressReporter(sink, maxProgress));
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        int n = mChannel.read(dst);
+        if (n > 0) {
+            mReporter.add(n);
+        } else if (n < 0) {
+            mReporter.flush();
+        }
+        return n;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return mChannel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        mReporter.flush();
+        mChannel.close();
+    }
+
+    /**
+     * 获取已经读取的字节数.
+     *
+     * @return
+     */
+    public long getCount() {
+        return mReporter.getCount();
+    }
+}
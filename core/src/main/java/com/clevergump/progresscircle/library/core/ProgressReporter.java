@@ -0,0 +1,135 @@
+package com.clevergump.progresscircle.library.core;
+
+/**
+ * 累计读取或复制的字节数, 只在累计的增量达到字节阈值, 或者距离上一次报告超过了时间阈值时才报告给 {@link ProgressSink}.
+ * <p>
+ * 读取循环每读取一块数据就调用一次 {@link #add(long)}, 其中只有一次加法和几次比较, 不会创建任何对象, 每
+ * {@link #TIME_CHECK_INTERVAL} 次才读取一次时钟. 这样不管每次读取的数据块有多小, 控件或聚合器收到的更新次数都是有上限的.
+ * <p>
+ * 不是线程安全的, 同一时刻只能有一个线程调用. 通常由读取数据的线程独占.
+ */
+public final class ProgressReporter {
+
+    // 默认的字节阈值
+    public static final long DEF_BYTE_THRESHOLD = 256 * 1024;
+    // 默认的时间阈值, 单位纳秒.
+    public static final long DEF_TIME_THRESHOLD_NANOS = 50000000L;
+    // 每调用多少次 add() 才检查一次时间阈值. 读取的数据块很小时, System.nanoTime() 本身就占了读取开销中不小的一部分.
+    public static final int TIME_CHECK_INTERVAL = 8;
+
+    // 接收进度的对象
+    private final ProgressSink mSink;
+    // 最大进度, 为0表示总大小未知.
+    private final long mMaxProgress;
+    // 字节阈值
+    private final long mByteThreshold;
+    // 时间阈值, 单位纳秒.
+    private final long mTimeThresholdNanos;
+    // 已经累计的字节数
+    private long mCount;
+    // 上一次报告的字节数
+    private long mReportedCount;
+    // 上一次报告的时间
+    private long mReportedNanos;
+    // 距离下一次检查时间阈值还需要调用 add() 的次数
+    private int mCallsUntilTimeCheck = TIME_CHECK_INTERVAL;
+
+    /**
+     * 使用默认的阈值创建.
+     *
+     * @param sink        接收进度的对象
+     * @param maxProgress 总字节数, 为0表示总大小未知.
+     */
+    public ProgressReporter(ProgressSink sink, long maxProgress) {
+        this(sink, maxProgress, DEF_BYTE_THRESHOLD, DEF_TIME_THRESHOLD_NANOS);
+    }
+
+    /**
+     * @param sink               接收进度的对象
+     * @param maxProgress        总字节数, 为0表示总大小未知.
+     * @param byteThreshold      累计的增量达到这么多字节时报告一次
+     * @param timeThresholdNanos 距离上一次报告超过这么长时间并且有新的增量时报告一次, 单位纳秒. 每
+     *                           {@link #TIME_CHECK_INTERVAL} 次读取才检查一次.
+     */
+    public ProgressReporter(ProgressSink sink, long maxProgress, long byteThreshold, long timeThresholdNanos) {
+        if (sink == null) {
+            throw new NullPointerException("sink == null");
+        }
+        if (maxProgress < 0) {
+            throw new IllegalArgumentException("Max progress can't be less than zero");
+        }
+        mSink = sink;
+        mMaxProgress = maxProgress;
+        mByteThreshold = Math.max(byteThreshold, 1);
+        mTimeThresholdNanos = timeThresholdNanos;
+        mReportedNanos = System.nanoTime();
+    }
+
+    /**
+     * 累计读取的字节数, 达到阈值时报告.
+     *
+     * @param bytes 本次读取的字节数, 不大于0时忽略.
+     */
+    public void add(long bytes) {
+        if (bytes <= 0) {
+            return;
+        }
+        mCount += bytes;
+        if (mCount - mReportedCount >= mByteThreshold) {
+            report(System.nanoTime());
+            return;
+        }
+        if (--mCallsUntilTimeCheck > 0) {
+            return;
+        }
+        mCallsUntilTimeCheck = TIME_CHECK_INTERVAL;
+        long now = System.nanoTime();
+        if (now - mReportedNanos >= mTimeThresholdNanos) {
+            report(now);
+        }
+    }
+
+    /**
+     * 不管是否达到阈值, 立即报告最新的字节数. 读取结束或关闭时调用, 保证最后的进度一定会被报告.
+     */
+    public void flush() {
+        if (mCount != mReportedCount) {
+            report(System.nanoTime());
+        }
+    }
+
+    /**
+     * 获取已经累计的字节数.
+     *
+     * @return
+     */
+    public long getCount() {
+        return mCount;
+    }
+
+    /**
+     * 获取字节阈值.
+     *
+     * @return
+     */
+    public long getByteThreshold() {
+        return mByteThreshold;
+    }
+
+    /**
+     * 获取总字节数.
+     *
+     * @return 为0表示总大小未知.
+     */
+    public long getMaxProgress() {
+        return mMaxProgress;
+    }
+
+    private void report(long now) {
+        mReportedCount = mCount;
+        mReportedNanos = now;
+        // 实际读取的字节数超过了预期的总大小时, 不让进度超过最大进度.
+        long progress = mMaxProgress > 0 ? Math.min(mCount, mMaxProgress) : mCount;
+        mSink.setProgress(progress, mMaxProgress);
+    }
+}
@@ -0,0 +1,16 @@
+package com.clevergump.progresscircle.library.core;
+
+/**
+ * 接收进度的对象, 例如 {@code ProgressCircle} 或 {@link ProgressAggregator.Source}.
+ * 让 {@link ProgressReporter} 等不依赖 Android 的类可以把进度报告给控件或聚合器, 而不需要知道具体是哪一个.
+ */
+public interface ProgressSink {
+
+    /**
+     * 设置进度. 实现类需要允许在任意线程中调用.
+     *
+     * @param progress    当前进度
+     * @param maxProgress 最大进度, 为0表示总大小未知.
+     */
+    void setProgress(long progress, long maxProgress);
+}
@@ -0,0 +1,305 @@
+package com.clevergump.progresscircle.library.core;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 以字符串为键的进度表, 每个键占用一个固定的位置, 位置上保存打包后的进度 ({@link PackedProgress}) 和一个订阅者.
+ * 是 ProgressRegistry 中和界面无关的部分.
+ * <p>
+ * 查找键和写入进度都不加锁, 也不会创建任何对象, 只有登记和移除键时才加锁.
+ * <p>
+ * 被移除的键的位置不会立即被其他键复用: 每个位置记录正在写入的线程数, 只有在没有线程还可能持有旧的位置时才放回空闲的位置中,
+ * 所以移除之前已经开始的写入不会写到复用这个位置的新键上. 每个位置还有一个代数, 移除时加1, 订阅者据此判断自己的订阅是否已经失效.
+ *
+ * @param <S> 订阅者的类型
+ */
+public final class ProgressSlotTable<S> {
+
+    // 每个键的进度, 下标是键对应的位置.
+    private final AtomicLongArray mValues;
+    // 每个位置上的订阅者, 没有订阅时为 null.
+    private final AtomicReferenceArray<S> mSubscribers;
+    // 每个位置的代数, 位置上的键被移除时加1.
+    private final AtomicIntegerArray mGenerations;
+    // 每个位置上正在写入的线程数
+    private final AtomicIntegerArray mWriters;
+    // 键到位置的映射. 只在添加或移除键时整体替换, 查找时不需要加锁.
+    private volatile KeyTable mKeyTable;
+    // 空闲的位置
+    private final int[] mFreeSlots;
+    // 空闲的位置的数量
+    private int mFreeSlotCount;
+    // 键已经被移除, 但可能还有线程正在写入, 暂时不能复用的位置.
+    private final int[] mRetiredSlots;
+    // 暂时不能复用的位置的数量
+    private int mRetiredSlotCount;
+
+    /**
+     * @param capacity 最多同时登记的键的数量
+     */
+    public ProgressSlotTable(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        mValues = new AtomicLongArray(capacity);
+        mSubscribers = new AtomicReferenceArray<S>(capacity);
+        mGenerations = new AtomicIntegerArray(capacity);
+        mWriters = new AtomicIntegerArray(capacity);
+        mKeyTable = new KeyTable(capacity);
+        mFreeSlots = new int[capacity];
+        for (int i = 0; i < capacity; i++) {
+            mFreeSlots[i] = capacity - 1 - i;
+            mValues.set(i, PackedProgress.NONE);
+        }
+        mFreeSlotCount = capacity;
+        mRetiredSlots = new int[capacity];
+    }
+
+    /**
+     * 查找键对应的位置. 可以在任意线程中调用.
+     *
+     * @param key
+     * @return 键没有登记时返回 -1.
+     */
+    public int find(String key) {
+        return mKeyTable.find(key);
+    }
+
+    /**
+     * 判断一个键是否已经登记. 可以在任意线程中调用.
+     *
+     * @param key
+     * @return
+     */
+    public boolean contains(String key) {
+        return mKeyTable.find(key) >= 0;
+    }
+
+    /**
+     * 登记一个键. 已经登记过时直接返回它的位置. 可以在任意线程中调用.
+     *
+     * @param key
+     * @return 没有空闲的位置时返回 -1.
+     */
+    public synchronized int register(String key) {
+        // 其他线程可能刚刚登记了同一个键.
+        int slot = mKeyTable.find(key);
+        if (slot >= 0) {
+            return slot;
+        }
+        if (mFreeSlotCount == 0) {
+            reclaimRetiredSlots();
+            if (mFreeSlotCount == 0) {
+                return -1;
+            }
+        }
+        slot = mFreeSlots[--mFreeSlotCount];
+        mKeyTable = mKeyTable.copyWith(key, slot);
+        return slot;
+    }
+
+    /**
+     * 移除一个键, 同时清除这个位置上的订阅者并让代数加1. 可以在任意线程中调用.
+     *
+     * @param key
+     * @return 这个键没有登记时返回 false.
+     */
+    public synchronized boolean remove(String key) {
+        int slot = mKeyTable.find(key);
+        if (slot < 0) {
+            return false;
+        }
+        mKeyTable = mKeyTable.copyWithout(key);
+        mSubscribers.set(slot, null);
+        mGenerations.incrementAndGet(slot);
+        mRetiredSlots[mRetiredSlotCount++] = slot;
+        reclaimRetiredSlots();
+        return true;
+    }
+
+    /**
+     * 开始写入一个键的进度, 键还没有登记时自动登记. 返回值不小于0时必须接着调用 {@link #finishUpdate(int, long)},
+     * 在那之前这个位置不会被其他键复用. 可以在任意线程中调用.
+     *
+     * @param key
+     * @return 键对应的位置. 登记的键已经达到上限, 无法登记时返回 -1.
+     */
+    public int beginUpdate(String key) {
+        while (true) {
+            int slot = mKeyTable.find(key);
+            if (slot < 0) {
+                slot = register(key);
+                if (slot < 0) {
+                    return -1;
+                }
+            }
+            // 先登记正在写入, 再确认键仍然对应这个位置. remove() 的顺序相反, 先替换映射表, 再检查正在写入的线程数,
+            // 保证两者至少有一方能看到对方的写入: 要么这里发现键已经被移除, 要么 remove() 暂时不复用这个位置.
+            mWriters.incrementAndGet(slot);
+            if (mKeyTable.find(key) == slot) {
+                return slot;
+            }
+            // 键在这期间被移除了 (可能又重新登记到了其他位置), 重新查找.
+            mWriters.decrementAndGet(slot);
+        }
+    }
+
+    /**
+     * 写入进度并结束 {@link #beginUpdate(String)} 开始的写入.
+     *
+     * @param slot   {@link #beginUpdate(String)} 返回的位置
+     * @param packed 打包后的进度
+     * @return 写入时这个位置上的订阅者, 需要由调用者通知. 没有订阅者时返回 null.
+     */
+    public S finishUpdate(int slot, long packed) {
+        // 先写入数值再读取订阅者, 和订阅时的顺序 (先设置订阅者再读取数值) 相反, 保证两者至少有一方能看到对方的写入.
+        mValues.set(slot, packed);
+        S subscriber = mSubscribers.get(slot);
+        mWriters.decrementAndGet(slot);
+        return subscriber;
+    }
+
+    /**
+     * 读取一个位置上的进度. 读取之后再用 {@link #getGeneration(int)} 确认代数没有变化, 才能确定读到的是订阅时那个键的进度.
+     *
+     * @param slot
+     * @return 打包后的进度, 还没有进度时为 {@link PackedProgress#NONE}.
+     */
+    public long get(int slot) {
+        return mValues.get(slot);
+    }
+
+    /**
+     * 获取一个位置当前的代数.
+     *
+     * @param slot
+     * @return
+     */
+    public int getGeneration(int slot) {
+        return mGenerations.get(slot);
+    }
+
+    /**
+     * 获取一个位置上的订阅者.
+     *
+     * @param slot
+     * @return
+     */
+    public S getSubscriber(int slot) {
+        return mSubscribers.get(slot);
+    }
+
+    /**
+     * 设置一个位置上的订阅者.
+     *
+     * @param slot
+     * @param subscriber
+     * @return 被替换掉的订阅者, 没有时返回 null.
+     */
+    public S setSubscriber(int slot, S subscriber) {
+        return mSubscribers.getAndSet(slot, subscriber);
+    }
+
+    /**
+     * 只有一个位置上的订阅者仍然是给定的订阅者时才清除, 不会影响之后替换上去的订阅者.
+     *
+     * @param slot
+     * @param subscriber
+     * @return 是否清除了.
+     */
+    public boolean clearSubscriber(int slot, S subscriber) {
+        return mSubscribers.compareAndSet(slot, subscriber, null);
+    }
+
+    /**
+     * 把已经没有线程正在写入的位置清空后放回空闲的位置中. 只能在持有锁时调用.
+     * 键被移除之后才开始的写入一定会发现键已经不在映射表中, 不会再写入这个位置, 所以这里看到没有线程正在写入之后就可以复用了.
+     */
+    private void reclaimRetiredSlots() {
+        int remaining = 0;
+        for (int i = 0; i < mRetiredSlotCount; i++) {
+            int slot = mRetiredSlots[i];
+            if (mWriters.get(slot) == 0) {
+                // 订阅者可能在移除的同时被设置到了这个位置上, 一起清除.
+                mSubscribers.set(slot, null);
+                mValues.set(slot, PackedProgress.NONE);
+                mFreeSlots[mFreeSlotCount++] = slot;
+            } else {
+                mRetiredSlots[remaining++] = slot;
+            }
+        }
+        mRetiredSlotCount = remaining;
+    }
+
+    /**
+     * 键到位置的开放寻址哈希表, 创建后不可修改. 查找时不会创建任何对象.
+     */
+    private static final class KeyTable {
+
+        // 键, 空位为 null.
+        private final String[] mKeys;
+        // 每个键对应的位置
+        private final int[] mSlots;
+        // 数组长度减1, 数组长度是2的幂.
+        private final int mMask;
+
+        KeyTable(int capacity) {
+            int size = Integer.highestOneBit(Math.max(capacity, 1) * 2 - 1) << 1;
+            mKeys = new String[size];
+            mSlots = new int[size];
+            mMask = size - 1;
+        }
+
+        private KeyTable(KeyTable source) {
+            mKeys = source.mKeys.clone();
+            mSlots = source.mSlots.clone();
+            mMask = source.mMask;
+        }
+
+        int find(String key) {
+            int index = spread(key.hashCode()) & mMask;
+            while (true) {
+                String k = mKeys[index];
+                if (k == null) {
+                    return -1;
+                }
+                if (k == key || k.equals(key)) {
+                    return mSlots[index];
+                }
+                index = (index + 1) & mMask;
+            }
+        }
+
+        KeyTable copyWith(String key, int slot) {
+            KeyTable table = new KeyTable(this);
+            table.put(key, slot);
+            return table;
+        }
+
+        KeyTable copyWithout(String key) {
+            // 开放寻址的表中直接删除会打断后面的键的查找, 所以重新插入其余所有的键.
+            KeyTable table = new KeyTable(mKeys.length / 2);
+            for (int i = 0; i < mKeys.length; i++) {
+                if (mKeys[i] != null && !mKeys[i].equals(key)) {
+                    table.put(mKeys[i], mSlots[i]);
+                }
+            }
+            return table;
+        }
+
+        private void put(String key, int slot) {
+            int index = spread(key.hashCode()) & mMask;
+            while (mKeys[index] != null) {
+                index = (index + 1) & mMask;
+            }
+            mKeys[index] = key;
+            mSlots[index] = slot;
+        }
+
+        private static int spread(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
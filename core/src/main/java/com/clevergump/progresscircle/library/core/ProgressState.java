@@ -0,0 +1,57 @@
+package com.clevergump.progresscircle.library.core;
+
+/**
+ * 某一时刻的 (当前进度, 最大进度), 创建后不可修改. 两个数值都是 long, 可以表示超过 2GB 的下载进度.
+ * <p>
+ * 最大进度不大于0表示总大小未知, 此时处于不确定进度的状态, 当前进度只表示已经完成的量 (例如已经下载的字节数).
+ */
+public final class ProgressState {
+
+    // 当前进度
+    private final long mProgress;
+    // 最大进度
+    private final long mMaxProgress;
+
+    public ProgressState(long progress, long maxProgress) {
+        mProgress = progress;
+        mMaxProgress = maxProgress;
+    }
+
+    /**
+     * 获取当前进度.
+     *
+     * @return
+     */
+    public long getProgress() {
+        return mProgress;
+    }
+
+    /**
+     * 获取最大进度.
+     *
+     * @return
+     */
+    public long getMaxProgress() {
+        return mMaxProgress;
+    }
+
+    /**
+     * 是否因为总大小未知而处于不确定进度的状态.
+     *
+     * @return
+     */
+    public boolean isIndeterminate() {
+        return mMaxProgress <= 0;
+    }
+
+    /**
+     * 判断和另一组数值是否相同.
+     *
+     * @param progress
+     * @param maxProgress
+     * @return
+     */
+    public boolean matches(long progress, long maxProgress) {
+        return mProgress == progress && mMaxProgress == maxProgress;
+    }
+}
@@ -0,0 +1,22 @@
+package com.clevergump.progresscircle.library.core;
+
+/**
+ * 将进度格式化为圆内显示的文字.
+ * <p>
+ * 实现类需要把文字写入调用方提供的可复用的 char[] 中, 而不是返回新的 String, 这样每一帧绘制时都不会产生新的对象.
+ */
+public interface ProgressTextFormatter {
+
+    // 调用方提供的 char[] 的最小长度, 格式化后的文字不能超过这个长度.
+    int MAX_TEXT_LENGTH = 32;
+
+    /**
+     * 将进度格式化为文字.
+     *
+     * @param progress    当前进度
+     * @param maxProgress 最大进度
+     * @param buffer      写入文字的数组, 长度不小于 {@link #MAX_TEXT_LENGTH}.
+     * @return 写入的字符个数
+     */
+    int format(long progress, long maxProgress, char[] buffer);
+}
@@ -0,0 +1,85 @@
+package com.clevergump.progresscircle.library.core;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * 报告进度的 {@link FileChannel#transferTo} 和 {@link FileChannel#transferFrom}.
+ * <p>
+ * 把整个复制拆分成若干块, 每一块仍然交给系统直接复制 (可能是零拷贝的), 数据不经过 Java 堆, 每复制完一块报告一次进度.
+ */
+public final class ProgressTransfers {
+
+    // 每一块的最小字节数. 块太小时系统调用的次数会明显增加.
+    private static final long MIN_CHUNK_SIZE = 1024 * 1024;
+
+    private ProgressTransfers() {
+    }
+
+    /**
+     * 把文件中 [position, position + count) 范围内的数据复制到 target.
+     *
+     * @param source
+     * @param position 开始复制的位置
+     * @param count    复制的字节数
+     * @param target
+     * @param reporter 每一块的大小取字节阈值和 1MB 中较大的一个.
+     * @return 实际复制的字节数. 文件的剩余长度不足时小于 count.
+     * @throws IOException
+     */
+    public static long transferTo(FileChannel source, long position, long count, WritableByteChannel target,
+                                  ProgressReporter reporter) throws IOException {
+        long chunkSize = chunkSize(reporter);
+        long transferred = 0;
+        try {
+            while (transferred < count) {
+                long n = source.transferTo(position + transferred, Math.min(chunkSize, count - transferred), target);
+                if (n <= 0) {
+                    // 已经到了文件末尾, 或者非阻塞的 target 暂时写不进去.
+                    break;
+                }
+                transferred += n;
+                reporter.add(n);
+            }
+        } finally {
+            reporter.flush();
+        }
+        return transferred;
+    }
+
+    /**
+     * 从 source 读取最多 count 个字节, 写入文件中从 position 开始的位置.
+     *
+     * @param source
+     * @param target
+     * @param position 开始写入的位置
+     * @param count    最多复制的字节数
+     * @param reporter 每一块的大小取字节阈值和 1MB 中较大的一个.
+     * @return 实际复制的字节数. source 提前读到末尾时小于 count.
+     * @throws IOException
+     */
+    public static long transferFrom(ReadableByteChannel source, FileChannel target, long position, long count,
+                                    ProgressReporter reporter) throws IOException {
+        long chunkSize = chunkSize(reporter);
+        long transferred = 0;
+        try {
+            while (transferred < count) {
+                long n = target.transferFrom(source, position + transferred, Math.min(chunkSize, count - transferred));
+                if (n <= 0) {
+                    break;
+                }
+                transferred += n;
+                reporter.add(n);
+            }
+        } finally {
+            reporter.flush();
+        }
+        return transferred;
+    }
+
+    private static long chunkSize(ProgressReporter reporter) {
+        return Math.max(reporter.getByteThreshold(), MIN_CHUNK_SIZE);
+    }
+}
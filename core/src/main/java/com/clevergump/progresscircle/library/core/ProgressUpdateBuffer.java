@@ -0,0 +1,150 @@
+package com.clevergump.progresscircle.library.core;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 以整数 id 区分的多组 (当前进度, 最大进度), 由多个工作线程写入, 由一个线程批量读取. 没有使用任何锁, 写入和读取都不会创建新的对象.
+ * <p>
+ * 每个 id 的两个数值打包成一个 long 值 ({@link PackedProgress}) 保存在 {@link AtomicLongArray} 中, 一次写入就整体更新,
+ * 读取方一次读取就能得到同一次写入的两个数值, 写入方之间也不需要互相等待. 数值超过 2^29 - 1 时低位会被舍去, 但两者的比例不变. 另外用一个位图记录哪些 id 在上一次读取之后被写入过.
+ * 两次读取之间同一个 id 被写入多次时, 读取方只会看到最后一次写入的数值, 中间的写入被合并掉了.
+ */
+public final class ProgressUpdateBuffer {
+
+    /**
+     * 批量读取时接收每一个被更新过的 id 的最新数值.
+     */
+    public interface Receiver {
+
+        /**
+         * @param id          写入时的 id
+         * @param progress    最新的当前进度
+         * @param maxProgress 最新的最大进度
+         */
+        void onProgress(int id, long progress, long maxProgress);
+    }
+
+    // 所有 id 打包后的 (当前进度, 最大进度), 还没有写入过时为 PackedProgress.NONE.
+    private final AtomicLongArray mValues;
+    // 每个 id 一位, 为1表示上一次读取之后被写入过.
+    private final AtomicLongArray mDirtyBits;
+    // 最多可以使用的 id 数量
+    private final int mCapacity;
+    // 写入时对应的位已经是1的次数, 也就是被合并掉的写入次数.
+    private final AtomicInteger mCoalescedCount = new AtomicInteger();
+
+    /**
+     * @param capacity id 的取值范围为 [0, capacity)
+     */
+    public ProgressUpdateBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        mCapacity = capacity;
+        mValues = new AtomicLongArray(capacity);
+        mDirtyBits = new AtomicLongArray((capacity + 63) >> 6);
+        for (int id = 0; id < capacity; id++) {
+            mValues.set(id, PackedProgress.NONE);
+        }
+    }
+
+    /**
+     * 写入一个 id 的最新进度. 可以在任意线程中调用, 同一个 id 也可以由多个线程同时写入.
+     *
+     * @param id
+     * @param progress    不能小于0
+     * @param maxProgress 不能小于0
+     * @return 如果这个 id 在上一次读取之后还没有被写入过, 也就是读取方需要被通知时, 返回 true.
+     */
+    public boolean publish(int id, long progress, long maxProgress) {
+        checkId(id);
+        mValues.set(id, PackedProgress.pack(progress, maxProgress));
+        int word = id >> 6;
+        long bit = 1L << (id & 63);
+        while (true) {
+            long bits = mDirtyBits.get(word);
+            if ((bits & bit) != 0) {
+                mCoalescedCount.incrementAndGet();
+                return false;
+            }
+            if (mDirtyBits.compareAndSet(word, bits, bits | bit)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 读取所有在上一次读取之后被写入过的 id 的最新数值. 同一时刻只能有一个线程读取.
+     *
+     * @param receiver
+     * @return 读取到的 id 的数量
+     */
+    public int drain(Receiver receiver) {
+        int count = 0;
+        int words = mDirtyBits.length();
+        for (int word = 0; word < words; word++) {
+            // 先清除再读取数值, 这样读取过程中的写入会留到下一次读取, 不会丢失.
+            long bits = mDirtyBits.getAndSet(word, 0);
+            while (bits != 0) {
+                int id = (word << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                read(id, receiver);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 直接读取一个 id 最后一次写入的数值, 不影响被写入过的标记.
+     *
+     * @param id
+     * @param receiver
+     * @return 这个 id 还从来没有被写入过时返回 false.
+     */
+    public boolean peek(int id, Receiver receiver) {
+        checkId(id);
+        return read(id, receiver);
+    }
+
+    /**
+     * 获取并清零被合并掉的写入次数.
+     *
+     * @return
+     */
+    public int takeCoalescedCount() {
+        return mCoalescedCount.getAndSet(0);
+    }
+
+    /**
+     * 获取 id 的取值范围.
+     *
+     * @return
+     */
+    public int getCapacity() {
+        return mCapacity;
+    }
+
+    /**
+     * 读取一个 id 最后一次写入的两个数值.
+     *
+     * @param id
+     * @param receiver
+     * @return 这个 id 还从来没有被写入过时返回 false.
+     */
+    private boolean read(int id, Receiver receiver) {
+        long packed = mValues.get(id);
+        if (packed == PackedProgress.NONE) {
+            return false;
+        }
+        receiver.onProgress(id, PackedProgress.progressOf(packed), PackedProgress.maxOf(packed));
+        return true;
+    }
+
+    private void checkId(int id) {
+        if (id < 0 || id >= mCapacity) {
+            throw new IndexOutOfBoundsException("Invalid id " + id + ", capacity is " + mCapacity);
+        }
+    }
+}
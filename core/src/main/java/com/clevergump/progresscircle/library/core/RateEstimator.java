@@ -0,0 +1,159 @@
+package com.clevergump.progresscircle.library.core;
+
+/**
+ * 根据进度更新的时间戳估算传输速率 (每秒的进度, 进度以字节为单位时就是字节/秒) 和剩余时间.
+ * <p>
+ * 速率是按时间加权的指数移动平均 (EWMA): 每个采样的权重为 1 - e^(-dt/τ), 所以不管更新得快慢是否均匀,
+ * 越早的采样对结果的影响都按时间呈指数衰减. 每次更新只有常数次运算, 不会创建任何对象.
+ * <p>
+ * 不是线程安全的, 同一时刻只能有一个线程调用 {@link #update(long, long, long)}.
+ */
+public final class RateEstimator {
+
+    /**
+     * 速率估算值变化的回调.
+     */
+    public interface Listener {
+
+        /**
+         * 在调用 {@link #update(long, long, long)} 的线程中回调.
+         *
+         * @param estimator
+         */
+        void onRateChanged(RateEstimator estimator);
+    }
+
+    // 速率或剩余时间未知
+    public static final long UNKNOWN = -1;
+    // 默认的时间常数, 单位纳秒. 大约是最近3秒左右的平均速率.
+    public static final long DEF_TIME_CONSTANT_NANOS = 3000000000L;
+    // 两次采样之间的最短间隔, 单位纳秒. 间隔更短的更新累积到下一次采样中, 避免几乎同时到达的更新算出很大的瞬时速率.
+    public static final long MIN_SAMPLE_INTERVAL_NANOS = 100000000L;
+
+    private static final double NANOS_PER_SECOND = 1000000000.0;
+
+    // 时间常数, 单位纳秒.
+    private final long mTimeConstantNanos;
+    // 当前采样开始时的进度和时间
+    private long mSampleStartProgress;
+    private long mSampleStartNanos;
+    // 最后一次更新的进度和最大进度
+    private long mProgress;
+    private long mMaxProgress;
+    // 是否已经有了第一次更新
+    private boolean mStarted;
+    // 每秒的进度, 还没有完成过一次采样时为负数.
+    private double mRate = UNKNOWN;
+    // 回调, 可以为 null.
+    private Listener mListener;
+
+    public RateEstimator() {
+        this(DEF_TIME_CONSTANT_NANOS);
+    }
+
+    /**
+     * @param timeConstantNanos 时间常数, 单位纳秒. 越大结果越平稳, 但对速率变化的反应越慢.
+     */
+    public RateEstimator(long timeConstantNanos) {
+        if (timeConstantNanos <= 0) {
+            throw new IllegalArgumentException("Time constant must be positive");
+        }
+        mTimeConstantNanos = timeConstantNanos;
+    }
+
+    /**
+     * 记录一次进度更新. 进度变小或最大进度变化时认为是一次新的传输, 重新开始估算.
+     *
+     * @param progress    当前进度
+     * @param maxProgress 最大进度, 不大于0表示总大小未知, 此时只能估算速率.
+     * @param nowNanos    更新的时间, 单位纳秒, 例如 {@link System#nanoTime()}.
+     * @return 速率估算值是否变化
+     */
+    public boolean update(long progress, long maxProgress, long nowNanos) {
+        if (!mStarted || progress < mProgress || maxProgress != mMaxProgress) {
+            boolean hadRate = mRate >= 0;
+            restart(progress, maxProgress, nowNanos);
+            if (hadRate) {
+                notifyRateChanged();
+            }
+            return hadRate;
+        }
+        mProgress = progress;
+        long elapsed = nowNanos - mSampleStartNanos;
+        if (elapsed < MIN_SAMPLE_INTERVAL_NANOS) {
+            return false;
+        }
+        double sampleRate = (progress - mSampleStartProgress) * NANOS_PER_SECOND / elapsed;
+        if (mRate < 0) {
+            mRate = sampleRate;
+        } else {
+            double weight = 1 - Math.exp(-(double) elapsed / mTimeConstantNanos);
+            mRate += (sampleRate - mRate) * weight;
+        }
+        mSampleStartProgress = progress;
+        mSampleStartNanos = nowNanos;
+        notifyRateChanged();
+        return true;
+    }
+
+    /**
+     * 清除所有采样, 下一次更新时重新开始估算.
+     */
+    public void reset() {
+        mStarted = false;
+        mRate = UNKNOWN;
+    }
+
+    /**
+     * 获取每秒的进度. 进度以字节为单位时就是字节/秒.
+     *
+     * @return 还没有足够的采样时返回 {@link #UNKNOWN}.
+     */
+    public double getRate() {
+        return mRate;
+    }
+
+    /**
+     * 按当前速率估算剩余时间.
+     *
+     * @return 剩余的毫秒数. 总大小未知, 还没有足够的采样或者速率为0时返回 {@link #UNKNOWN}.
+     */
+    public long getRemainingMillis() {
+        if (mMaxProgress <= 0 || !mStarted) {
+            return UNKNOWN;
+        }
+        long remaining = mMaxProgress - mProgress;
+        if (remaining <= 0) {
+            return 0;
+        }
+        if (mRate <= 0) {
+            return UNKNOWN;
+        }
+        return (long) Math.ceil(remaining * 1000.0 / mRate);
+    }
+
+    /**
+     * 设置速率估算值变化的回调.
+     *
+     * @param listener 为 null 时取消回调.
+     */
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    private void restart(long progress, long maxProgress, long nowNanos) {
+        mStarted = true;
+        mProgress = progress;
+        mMaxProgress = maxProgress;
+        mSampleStartProgress = progress;
+        mSampleStartNanos = nowNanos;
+        mRate = UNKNOWN;
+    }
+
+    private void notifyRateChanged() {
+        Listener listener = mListener;
+        if (listener != null) {
+            listener.onRateChanged(this);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.clevergump.progresscircle.library.core;
+
+/**
+ * 把 {@link RateEstimator} 估算的速率或剩余时间格式化为进度文字, 例如 "1.2 MB/s" 或 "0:14 left".
+ * <p>
+ * 和其他 {@link ProgressTextFormatter} 一样直接把字符写入调用方的数组, 数字也是逐位写入的, 整个过程不会创建任何对象.
+ */
+public final class RateTextFormatter implements ProgressTextFormatter {
+
+    // 显示速率, 例如 "1.2 MB/s".
+    public static final int MODE_RATE = 0;
+    // 显示剩余时间, 例如 "0:14 left".
+    public static final int MODE_REMAINING_TIME = 1;
+
+    // 速率的单位, 相邻单位之间相差1024倍.
+    private static final char[][] RATE_UNITS = {
+            " B/s".toCharArray(), " KB/s".toCharArray(), " MB/s".toCharArray(),
+            " GB/s".toCharArray(), " TB/s".toCharArray()
+    };
+    // 剩余时间的后缀
+    private static final char[] REMAINING_SUFFIX = " left".toCharArray();
+    // 数值未知时显示的文字
+    private static final char[] UNKNOWN_VALUE = "--".toCharArray();
+    // 剩余时间超过这个值时不再显示具体数值, 单位秒.
+    private static final long MAX_REMAINING_SECONDS = 100L * 3600 - 1;
+
+    // 速率和剩余时间的来源
+    private final RateEstimator mEstimator;
+    // 显示速率还是剩余时间
+    private final int mMode;
+
+    /**
+     * @param estimator 速率和剩余时间的来源
+     * @param mode      {@link #MODE_RATE} 或 {@link #MODE_REMAINING_TIME}
+     */
+    public RateTextFormatter(RateEstimator estimator, int mode) {
+        mEstimator = estimator;
+        mMode = mode;
+    }
+
+    @Override
+    public int format(long progress, long maxProgress, char[] buffer) {
+        if (mMode == MODE_REMAINING_TIME) {
+            return formatRemainingTime(mEstimator.getRemainingMillis(), buffer, 0);
+        }
+        return formatRate(mEstimator.getRate(), buffer, 0);
+    }
+
+    /**
+     * 把每秒的字节数格式化为 "512 B/s", "1.2 MB/s", "120 MB/s" 这样的文字. 小于100时保留1位小数.
+     *
+     * @param bytesPerSecond 为负数时表示未知, 显示为 "-- B/s".
+     * @param buffer
+     * @param offset         开始写入的位置
+     * @return 写入后的位置
+     */
+    public static int formatRate(double bytesPerSecond, char[] buffer, int offset) {
+        if (bytesPerSecond < 0 || Double.isNaN(bytesPerSecond)) {
+            offset = append(UNKNOWN_VALUE, buffer, offset);
+            return append(RATE_UNITS[0], buffer, offset);
+        }
+        int unit = 0;
+        double value = bytesPerSecond;
+        // 四舍五入后达到1024的也进位到下一个单位, 避免显示为 "1024 KB/s".
+        while (value >= 1023.5 && unit < RATE_UNITS.length - 1) {
+            value /= 1024;
+            unit++;
+        }
+        if (unit == 0 || value >= 99.95) {
+            offset = appendNumber(Math.round(value), buffer, offset);
+        } else {
+            long tenths = Math.round(value * 10);
+            offset = appendNumber(tenths / 10, buffer, offset);
+            buffer[offset++] = '.';
+            buffer[offset++] = (char) ('0' + tenths % 10);
+        }
+        return append(RATE_UNITS[unit], buffer, offset);
+    }
+
+    /**
+     * 把剩余的毫秒数格式化为 "0:14 left" 或 "1:02:03 left" 这样的文字. 不足1秒的部分向上取整.
+     *
+     * @param remainingMillis 为负数时表示未知, 显示为 "-- left". 超过100小时时也显示为未知.
+     * @param buffer
+     * @param offset          开始写入的位置
+     * @return 写入后的位置
+     */
+    public static int formatRemainingTime(long remainingMillis, char[] buffer, int offset) {
+        // 先和上限比较再向上取整, 否则接近 Long.MAX_VALUE (RateEstimator 饱和时的结果) 时加999会溢出成负数.
+        if (remainingMillis < 0 || remainingMillis > MAX_REMAINING_SECONDS * 1000) {
+            offset = append(UNKNOWN_VALUE, buffer, offset);
+            return append(REMAINING_SUFFIX, buffer, offset);
+        }
+        long seconds = (remainingMillis + 999) / 1000;
+        long hours = seconds / 3600;
+        long minutes = seconds / 60 % 60;
+        if (hours > 0) {
+            offset = appendNumber(hours, buffer, offset);
+            buffer[offset++] = ':';
+            offset = appendTwoDigits(minutes, buffer, offset);
+        } else {
+            offset = appendNumber(minutes, buffer, offset);
+        }
+        buffer[offset++] = ':';
+        offset = appendTwoDigits(seconds % 60, buffer, offset);
+        return append(REMAINING_SUFFIX, buffer, offset);
+    }
+
+    private static int append(char[] text, char[] buffer, int offset) {
+        System.arraycopy(text, 0, buffer, offset, text.length);
+        return offset + text.length;
+    }
+
+    private static int appendTwoDigits(long value, char[] buffer, int offset) {
+        buffer[offset++] = (char) ('0' + value / 10);
+        buffer[offset++] = (char) ('0' + value % 10);
+        return offset;
+    }
+
+    /**
+     * 逐位写入非负整数, 不经过 String.
+     */
+    private static int appendNumber(long value, char[] buffer, int offset) {
+        int digits = 1;
+        for (long v = value / 10; v > 0; v /= 10) {
+            digits++;
+        }
+        int end = offset + digits;
+        for (int i = end - 1; i >= offset; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return end;
+    }
+}
@@ -0,0 +1,69 @@
+package com.clevergump.progresscircle.library.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AtomicProgressTest {
+
+    @Test
+    public void longValues_roundTrip() throws Exception {
+        long fiveGigabytes = 5L * 1024 * 1024 * 1024;
+        AtomicProgress progress = new AtomicProgress(0, fiveGigabytes);
+        assertTrue(progress.setProgress(fiveGigabytes - 1));
+        assertEquals(fiveGigabytes - 1, progress.get().getProgress());
+        assertEquals(fiveGigabytes, progress.get().getMaxProgress());
+        assertFalse(progress.setProgress(fiveGigabytes + 1));
+    }
+
+    @Test
+    public void unknownMax_isIndeterminate() throws Exception {
+        AtomicProgress progress = new AtomicProgress(0, 0);
+        assertTrue(progress.get().isIndeterminate());
+        // 总大小未知时当前进度没有上限.
+        assertTrue(progress.setProgress(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void monotonic_dropsLateUpdates() throws Exception {
+        AtomicProgress progress = new AtomicProgress(0, 100);
+        progress.setMonotonic(true);
+        assertTrue(progress.set(50, 100));
+        assertFalse(progress.set(40, 100));
+        assertFalse(progress.setProgress(30));
+        assertEquals(50, progress.get().getProgress());
+
+        // 最大进度变化时视为新的任务, 不受单调递增的限制.
+        assertTrue(progress.set(10, 200));
+        assertEquals(10, progress.get().getProgress());
+
+        assertTrue(progress.reset());
+        assertEquals(0, progress.get().getProgress());
+        assertEquals(200, progress.get().getMaxProgress());
+    }
+
+    @Test
+    public void concurrentWriters_neverTear() throws Exception {
+        final AtomicProgress progress = new AtomicProgress(0, 1);
+        Thread[] writers = new Thread[4];
+        for (int i = 0; i < writers.length; i++) {
+            final int max = (i + 1) * 1000;
+            writers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int p = 0; p <= max; p++) {
+                        progress.set(p, max);
+                    }
+                }
+            });
+            writers[i].start();
+        }
+        for (int i = 0; i < 100000; i++) {
+            ProgressState state = progress.get();
+            assertTrue(state.getProgress() <= state.getMaxProgress());
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.clevergump.progresscircle.library.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+public class MilestoneTrackerTest {
+
+    @Test
+    public void crossings_areReportedOnceInOrder() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        MilestoneTracker tracker = new MilestoneTracker(new int[]{75, 25, 50, 25}, listener, new DirectExecutor());
+        for (long progress = 0; progress <= 1000; progress++) {
+            tracker.update(progress, 1000);
+        }
+        assertEquals("[25, 50, 75, completed]", listener.events.toString());
+    }
+
+    @Test
+    public void oneUpdate_crossesSeveralMilestones() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        MilestoneTracker tracker = new MilestoneTracker(new int[]{10, 20, 30}, listener, new DirectExecutor());
+        tracker.update(0, 100);
+        tracker.update(25, 100);
+        assertEquals("[10, 20]", listener.events.toString());
+        assertEquals(30, tracker.getNextMilestone());
+    }
+
+    @Test
+    public void reset_rearmsMilestonesAndCompletion() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        MilestoneTracker tracker = new MilestoneTracker(new int[]{50}, listener, new DirectExecutor());
+        tracker.update(100, 100);
+        tracker.reset();
+        tracker.update(0, 100);
+        tracker.update(100, 100);
+        assertEquals("[50, completed, reset, 50, completed]", listener.events.toString());
+    }
+
+    @Test
+    public void unknownMax_hasNoEvents() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        MilestoneTracker tracker = new MilestoneTracker(new int[]{50}, listener, new DirectExecutor());
+        tracker.update(1000, 0);
+        assertTrue(listener.events.isEmpty());
+    }
+
+    @Test
+    public void queuedExecutor_batchesEventsIntoOneTask() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        QueuedExecutor executor = new QueuedExecutor();
+        MilestoneTracker tracker = new MilestoneTracker(new int[]{25, 50}, listener, executor);
+        tracker.update(30, 100);
+        tracker.update(100, 100);
+        tracker.reset();
+        assertEquals(1, executor.tasks.size());
+        assertTrue(listener.events.isEmpty());
+        executor.tasks.remove(0).run();
+        assertEquals("[25, 50, completed, reset]", listener.events.toString());
+    }
+
+    private static class RecordingListener implements MilestoneTracker.Listener {
+
+        final List<String> events = new ArrayList<String>();
+
+        @Override
+        public void onMilestone(MilestoneTracker tracker, int percent) {
+            events.add(String.valueOf(percent));
+        }
+
+        @Override
+        public void onCompleted(MilestoneTracker tracker) {
+            events.add("completed");
+        }
+
+        @Override
+        public void onReset(MilestoneTracker tracker) {
+            events.add("reset");
+        }
+    }
+
+    private static class DirectExecutor implements Executor {
+
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    }
+
+    private static class QueuedExecutor implements Executor {
+
+        final List<Runnable> tasks = new ArrayList<Runnable>();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+    }
+}
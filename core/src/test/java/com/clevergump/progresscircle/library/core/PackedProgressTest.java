@@ -0,0 +1,27 @@
+package com.clevergump.progresscircle.library.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PackedProgressTest {
+
+    @Test
+    public void smallValues_areExact() throws Exception {
+        long packed = PackedProgress.pack(123456, 500000000);
+        assertEquals(123456, PackedProgress.progressOf(packed));
+        assertEquals(500000000, PackedProgress.maxOf(packed));
+        assertNotEquals(PackedProgress.NONE, packed);
+    }
+
+    @Test
+    public void hugeValues_keepRatio() throws Exception {
+        long max = 7L * 1024 * 1024 * 1024 * 1024;
+        long packed = PackedProgress.pack(max / 4, max);
+        assertEquals(max, PackedProgress.maxOf(packed));
+        assertEquals(25, ProgressMath.percent(PackedProgress.progressOf(packed), PackedProgress.maxOf(packed)));
+        long huge = PackedProgress.pack(Long.MAX_VALUE, Long.MAX_VALUE);
+        assertNotEquals(PackedProgress.NONE, huge);
+        assertEquals(100, ProgressMath.percent(PackedProgress.progressOf(huge), PackedProgress.maxOf(huge)));
+    }
+}
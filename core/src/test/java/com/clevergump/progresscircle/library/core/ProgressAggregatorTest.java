@@ -0,0 +1,124 @@
+package com.clevergump.progresscircle.library.core;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ProgressAggregatorTest {
+
+    @Test
+    public void lateTotals_andCancelledSources() throws Exception {
+        ProgressAggregator aggregator = new ProgressAggregator(4);
+        ProgressAggregator.Source a = aggregator.newSource(100);
+        ProgressAggregator.Source b = aggregator.newSource(ProgressAggregator.UNKNOWN_TOTAL);
+        ProgressAggregator.Source c = aggregator.newSource(50);
+        ProgressAggregator.Snapshot snapshot = new ProgressAggregator.Snapshot();
+
+        a.add(40);
+        b.add(10);
+        c.add(20);
+        aggregator.snapshot(snapshot);
+        // 总大小未知的来源暂时不计入.
+        assertEquals(60, snapshot.getProgress());
+        assertEquals(150, snapshot.getTotal());
+        assertEquals(1, snapshot.getUnknownTotalSources());
+
+        b.setTotal(200);
+        c.cancel();
+        c.add(30);
+        aggregator.snapshot(snapshot);
+        assertEquals(50, snapshot.getProgress());
+        assertEquals(300, snapshot.getTotal());
+        assertEquals(2, snapshot.getActiveSources());
+
+        // 乱序完成.
+        b.complete();
+        assertFalse(snapshot.isFinished());
+        a.complete();
+        aggregator.snapshot(snapshot);
+        assertEquals(300, snapshot.getProgress());
+        assertTrue(snapshot.isFinished());
+    }
+
+    @Test
+    public void listener_calledOncePerSnapshot() throws Exception {
+        ProgressAggregator aggregator = new ProgressAggregator(1);
+        final AtomicInteger calls = new AtomicInteger();
+        aggregator.addListener(new ProgressAggregator.Listener() {
+            @Override
+            public void onProgressChanged(ProgressAggregator aggregator) {
+                calls.incrementAndGet();
+            }
+        });
+        ProgressAggregator.Source source = aggregator.newSource(10);
+        source.add(1);
+        source.add(1);
+        assertEquals(1, calls.get());
+        aggregator.snapshot(new ProgressAggregator.Snapshot());
+        source.add(1);
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void severalListeners_areAllNotified() throws Exception {
+        ProgressAggregator aggregator = new ProgressAggregator(1);
+        final AtomicInteger first = new AtomicInteger();
+        final AtomicInteger second = new AtomicInteger();
+        ProgressAggregator.Listener firstListener = new ProgressAggregator.Listener() {
+            @Override
+            public void onProgressChanged(ProgressAggregator aggregator) {
+                first.incrementAndGet();
+            }
+        };
+        aggregator.addListener(firstListener);
+        aggregator.addListener(new ProgressAggregator.Listener() {
+            @Override
+            public void onProgressChanged(ProgressAggregator aggregator) {
+                second.incrementAndGet();
+            }
+        });
+        ProgressAggregator.Source source = aggregator.newSource(10);
+        assertEquals(1, first.get());
+        assertEquals(1, second.get());
+
+        aggregator.removeListener(firstListener);
+        aggregator.snapshot(new ProgressAggregator.Snapshot());
+        source.add(1);
+        assertEquals(1, first.get());
+        assertEquals(2, second.get());
+    }
+
+    @Test
+    public void concurrentSources_sumExactly() throws Exception {
+        final ProgressAggregator aggregator = new ProgressAggregator(8);
+        Thread[] writers = new Thread[8];
+        for (int i = 0; i < writers.length; i++) {
+            writers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    ProgressAggregator.Source source = aggregator.newSource(100000);
+                    for (int p = 0; p < 100000; p++) {
+                        source.add(1);
+                    }
+                }
+            });
+            writers[i].start();
+        }
+        ProgressAggregator.Snapshot snapshot = new ProgressAggregator.Snapshot();
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        aggregator.snapshot(snapshot);
+        assertEquals(800000, snapshot.getProgress());
+        assertEquals(800000, snapshot.getTotal());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void newSource_beyondCapacity() throws Exception {
+        ProgressAggregator aggregator = new ProgressAggregator(1);
+        aggregator.newSource(1);
+        aggregator.newSource(1);
+    }
+}
@@ -0,0 +1,113 @@
+package com.clevergump.progresscircle.library.core;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+
+import static org.junit.Assert.*;
+
+public class ProgressInputStreamTest {
+
+    /**
+     * 记录每一次报告的进度.
+     */
+    private static class RecordingSink implements ProgressSink {
+        int reports;
+        long progress;
+        long maxProgress;
+
+        @Override
+        public void setProgress(long progress, long maxProgress) {
+            reports++;
+            this.progress = progress;
+            this.maxProgress = maxProgress;
+        }
+    }
+
+    @Test
+    public void reportsOnlyWhenByteThresholdCrossed() throws Exception {
+        byte[] data = new byte[10000];
+        RecordingSink sink = new RecordingSink();
+        // 时间阈值足够大, 只由字节阈值触发.
+        ProgressReporter reporter = new ProgressReporter(sink, data.length, 1000, Long.MAX_VALUE);
+        ProgressInputStream in = new ProgressInputStream(new ByteArrayInputStream(data), reporter);
+        byte[] buffer = new byte[100];
+        while (in.read(buffer) > 0) {
+            assertEquals(in.getCount() / 1000, sink.reports);
+        }
+        assertEquals(10, sink.reports);
+        assertEquals(data.length, sink.progress);
+        assertEquals(data.length, sink.maxProgress);
+        in.close();
+        // 最后的进度已经报告过了, 关闭时不会重复报告.
+        assertEquals(10, sink.reports);
+    }
+
+    @Test
+    public void eofFlushesRemainder() throws Exception {
+        RecordingSink sink = new RecordingSink();
+        ProgressReporter reporter = new ProgressReporter(sink, 0, 1000, Long.MAX_VALUE);
+        ProgressInputStream in = new ProgressInputStream(new ByteArrayInputStream(new byte[1500]), reporter);
+        while (in.read() >= 0) {
+        }
+        assertEquals(2, sink.reports);
+        assertEquals(1500, sink.progress);
+        assertEquals(0, sink.maxProgress);
+    }
+
+    @Test
+    public void timeThreshold_reportsSmallReads() throws Exception {
+        RecordingSink sink = new RecordingSink();
+        ProgressReporter reporter = new ProgressReporter(sink, 100, Long.MAX_VALUE, 0);
+        for (int i = 1; i < ProgressReporter.TIME_CHECK_INTERVAL; i++) {
+            reporter.add(1);
+        }
+        assertEquals(0, sink.reports);
+        reporter.add(1);
+        assertEquals(1, sink.reports);
+        assertEquals(ProgressReporter.TIME_CHECK_INTERVAL, sink.progress);
+    }
+
+    @Test
+    public void channel_countsBytes() throws Exception {
+        RecordingSink sink = new RecordingSink();
+        ProgressReadableByteChannel channel = new ProgressReadableByteChannel(
+                Channels.newChannel(new ByteArrayInputStream(new byte[3000])), sink, 3000);
+        ByteBuffer buffer = ByteBuffer.allocate(512);
+        while (channel.read(buffer) >= 0) {
+            buffer.clear();
+        }
+        assertEquals(3000, channel.getCount());
+        assertEquals(3000, sink.progress);
+    }
+
+    @Test
+    public void transferTo_reportsPerChunk() throws Exception {
+        File file = File.createTempFile("transfer", null);
+        try {
+            FileOutputStream out = new FileOutputStream(file);
+            out.write(new byte[3 * 1024 * 1024 + 10]);
+            out.close();
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            FileChannel source = raf.getChannel();
+            RecordingSink sink = new RecordingSink();
+            ProgressReporter reporter = new ProgressReporter(sink, source.size(), 1, Long.MAX_VALUE);
+            ByteArrayOutputStream target = new ByteArrayOutputStream();
+            long transferred = ProgressTransfers.transferTo(source, 0, source.size(), Channels.newChannel(target), reporter);
+            raf.close();
+            assertEquals(file.length(), transferred);
+            assertEquals(file.length(), target.size());
+            assertEquals(file.length(), sink.progress);
+            assertTrue(sink.reports >= 4);
+        } finally {
+            file.delete();
+        }
+    }
+}
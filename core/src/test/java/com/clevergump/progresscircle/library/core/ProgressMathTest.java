@@ -0,0 +1,26 @@
+package com.clevergump.progresscircle.library.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ProgressMathTest {
+
+    @Test
+    public void sweepAngle_exactForHugeValues() throws Exception {
+        long max = Long.MAX_VALUE - 1;
+        assertEquals(180f, ProgressMath.sweepAngle(max / 2, max), 0.0001f);
+        assertEquals(50, ProgressMath.percent(max / 2 + 1, max));
+        // float 只有24位有效数字, 直接用 float 计算时这两个进度的角度是相同的.
+        long max64 = 1L << 40;
+        assertTrue(ProgressMath.sweepAngleFixed(max64 / 3, max64) < ProgressMath.sweepAngleFixed(max64 / 3 + (1L << 18), max64));
+    }
+
+    @Test
+    public void unknownMax_isEmpty() throws Exception {
+        assertEquals(0f, ProgressMath.sweepAngle(100, 0), 0f);
+        assertEquals(0, ProgressMath.percent(100, 0));
+        assertEquals(360f, ProgressMath.sweepAngle(5, 5), 0f);
+        assertEquals(100, ProgressMath.percent(6, 5));
+    }
+}
@@ -0,0 +1,78 @@
+package com.clevergump.progresscircle.library.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ProgressMetricsTest {
+
+    @Test
+    public void counters_areReadBySnapshotAndReset() throws Exception {
+        ProgressMetrics metrics = new ProgressMetrics();
+        for (int i = 0; i < 10; i++) {
+            metrics.increment(ProgressMetrics.COUNTER_SET_PROGRESS);
+        }
+        metrics.increment(ProgressMetrics.COUNTER_INVALIDATE);
+        metrics.increment(ProgressMetrics.COUNTER_INVALIDATE);
+        metrics.increment(ProgressMetrics.COUNTER_SKIPPED);
+        for (int i = 0; i < 5; i++) {
+            metrics.increment(ProgressMetrics.COUNTER_COALESCED);
+        }
+        ProgressMetrics.Snapshot snapshot = new ProgressMetrics.Snapshot();
+        metrics.snapshot(snapshot);
+        assertEquals(10, snapshot.getSetProgressCount());
+        assertEquals(2, snapshot.getInvalidateCount());
+        assertEquals(1, snapshot.getSkippedCount());
+        assertEquals(5, snapshot.getCoalescedCount());
+        assertEquals(0.75, snapshot.getCoalescingRatio(), 0.0001);
+
+        metrics.reset();
+        metrics.snapshot(snapshot);
+        assertEquals(0, snapshot.getSetProgressCount());
+        assertEquals(0, snapshot.getCoalescingRatio(), 0);
+    }
+
+    @Test
+    public void drawTimes_fallIntoPowerOfTwoBuckets() throws Exception {
+        ProgressMetrics metrics = new ProgressMetrics();
+        metrics.recordDraw(0);
+        metrics.recordDraw(ProgressMetrics.getBucketUpperBoundNanos(0) - 1);
+        metrics.recordDraw(ProgressMetrics.getBucketUpperBoundNanos(0));
+        metrics.recordDraw(ProgressMetrics.getBucketUpperBoundNanos(2) + 1);
+        metrics.recordDraw(1000000000L);
+        ProgressMetrics.Snapshot snapshot = new ProgressMetrics.Snapshot();
+        metrics.snapshot(snapshot);
+        assertEquals(5, snapshot.getDrawCount());
+        assertEquals(2, snapshot.getDrawTimeBucketCount(0));
+        assertEquals(1, snapshot.getDrawTimeBucketCount(1));
+        assertEquals(1, snapshot.getDrawTimeBucketCount(3));
+        assertEquals(1, snapshot.getDrawTimeBucketCount(ProgressMetrics.DRAW_TIME_BUCKETS - 1));
+    }
+
+    @Test
+    public void listener_isCalledAfterDrawAtMostOncePerInterval() throws Exception {
+        ProgressMetrics metrics = new ProgressMetrics();
+        final long[] reportedDraws = new long[2];
+        ProgressMetrics.Listener listener = new ProgressMetrics.Listener() {
+            @Override
+            public void onReport(ProgressMetrics metrics, ProgressMetrics.Snapshot snapshot) {
+                reportedDraws[0]++;
+                reportedDraws[1] = snapshot.getDrawCount();
+            }
+        };
+        metrics.setListener(listener, 0);
+        metrics.recordDraw(1000);
+        metrics.recordDraw(1000);
+        assertEquals(2, reportedDraws[0]);
+        assertEquals(2, reportedDraws[1]);
+
+        // 间隔还没有到.
+        metrics.setListener(listener, 60000);
+        metrics.recordDraw(1000);
+        assertEquals(2, reportedDraws[0]);
+
+        metrics.setListener(null, 0);
+        metrics.recordDraw(1000);
+        assertEquals(2, reportedDraws[0]);
+    }
+}
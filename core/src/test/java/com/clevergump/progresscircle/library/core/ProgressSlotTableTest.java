@@ -0,0 +1,102 @@
+package com.clevergump.progresscircle.library.core;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class ProgressSlotTableTest {
+
+    @Test
+    public void rebind_replacesSubscriberWithoutLosingTheNewOne() throws Exception {
+        ProgressSlotTable<String> table = new ProgressSlotTable<String>(4);
+        int slot = table.register("a");
+        assertNull(table.setSubscriber(slot, "first"));
+        assertEquals("first", table.setSubscriber(slot, "second"));
+        // 被替换掉的订阅者之后取消订阅时, 不会清除新的订阅者.
+        assertFalse(table.clearSubscriber(slot, "first"));
+        assertEquals("second", table.finishUpdate(table.beginUpdate("a"), PackedProgress.pack(1, 2)));
+        assertTrue(table.clearSubscriber(slot, "second"));
+        assertNull(table.finishUpdate(table.beginUpdate("a"), PackedProgress.pack(2, 2)));
+    }
+
+    @Test
+    public void remove_whileWriterInFlight() throws Exception {
+        ProgressSlotTable<String> table = new ProgressSlotTable<String>(1);
+        int slot = table.beginUpdate("a");
+        table.setSubscriber(slot, "circle");
+        assertTrue(table.remove("a"));
+        assertFalse(table.contains("a"));
+        assertNull(table.getSubscriber(slot));
+        // 移除之前开始的写入仍然写到原来的位置上, 但已经没有订阅者需要通知了.
+        assertNull(table.finishUpdate(slot, PackedProgress.pack(50, 100)));
+        // 复用这个位置的新键看不到旧键最后写入的数值.
+        assertEquals(slot, table.register("b"));
+        assertEquals(PackedProgress.NONE, table.get(slot));
+    }
+
+    @Test
+    public void noSlotReuse_whileWritersActive() throws Exception {
+        ProgressSlotTable<String> table = new ProgressSlotTable<String>(1);
+        int slot = table.beginUpdate("a");
+        table.remove("a");
+        assertEquals(-1, table.register("b"));
+        assertEquals(-1, table.beginUpdate("b"));
+        table.finishUpdate(slot, PackedProgress.pack(1, 1));
+        assertEquals(slot, table.register("b"));
+    }
+
+    @Test
+    public void generation_invalidatesOldSubscriptions() throws Exception {
+        ProgressSlotTable<String> table = new ProgressSlotTable<String>(1);
+        int slot = table.register("a");
+        int generation = table.getGeneration(slot);
+        table.finishUpdate(table.beginUpdate("a"), PackedProgress.pack(30, 100));
+        assertEquals(generation, table.getGeneration(slot));
+
+        table.remove("a");
+        assertEquals(slot, table.register("b"));
+        table.finishUpdate(table.beginUpdate("b"), PackedProgress.pack(70, 100));
+        // 订阅 a 时记录的代数已经失效, 读到的 b 的数值不能当作 a 的进度.
+        assertNotEquals(generation, table.getGeneration(slot));
+        assertFalse(table.remove("a"));
+    }
+
+    @Test
+    public void concurrentWriters_neverLeakIntoReusedSlots() throws Exception {
+        final ProgressSlotTable<String> table = new ProgressSlotTable<String>(2);
+        final long packedA = PackedProgress.pack(1, 2);
+        final AtomicBoolean stop = new AtomicBoolean(false);
+        Thread[] writers = new Thread[4];
+        for (int i = 0; i < writers.length; i++) {
+            writers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    while (!stop.get()) {
+                        int slot = table.beginUpdate("a");
+                        if (slot >= 0) {
+                            table.finishUpdate(slot, packedA);
+                        }
+                    }
+                }
+            });
+            writers[i].start();
+        }
+        try {
+            for (int i = 0; i < 20000; i++) {
+                table.remove("a");
+                int slot = table.register("b");
+                if (slot >= 0) {
+                    assertNotEquals(packedA, table.get(slot));
+                    table.remove("b");
+                }
+            }
+        } finally {
+            stop.set(true);
+            for (Thread writer : writers) {
+                writer.join();
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.clevergump.progresscircle.library.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ProgressUpdateBufferTest {
+
+    @Test
+    public void drain_returnsLatestValuePerId() throws Exception {
+        ProgressUpdateBuffer buffer = new ProgressUpdateBuffer(130);
+        assertTrue(buffer.publish(3, 10, 100));
+        assertFalse(buffer.publish(3, 20, 100));
+        assertTrue(buffer.publish(129, 5, 0));
+        final long[] received = new long[130];
+        int count = buffer.drain(new ProgressUpdateBuffer.Receiver() {
+            @Override
+            public void onProgress(int id, long progress, long maxProgress) {
+                received[id] = progress;
+            }
+        });
+        assertEquals(2, count);
+        assertEquals(20, received[3]);
+        assertEquals(5, received[129]);
+        assertEquals(1, buffer.takeCoalescedCount());
+        assertEquals(0, buffer.takeCoalescedCount());
+    }
+
+    @Test
+    public void concurrentWriters_neverTear() throws Exception {
+        final ProgressUpdateBuffer buffer = new ProgressUpdateBuffer(1);
+        Thread[] writers = new Thread[4];
+        for (int i = 0; i < writers.length; i++) {
+            final long max = (i + 1) * 1000;
+            writers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (long p = 0; p <= max; p++) {
+                        buffer.publish(0, p, max);
+                    }
+                }
+            });
+            writers[i].start();
+        }
+        ProgressUpdateBuffer.Receiver receiver = new ProgressUpdateBuffer.Receiver() {
+            @Override
+            public void onProgress(int id, long progress, long maxProgress) {
+                assertTrue(progress <= maxProgress);
+            }
+        };
+        for (int i = 0; i < 100000; i++) {
+            buffer.peek(0, receiver);
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.clevergump.progresscircle.library.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RateEstimatorTest {
+
+    private static final long SECOND = 1000000000L;
+
+    @Test
+    public void steadyRate_convergesAndEstimatesRemainingTime() throws Exception {
+        RateEstimator estimator = new RateEstimator();
+        // 每 0.5 秒 512 KB, 即 1 MB/s.
+        for (int i = 0; i <= 20; i++) {
+            estimator.update(i * 512 * 1024L, 100 * 1024 * 1024L, i * SECOND / 2);
+        }
+        assertEquals(1024 * 1024, estimator.getRate(), 1);
+        // 剩余 90 MB.
+        assertEquals(90000, estimator.getRemainingMillis());
+    }
+
+    @Test
+    public void updatesWithinMinInterval_areAccumulated() throws Exception {
+        RateEstimator estimator = new RateEstimator();
+        estimator.update(0, 1000, 0);
+        assertFalse(estimator.update(500, 1000, 1000));
+        assertEquals(RateEstimator.UNKNOWN, estimator.getRate(), 0);
+        assertTrue(estimator.update(600, 1000, SECOND));
+        assertEquals(600, estimator.getRate(), 0.001);
+    }
+
+    @Test
+    public void progressGoingBack_restarts() throws Exception {
+        RateEstimator estimator = new RateEstimator();
+        estimator.update(0, 1000, 0);
+        estimator.update(500, 1000, SECOND);
+        assertTrue(estimator.update(0, 1000, 2 * SECOND));
+        assertEquals(RateEstimator.UNKNOWN, estimator.getRate(), 0);
+        assertEquals(RateEstimator.UNKNOWN, estimator.getRemainingMillis());
+    }
+
+    @Test
+    public void unknownMax_hasRateButNoRemainingTime() throws Exception {
+        RateEstimator estimator = new RateEstimator();
+        estimator.update(0, 0, 0);
+        estimator.update(2000, 0, SECOND);
+        assertEquals(2000, estimator.getRate(), 0.001);
+        assertEquals(RateEstimator.UNKNOWN, estimator.getRemainingMillis());
+    }
+}
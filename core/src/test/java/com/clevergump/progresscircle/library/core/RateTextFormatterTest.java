@@ -0,0 +1,44 @@
+package com.clevergump.progresscircle.library.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RateTextFormatterTest {
+
+    private final char[] mBuffer = new char[ProgressTextFormatter.MAX_TEXT_LENGTH];
+
+    @Test
+    public void formatRate() throws Exception {
+        assertEquals("-- B/s", rate(RateEstimator.UNKNOWN));
+        assertEquals("0 B/s", rate(0));
+        assertEquals("512 B/s", rate(512));
+        assertEquals("1.0 KB/s", rate(1023.6));
+        assertEquals("1.2 MB/s", rate(1.2 * 1024 * 1024));
+        assertEquals("99.9 MB/s", rate(99.9 * 1024 * 1024));
+        assertEquals("120 MB/s", rate(120 * 1024 * 1024));
+    }
+
+    @Test
+    public void formatRemainingTime() throws Exception {
+        assertEquals("-- left", remaining(RateEstimator.UNKNOWN));
+        assertEquals("0:00 left", remaining(0));
+        assertEquals("0:14 left", remaining(13001));
+        assertEquals("12:05 left", remaining(725000));
+        assertEquals("1:02:03 left", remaining(3723000));
+        assertEquals("99:59:59 left", remaining(100L * 3600 * 1000 - 1000));
+        assertEquals("-- left", remaining(100L * 3600 * 1000 - 999));
+        assertEquals("-- left", remaining(100L * 3600 * 1000));
+        // 速率估算饱和时的结果, 不能因为向上取整溢出.
+        assertEquals("-- left", remaining(Long.MAX_VALUE));
+        assertEquals("-- left", remaining(Long.MAX_VALUE - 500));
+    }
+
+    private String rate(double bytesPerSecond) {
+        return new String(mBuffer, 0, RateTextFormatter.formatRate(bytesPerSecond, mBuffer, 0));
+    }
+
+    private String remaining(long millis) {
+        return new String(mBuffer, 0, RateTextFormatter.formatRemainingTime(millis, mBuffer, 0));
+    }
+}
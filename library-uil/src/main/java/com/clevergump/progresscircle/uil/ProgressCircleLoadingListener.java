@@ -0,0 +1,143 @@
+package com.clevergump.progresscircle.uil;
+
+import android.graphics.Bitmap;
+import android.support.v4.view.ViewCompat;
+import android.view.View;
+
+import com.clevergump.progresscircle.library.ProgressCircle;
+import com.clevergump.progresscircle.library.core.PackedProgress;
+import com.nostra13.universalimageloader.core.assist.FailReason;
+import com.nostra13.universalimageloader.core.listener.ImageLoadingListener;
+import com.nostra13.universalimageloader.core.listener.ImageLoadingProgressListener;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 把 Universal-Image-Loader 的加载过程显示在一个 {@link ProgressCircle} 上.
+ * 同一个对象同时作为 {@link ImageLoadingListener} 和 {@link ImageLoadingProgressListener} 传给
+ * {@code ImageLoader.displayImage()}.
+ * <p>
+ * 每个对象在创建时就确定了对应的圆, 进度回调中不需要再查找控件. 列表中每个 item 创建一个, 保存在 ViewHolder 中重复使用即可.
+ * <p>
+ * UIL 每复制一块数据就回调一次进度, 这里只把最新的进度保存下来, 每一帧最多设置一次给圆.
+ * 开始加载时调用 {@link ProgressCircle#show()}, 结束时调用 {@link ProgressCircle#hide()},
+ * 所以命中缓存时圆不会闪现, 也不会触发重新布局.
+ */
+public class ProgressCircleLoadingListener implements ImageLoadingListener, ImageLoadingProgressListener {
+
+    // 显示加载进度的圆
+    private final ProgressCircle mCircle;
+    // 正在加载的图片的 URI. 加载结束后为 null, 之后迟到的进度回调会被忽略.
+    private volatile String mImageUri;
+    // 还没有设置给圆的最新进度, 打包为一个 long 值, 没有时为 PackedProgress.NONE.
+    private final AtomicLong mPendingProgress = new AtomicLong(PackedProgress.NONE);
+    // 是否已经安排了在下一帧设置进度
+    private final AtomicBoolean mFrameScheduled = new AtomicBoolean(false);
+    // 在下一帧把最新的进度设置给圆
+    private final Runnable mApplyProgressRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mFrameScheduled.set(false);
+            applyPendingProgress();
+        }
+    };
+
+    /**
+     * @param circle 显示加载进度的圆
+     */
+    public ProgressCircleLoadingListener(ProgressCircle circle) {
+        mCircle = circle;
+    }
+
+    /**
+     * 获取显示加载进度的圆.
+     *
+     * @return
+     */
+    public ProgressCircle getCircle() {
+        return mCircle;
+    }
+
+    @Override
+    public void onLoadingStarted(String imageUri, View view) {
+        cancelPendingProgress();
+        mImageUri = imageUri;
+        mCircle.resetProgress();
+        mCircle.show();
+    }
+
+    /**
+     * 可能在主线程中, 也可能在加载线程中回调 (同步加载时), 不会创建任何对象.
+     */
+    @Override
+    public void onProgressUpdate(String imageUri, View view, int current, int total) {
+        if (!isCurrentLoading(imageUri) || current < 0) {
+            return;
+        }
+        // 服务器没有返回文件大小时 total 小于0, 按总大小未知处理.
+        mPendingProgress.set(PackedProgress.pack(current, Math.max(total, 0)));
+        if (mFrameScheduled.compareAndSet(false, true)) {
+            ViewCompat.postOnAnimation(mCircle, mApplyProgressRunnable);
+        }
+    }
+
+    @Override
+    public void onLoadingComplete(String imageUri, View view, Bitmap loadedImage) {
+        if (!isCurrentLoading(imageUri)) {
+            return;
+        }
+        // 隐藏之前先显示最后的进度, 满足最短显示时长的情况下还会再显示一会儿.
+        mCircle.removeCallbacks(mApplyProgressRunnable);
+        mFrameScheduled.set(false);
+        applyPendingProgress();
+        onLoadingFinished();
+    }
+
+    @Override
+    public void onLoadingFailed(String imageUri, View view, FailReason failReason) {
+        if (!isCurrentLoading(imageUri)) {
+            return;
+        }
+        cancelPendingProgress();
+        onLoadingFinished();
+    }
+
+    @Override
+    public void onLoadingCancelled(String imageUri, View view) {
+        if (!isCurrentLoading(imageUri)) {
+            return;
+        }
+        cancelPendingProgress();
+        onLoadingFinished();
+    }
+
+    /**
+     * 控件被复用时, 新的加载已经开始之后, 之前的加载任务的进度和取消等回调仍然可能迟到, 这些回调需要忽略.
+     *
+     * @param imageUri
+     * @return
+     */
+    private boolean isCurrentLoading(String imageUri) {
+        // URI 为空时 UIL 也会回调开始和结束.
+        return imageUri == null ? mImageUri == null : imageUri.equals(mImageUri);
+    }
+
+    private void onLoadingFinished() {
+        mImageUri = null;
+        mCircle.hide();
+    }
+
+    private void applyPendingProgress() {
+        long packed = mPendingProgress.getAndSet(PackedProgress.NONE);
+        if (packed != PackedProgress.NONE) {
+            mCircle.setProgress(PackedProgress.progressOf(packed), PackedProgress.maxOf(packed));
+        }
+    }
+
+    private void cancelPendingProgress() {
+        mCircle.removeCallbacks(mApplyProgressRunnable);
+        mFrameScheduled.set(false);
+        mPendingProgress.set(PackedProgress.NONE);
+    }
+}
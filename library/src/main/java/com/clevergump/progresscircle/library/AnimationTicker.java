@@ -0,0 +1,197 @@
+package com.clevergump.progresscircle.library;
+
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+
+/**
+ * 整个进程共用的帧时钟, 驱动所有圆的旋转 (不确定进度) 动画和平滑进度动画.
+ * <p>
+ * 不管有多少个圆在做动画, 每一帧都只向系统注册一个回调, 再由这个回调依次通知所有正在做动画的圆. 没有任何圆在做动画时不会注册任何回调.
+ * Android 4.1 及以上的系统使用 Choreographer, 更低的版本使用主线程的 Handler 每隔大约一帧的时间执行一次.
+ * <p>
+ * 只能在主线程中使用.
+ */
+final class AnimationTicker {
+
+    /**
+     * 接收每一帧通知的监听器.
+     */
+    interface Listener {
+
+        /**
+         * 新的一帧开始了.
+         *
+         * @param frameTimeNanos 这一帧的时间, 单位纳秒. 只能用来计算两帧之间的时间差.
+         * @return 是否还需要下一帧. 返回 false 后会被自动移除.
+         */
+        boolean onAnimationFrame(long frameTimeNanos);
+    }
+
+    // 不支持 Choreographer 时两帧之间的间隔, 单位毫秒.
+    private static final long FALLBACK_FRAME_DELAY_MS = 16;
+
+    private static AnimationTicker sInstance;
+
+    // 正在做动画的监听器
+    private final ArrayList<Listener> mListeners = new ArrayList<Listener>();
+    // 分发每一帧时使用的可复用数组. 分发过程中监听器可能会添加或移除监听器, 所以先复制一份再分发.
+    private Listener[] mDispatchBuffer = new Listener[8];
+    // 是否已经向系统注册了下一帧的回调
+    private boolean mFramePosted;
+    // 负责向系统注册下一帧的回调
+    private final FrameScheduler mFrameScheduler;
+
+    private AnimationTicker() {
+        // Choreographer 是 Android 4.1 才加入的, 放在单独的类中, 避免低版本的系统加载这个类时出错.
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            mFrameScheduler = new ChoreographerFrameScheduler(this);
+        } else {
+            mFrameScheduler = new HandlerFrameScheduler(this);
+        }
+    }
+
+    /**
+     * 获取唯一的实例.
+     *
+     * @return
+     */
+    static AnimationTicker getInstance() {
+        if (sInstance == null) {
+            sInstance = new AnimationTicker();
+        }
+        return sInstance;
+    }
+
+    /**
+     * 开始接收每一帧的通知. 重复添加同一个监听器不会有任何效果.
+     *
+     * @param listener
+     */
+    void addListener(Listener listener) {
+        if (!mListeners.contains(listener)) {
+            mListeners.add(listener);
+        }
+        if (!mFramePosted) {
+            mFramePosted = true;
+            mFrameScheduler.postFrame();
+        }
+    }
+
+    /**
+     * 停止接收每一帧的通知. 最后一个监听器被移除后会立即取消已经注册的回调.
+     *
+     * @param listener
+     */
+    void removeListener(Listener listener) {
+        mListeners.remove(listener);
+        if (mListeners.isEmpty() && mFramePosted) {
+            mFramePosted = false;
+            mFrameScheduler.cancelFrame();
+        }
+    }
+
+    /**
+     * 获取正在做动画的监听器的数量.
+     *
+     * @return
+     */
+    int getListenerCount() {
+        return mListeners.size();
+    }
+
+    /**
+     * 把新的一帧分发给所有监听器.
+     *
+     * @param frameTimeNanos
+     */
+    private void doFrame(long frameTimeNanos) {
+        mFramePosted = false;
+        int count = mListeners.size();
+        if (mDispatchBuffer.length < count) {
+            mDispatchBuffer = new Listener[Math.max(count, mDispatchBuffer.length * 2)];
+        }
+        Listener[] listeners = mListeners.toArray(mDispatchBuffer);
+        for (int i = 0; i < count; i++) {
+            Listener listener = listeners[i];
+            listeners[i] = null;
+            if (!listener.onAnimationFrame(frameTimeNanos)) {
+                mListeners.remove(listener);
+            }
+        }
+        if (!mListeners.isEmpty() && !mFramePosted) {
+            mFramePosted = true;
+            mFrameScheduler.postFrame();
+        }
+    }
+
+    /**
+     * 向系统注册下一帧的回调.
+     */
+    private interface FrameScheduler {
+
+        void postFrame();
+
+        void cancelFrame();
+    }
+
+    /**
+     * 使用 Choreographer 注册回调, 和界面的刷新同步.
+     */
+    private static class ChoreographerFrameScheduler implements FrameScheduler, Choreographer.FrameCallback {
+
+        private final AnimationTicker mTicker;
+        private final Choreographer mChoreographer = Choreographer.getInstance();
+
+        ChoreographerFrameScheduler(AnimationTicker ticker) {
+            mTicker = ticker;
+        }
+
+        @Override
+        public void postFrame() {
+            mChoreographer.postFrameCallback(this);
+        }
+
+        @Override
+        public void cancelFrame() {
+            mChoreographer.removeFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mTicker.doFrame(frameTimeNanos);
+        }
+    }
+
+    /**
+     * 使用主线程的 Handler 注册回调, 用于不支持 Choreographer 的系统.
+     */
+    private static class HandlerFrameScheduler implements FrameScheduler, Runnable {
+
+        private final AnimationTicker mTicker;
+        private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+        HandlerFrameScheduler(AnimationTicker ticker) {
+            mTicker = ticker;
+        }
+
+        @Override
+        public void postFrame() {
+            mHandler.postDelayed(this, FALLBACK_FRAME_DELAY_MS);
+        }
+
+        @Override
+        public void cancelFrame() {
+            mHandler.removeCallbacks(this);
+        }
+
+        @Override
+        public void run() {
+            mTicker.doFrame(SystemClock.uptimeMillis() * 1000000L);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.clevergump.progresscircle.library;
+
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+/**
+ * 圆在指定尺寸下的几何数据, 创建后不可修改.
+ * <p>
+ * 所有数值都在控件尺寸或样式变化时一次性计算好, 绘制时只需要直接读取, 不再需要每一帧都重新计算.
+ * 同一个样式在相同尺寸下的几何数据由 {@link ProgressCircleStyle#obtainGeometry(int, int)} 缓存并共享.
+ * 圆心的坐标以及各个矩形的坐标都是相对于控件自身左上角的点的距离, 不是相对于其父控件左上角的点的距离.
+ */
+final class CircleGeometry {
+
+    // 计算扇形区域的外框时, 为抗锯齿的边缘额外预留的像素数.
+    private static final int ANTI_ALIAS_PADDING = 2;
+
+    // 计算时使用的控件宽度
+    final int width;
+    // 计算时使用的控件高度
+    final int height;
+    // 计算时使用的样式
+    final ProgressCircleStyle style;
+
+    // 圆心的X坐标
+    final float centerX;
+    // 圆心的Y坐标
+    final float centerY;
+    // 实际的外边框半径, 不超过控件宽高中较小者的1/2.
+    final float outerRadius;
+    // 实际的边框宽度, 不超过实际的外边框半径.
+    final float borderWidth;
+    // 调用 Canvas.drawCircle()方法绘制边框时需要传入的半径值.
+    final float circleRadius;
+    // 圆的内边框的半径, 也就是扇形的半径.
+    final float innerRadius;
+    // 圆内画弧线时的矩形外框. 只能读取, 不能修改.
+    private final RectF mInnerArcRect;
+    // 绘制边框的画笔. 边框宽度没有被修正时就是样式中共享的画笔. 只能读取, 不能修改.
+    private final Paint mBorderPaint;
+
+    private CircleGeometry(int width, int height, ProgressCircleStyle style) {
+        this.width = width;
+        this.height = height;
+        this.style = style;
+
+        // 实际宽高中较小者的1/2
+        int halfSize = Math.min(width, height) >> 1;
+        centerX = width >> 1;
+        centerY = height >> 1;
+        // 圆的外边框半径不能超过该控件本身的1/2尺寸.
+        outerRadius = Math.min(halfSize, style.getCircleOuterRadius());
+        // 圆的边框厚度不能超过圆的外边框半径.
+        borderWidth = Math.min(outerRadius, style.getCircleBorderWidth());
+        circleRadius = outerRadius - borderWidth / 2;
+        innerRadius = circleRadius - borderWidth / 2;
+        mInnerArcRect = new RectF(centerX - innerRadius, centerY - innerRadius,
+                centerX + innerRadius, centerY + innerRadius);
+        if (borderWidth == style.getCircleBorderWidth()) {
+            mBorderPaint = style.getBorderPaint();
+        } else {
+            mBorderPaint = ProgressCircleStyle.createBorderPaint(style.getCircleBorderColor(), borderWidth);
+        }
+    }
+
+    /**
+     * 计算指定尺寸和样式下的几何数据.
+     *
+     * @param width  控件宽度
+     * @param height 控件高度
+     * @param style  样式
+     * @return
+     */
+    static CircleGeometry create(int width, int height, ProgressCircleStyle style) {
+        return new CircleGeometry(width, height, style);
+    }
+
+    /**
+     * 判断该几何数据是否是根据给定的尺寸和样式计算出来的, 如果是则可以直接复用.
+     *
+     * @param width
+     * @param height
+     * @param style
+     * @return
+     */
+    boolean matches(int width, int height, ProgressCircleStyle style) {
+        return this.width == width && this.height == height && this.style == style;
+    }
+
+    /**
+     * 尺寸和样式都相同的几何数据视为相等, 这样可以直接作为 {@link SpriteAtlasCache} 中的键, 查找时不需要创建新的对象.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CircleGeometry)) {
+            return false;
+        }
+        CircleGeometry other = (CircleGeometry) o;
+        return matches(other.width, other.height, other.style);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = width;
+        result = 31 * result + height;
+        result = 31 * result + System.identityHashCode(style);
+        return result;
+    }
+
+    /**
+     * 获取圆内画弧线时的矩形外框. 返回的对象是共享的, 不能修改.
+     *
+     * @return
+     */
+    RectF getInnerArcRect() {
+        return mInnerArcRect;
+    }
+
+    /**
+     * 获取绘制边框的画笔. 返回的对象是共享的, 不能修改.
+     *
+     * @return
+     */
+    Paint getBorderPaint() {
+        return mBorderPaint;
+    }
+
+    /**
+     * 计算两个扫过角度之间的扇形区域 (包括圆心) 的外框, 用于只刷新扇形发生变化的那一部分.
+     *
+     * @param startAngle 绘制扇形的起始角度
+     * @param sweepFrom  变化前的扫过角度
+     * @param sweepTo    变化后的扫过角度
+     * @param outBounds  用于保存结果的矩形
+     */
+    void getSectorBounds(float startAngle, float sweepFrom, float sweepTo, Rect outBounds) {
+        float from = startAngle + Math.min(sweepFrom, sweepTo);
+        float to = startAngle + Math.max(sweepFrom, sweepTo);
+        float left = centerX;
+        float top = centerY;
+        float right = centerX;
+        float bottom = centerY;
+        // 外框由圆心, 扇形两端圆周上的点, 以及扇形跨过的0°, 90°, 180°, 270°这几个方向上圆周上的点共同决定.
+        float axisAngle = (float) Math.ceil(from / 90) * 90;
+        float angle = from;
+        while (true) {
+            double radians = Math.toRadians(angle);
+            float x = centerX + (float) (innerRadius * Math.cos(radians));
+            float y = centerY + (float) (innerRadius * Math.sin(radians));
+            left = Math.min(left, x);
+            top = Math.min(top, y);
+            right = Math.max(right, x);
+            bottom = Math.max(bottom, y);
+            if (angle == to) {
+                break;
+            }
+            if (axisAngle < to) {
+                angle = axisAngle;
+                axisAngle += 90;
+            } else {
+                angle = to;
+            }
+        }
+        outBounds.set((int) Math.floor(left) - ANTI_ALIAS_PADDING,
+                (int) Math.floor(top) - ANTI_ALIAS_PADDING,
+                (int) Math.ceil(right) + ANTI_ALIAS_PADDING,
+                (int) Math.ceil(bottom) + ANTI_ALIAS_PADDING);
+    }
+}
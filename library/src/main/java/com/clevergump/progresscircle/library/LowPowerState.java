@@ -0,0 +1,87 @@
+package com.clevergump.progresscircle.library;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Build;
+import android.os.PowerManager;
+
+/**
+ * 记录当前是否处于低功耗状态, 整个进程共用. 处于低功耗状态时进度圆使用单独的 (通常更低的) 最大刷新频率.
+ * <p>
+ * 系统开启了省电模式 (Android 5.0 及以上), 或者应用通过 {@link ProgressCircle#setLowPowerHint(boolean)}
+ * 声明自己处于后台或低功耗的界面时, 都认为处于低功耗状态. 省电模式的变化通过广播得知, 判断时不需要任何跨进程调用.
+ */
+final class LowPowerState {
+
+    // 系统是否开启了省电模式
+    private static volatile boolean sPowerSaveMode;
+    // 应用是否声明了处于低功耗状态
+    private static volatile boolean sLowPowerHint;
+    // 是否已经注册了省电模式变化的广播
+    private static boolean sRegistered;
+
+    private LowPowerState() {
+    }
+
+    /**
+     * 第一次调用时读取省电模式并注册它变化时的广播. 只能在主线程中调用.
+     *
+     * @param context
+     */
+    static void register(Context context) {
+        if (sRegistered) {
+            return;
+        }
+        sRegistered = true;
+        // 省电模式是 Android 5.0 才加入的, 放在单独的类中, 避免低版本的系统加载这个类时出错.
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            PowerSaveModeReceiver.register(context.getApplicationContext());
+        }
+    }
+
+    /**
+     * 是否处于低功耗状态. 可以在任意线程中调用.
+     *
+     * @return
+     */
+    static boolean isLowPower() {
+        return sLowPowerHint || sPowerSaveMode;
+    }
+
+    static void setLowPowerHint(boolean lowPower) {
+        sLowPowerHint = lowPower;
+    }
+
+    static boolean getLowPowerHint() {
+        return sLowPowerHint;
+    }
+
+    /**
+     * 接收省电模式变化的广播.
+     */
+    private static class PowerSaveModeReceiver extends BroadcastReceiver {
+
+        private final PowerManager mPowerManager;
+
+        private PowerSaveModeReceiver(PowerManager powerManager) {
+            mPowerManager = powerManager;
+        }
+
+        static void register(Context appContext) {
+            PowerManager powerManager = (PowerManager) appContext.getSystemService(Context.POWER_SERVICE);
+            if (powerManager == null) {
+                return;
+            }
+            sPowerSaveMode = powerManager.isPowerSaveMode();
+            appContext.registerReceiver(new PowerSaveModeReceiver(powerManager),
+                    new IntentFilter(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED));
+        }
+
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            sPowerSaveMode = mPowerManager.isPowerSaveMode();
+        }
+    }
+}
@@ -3,78 +3,242 @@ package com.clevergump.progresscircle.library;
 import android.content.Context;
 import android.content.res.TypedArray;
 import android.graphics.Canvas;
-import android.graphics.Color;
-import android.graphics.Paint;
-import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.view.View;
 
+import com.clevergump.progresscircle.library.core.AtomicProgress;
+import com.clevergump.progresscircle.library.core.MilestoneTracker;
+import com.clevergump.progresscircle.library.core.ProgressAggregator;
+import com.clevergump.progresscircle.library.core.ProgressMetrics;
+import com.clevergump.progresscircle.library.core.ProgressSink;
+import com.clevergump.progresscircle.library.core.ProgressState;
+import com.clevergump.progresscircle.library.core.ProgressTextFormatter;
+import com.clevergump.progresscircle.library.core.RateEstimator;
+import com.clevergump.progresscircle.library.core.RateTextFormatter;
 import com.clevergump.progresscircle.library.utils.DensityUtils;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 
 /**
  * 能显示加载进度的圆.
+ * <p>
+ * 实际的绘制工作全部由 {@link ProgressCircleDrawable} 完成, 这个类只负责解析属性, 测量尺寸,
+ * 以及在任意线程中安全地更新进度.
  */
-public class ProgressCircle extends View {
+public class ProgressCircle extends View implements ProgressSink {
 
     /*---------------------------- 常量 -------------------------------*/
 
+    // 静态图层的缓存方式: 不缓存, 每一帧都直接绘制边框.
+    public static final int STATIC_LAYER_NONE = 0;
+    // 静态图层的缓存方式: 录制到 Picture 中. 开启硬件加速且系统版本低于 Android 6.0 时自动改用 Bitmap.
+    public static final int STATIC_LAYER_PICTURE = 1;
+    // 静态图层的缓存方式: 绘制到和控件尺寸相同的 Bitmap 中.
+    public static final int STATIC_LAYER_BITMAP = 2;
+
+    // 绘制方式: 每一帧都直接绘制边框, 扇形和文字.
+    public static final int RENDER_MODE_NORMAL = 0;
+    // 绘制方式: 预先把 0% ~ 100% 的所有帧绘制到共享的图集中, 每一帧只需要一次 drawBitmap(). 适合同时显示很多个圆的列表.
+    public static final int RENDER_MODE_SPRITE = 1;
+
+    // 进度文字: 百分比, 例如 "42%".
+    public static final int LABEL_PERCENT = 0;
+    // 进度文字: 传输速率, 例如 "1.2 MB/s". 进度需要以字节为单位.
+    public static final int LABEL_RATE = 1;
+    // 进度文字: 剩余时间, 例如 "0:14 left".
+    public static final int LABEL_REMAINING_TIME = 2;
+
+    // 最大刷新频率: 使用全局的设置.
+    public static final float REDRAW_RATE_DEFAULT = -1;
+    // 最大刷新频率: 不限制, 进度每一帧都可以刷新.
+    public static final float REDRAW_RATE_UNLIMITED = 0;
+
     private static final String TAG = ProgressCircle.class.getSimpleName();
     // 默认宽高的数值, 单位dp.
     public static final int DEF_SIZE_IN_DP = 50;
     // 圆边框的默认宽度, 单位dp.
     public static final int DEF_CIRCLE_BORDER_WIDTH_IN_DP = 3;
-    // 圆边框的默认颜色
-    private static final int DEF_CIRCLE_BORDER_COLOR = Color.parseColor("#33B5E5");
-    // 圆内扇形的默认颜色
-    private static final int DEF_INNER_PIE_COLOR = Color.parseColor("#33B5E5");
-    ;
     // 扇形的最大进度, 进度达到最大进度时, 这个扇形就是一个圆.
     private static final int DEF_MAX_PROGRESS = 100;
     // 扇形的默认绘制进度.
     private static final int DEF_PROGRESS = 0;
-    // 绘制扇形的默认起始角度.
-    private static final float DEF_PIE_STARGING_ANGLE = -90;
+    // 进度文字的默认大小, 单位sp.
+    public static final int DEF_PROGRESS_TEXT_SIZE_IN_SP = 15;
+    // 调用 show() 之后延迟显示的默认时长, 单位ms. 在这之前就调用了 hide() 时 (例如图片命中缓存), 控件根本不会显示.
+    public static final int DEF_SHOW_DELAY_MS = 500;
+    // 显示之后至少保持显示的默认时长, 单位ms. 避免显示一下就立即消失的闪烁.
+    public static final int DEF_MIN_SHOW_TIME_MS = 500;
+    // 低功耗状态下全局默认的最大刷新频率, 单位Hz. 进度文字每秒变化超过10 ~ 15次时, 人眼已经看不清了.
+    public static final float DEF_LOW_POWER_MAX_REDRAW_RATE = 10;
 
-    /*--------------------------- 普通字段 -------------------------------*/
+    // 主线程的 Handler, 工作线程更新进度时通过它把刷新任务切换到主线程执行. 所有实例共用一个.
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+    // 把任务投递到主线程执行的 Executor
+    private static final Executor sMainThreadExecutor = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            sMainHandler.post(command);
+        }
+    };
+    // 全局的最大刷新频率, 单位Hz. 只在主线程中使用.
+    private static float sDefaultMaxRedrawRate = REDRAW_RATE_UNLIMITED;
+    // 低功耗状态下全局的最大刷新频率, 单位Hz. 只在主线程中使用.
+    private static float sDefaultLowPowerMaxRedrawRate = DEF_LOW_POWER_MAX_REDRAW_RATE;
 
-    // 绘制圆的画笔
-    private Paint mBorderPaint;
-    // 绘制圆内扇形的画笔
-    private Paint mContentPaint;
-    // 绘制进度百分比文字描述的画笔
-    private Paint mProgressTextPaint;
+    /*--------------------------- 普通字段 -------------------------------*/
 
+    // 负责所有绘制工作的 Drawable
+    private ProgressCircleDrawable mDrawable;
     // 默认宽高的变量
     private float mDefSize;
-    // 圆内画弧线时的矩形外框.
-    private RectF mInnerArcRectF;
-
-    // 绘制圆时, 调用 Canvas.drawCircle()方法时需要传入的半径值.
-    private float mCircleRadius;
 
     /*--------------------------- 代表自定义属性的字段 ----------------------*/
 
-    // 圆边框的颜色
-    private int mCircleBorderColor;
-    // 圆边框的宽度
-    private float mCircleBorderWidth;
-    // 圆的外边框的半径
-    private float mCircleOuterRadius;
-    // 圆的内边框的半径
-    private float mCircleInnerRadius;
-    // 内部扇形的颜色
-    private int mInnerPieColor;
-    // 内部扇形的最大进度. 达到最大进度时, 内部的扇形其实是一个圆形.
+    // 内部扇形的最大进度. 达到最大进度时, 内部的扇形其实是一个圆形. 只用于初始化 mProgressState.
     private int mInnerPieMaxProgress;
-    // 内部扇形当前的绘制进度.
+    // 内部扇形当前的绘制进度. 只用于初始化 mProgressState.
     private int mInnerPieProgress;
-    // 绘制扇形的起始角度
-    private float mInnerPieStartingAngle;
-    // 实际宽高的一半, 通常用来和用户设置的圆的外边框的半径进行比较, 然后选择二者中的较小者作为圆的外边框半径的实际值.
-    private int mHalfSize;
+    // 是否只允许进度单调递增
+    private boolean mMonotonicProgress;
+    // 静态图层的缓存方式
+    private int mStaticLayerMode;
+    // 绘制方式
+    private int mRenderMode;
+    // 是否是不确定进度的旋转模式
+    private boolean mIndeterminate;
+    // 是否平滑地过渡到新的进度
+    private boolean mSmoothProgress;
+    // 进度文字显示的内容
+    private int mLabelMode;
+    // 调用 show() 之后延迟显示的时长, 单位ms.
+    private int mShowDelay;
+    // 显示之后至少保持显示的时长, 单位ms.
+    private int mMinShowTime;
+    // 是否已经添加到了窗口中
+    private boolean mAttachedToWindow;
+    // 是否能被看到: 添加到了窗口中, 并且自身, 所有父控件以及窗口都可见. 工作线程也会读取.
+    // 不能被看到时只记录进度, 不刷新界面, 也不向主线程投递任何任务, 重新能被看到时补画一次.
+    private volatile boolean mVisibleToUser;
+
+    /*--------------------------- 跨线程更新进度相关的字段 ----------------------*/
+
+    // (当前进度, 最大进度) 的唯一数据源, 任意线程都通过 CAS 整体更新, 绘制时整体读取, 不会读到撕裂的数值.
+    // 工作线程只会覆盖这个值, 所以不管工作线程更新得多频繁, 主线程每次刷新时都只会绘制最新的那一个.
+    private AtomicProgress mProgressState;
+    // 是否已经向主线程投递了刷新任务. 保证每个控件同一时刻最多只有一个待执行的刷新任务.
+    private final AtomicBoolean mProgressUpdateScheduled = new AtomicBoolean(false);
+    // 在主线程中刷新界面的任务.
+    private final Runnable mInvalidateRunnable = new Runnable() {
+        @Override
+        public void run() {
+            // 先清除标记再刷新, 这样在这之后写入的新进度一定会再投递一次刷新任务, 不会丢失.
+            mProgressUpdateScheduled.set(false);
+            applyProgressWithinRateCap();
+        }
+    };
+
+    /*--------------------------- 限制刷新频率相关的字段 ----------------------*/
+
+    // 最大刷新频率, 单位Hz. 为 REDRAW_RATE_DEFAULT 时使用全局的设置.
+    private float mMaxRedrawRate = REDRAW_RATE_DEFAULT;
+    // 低功耗状态下的最大刷新频率, 单位Hz. 为 REDRAW_RATE_DEFAULT 时使用全局的设置.
+    private float mLowPowerMaxRedrawRate = REDRAW_RATE_DEFAULT;
+    // 上一次因为进度变化而刷新的时间, 只在限制了刷新频率时记录. 只在主线程中使用.
+    private long mLastProgressRedrawTime;
+
+    /*--------------------------- 合并多个进度来源相关的字段 ----------------------*/
+
+    // 合并多个进度来源的聚合器, 可以为 null.
+    private ProgressAggregator mProgressAggregator;
+    // 读取聚合器时使用的可复用快照, 只在主线程中使用.
+    private final ProgressAggregator.Snapshot mAggregatorSnapshot = new ProgressAggregator.Snapshot();
+    // 聚合器的进度变化时, 在更新进度的线程中安排下一帧读取一次.
+    private final ProgressAggregator.Listener mAggregatorListener = new ProgressAggregator.Listener() {
+        @Override
+        public void onProgressChanged(ProgressAggregator aggregator) {
+            scheduleSourcePull();
+        }
+    };
+
+    /*--------------------------- 读取外部进度来源相关的字段 ----------------------*/
+
+    // 是否已经安排了下一帧读取聚合器和进度登记表. 直到那一帧读取时才清除, 所以每一帧最多读取一次, 也最多向主线程投递一次任务.
+    private final AtomicBoolean mSourcePullScheduled = new AtomicBoolean(false);
+    // 在共享的帧时钟中注册的读取帧回调, 只执行一次. 两帧之间不管来源更新了多少次, 都只会读取一次.
+    private final AnimationTicker.Listener mSourcePullFrameListener = new AnimationTicker.Listener() {
+        @Override
+        public boolean onAnimationFrame(long frameTimeNanos) {
+            mSourcePullScheduled.set(false);
+            pullAggregatedProgress();
+            pullRegistryProgress();
+            return false;
+        }
+    };
+    // 在主线程中注册读取帧回调的任务
+    private final Runnable mScheduleSourcePullRunnable = new Runnable() {
+        @Override
+        public void run() {
+            AnimationTicker.getInstance().addListener(mSourcePullFrameListener);
+        }
+    };
+
+    /*--------------------------- 速率估算相关的字段 ----------------------*/
+
+    // 根据进度更新的时间估算速率和剩余时间, 可以为 null. 只在主线程中更新.
+    private RateEstimator mRateEstimator;
+
+    /*--------------------------- 延迟显示和隐藏相关的字段 ----------------------*/
+
+    // 通过 show() 显示出来的时刻, 没有通过 show() 显示时为 -1.
+    private long mShowStartTime = -1;
+    // 是否有待执行的延迟显示任务
+    private boolean mPostedShow;
+    // 是否有待执行的延迟隐藏任务
+    private boolean mPostedHide;
+    // 最后一次调用的是否是 hide()
+    private boolean mDismissed;
+    // 延迟显示的任务
+    private final Runnable mDelayedShowRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mPostedShow = false;
+            if (!mDismissed) {
+                mShowStartTime = SystemClock.uptimeMillis();
+                setVisibility(VISIBLE);
+            }
+        }
+    };
+    // 延迟隐藏的任务
+    private final Runnable mDelayedHideRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mPostedHide = false;
+            mShowStartTime = -1;
+            setVisibility(INVISIBLE);
+        }
+    };
+
+    /*--------------------------- 运行统计相关的字段 ----------------------*/
+
+    // 这个控件的运行统计, 可以为 null. 工作线程也会读取.
+    private volatile ProgressMetrics mMetrics;
+
+    /*--------------------------- 里程碑相关的字段 ----------------------*/
+
+    // 进度越过里程碑, 完成或者清零时回调, 可以为 null. 工作线程也会读取.
+    private volatile MilestoneTracker mMilestoneTracker;
+
+    /*--------------------------- 进度登记表相关的字段 ----------------------*/
+
+    // 在进度登记表中的订阅, 没有订阅时为 null. 只由 ProgressRegistry 在主线程中修改.
+    private ProgressRegistry.Binding mRegistryBinding;
 
     /*---------------------------------------------------------------------*/
 
@@ -96,9 +260,22 @@ public class ProgressCircle extends View {
      *
      * @param progress    当前进度
      * @param maxProgress 最大进度
+     * @see #setProgress(long, long)
      */
     public void setProgress(int progress, int maxProgress) {
-        if (progress > maxProgress) {
+        setProgress((long) progress, (long) maxProgress);
+    }
+
+    /**
+     * 设置当前进度. 可以表示超过 2GB 的下载进度, 可以在任意线程中调用.
+     *
+     * @param progress    当前进度
+     * @param maxProgress 最大进度. 为0表示总大小未知, 此时显示为不确定进度的旋转模式, 当前进度可以是任意非负数.
+     */
+    @Override
+    public void setProgress(long progress, long maxProgress) {
+        countMetric(ProgressMetrics.COUNTER_SET_PROGRESS);
+        if (maxProgress > 0 && progress > maxProgress) {
             Log.w(TAG, "Progress can't exceed max progress");
             return;
         }
@@ -110,55 +287,590 @@ public class ProgressCircle extends View {
             Log.w(TAG, "Max progress can't be less than zero");
             return;
         }
-        mInnerPieMaxProgress = maxProgress;
-        setProgress(progress);
+        updateProgress(progress, maxProgress);
     }
 
     /**
      * 设置当前进度.
      *
      * @param progress 当前进度
+     * @see #setProgress(long)
      */
     public void setProgress(int progress) {
+        setProgress((long) progress);
+    }
+
+    /**
+     * 设置当前进度, 最大进度保持不变. 可以在任意线程中调用.
+     *
+     * @param progress 当前进度
+     */
+    public void setProgress(long progress) {
+        countMetric(ProgressMetrics.COUNTER_SET_PROGRESS);
         if (progress < 0) {
-            Log.w(TAG, "Max progress can't be less than zero");
+            Log.w(TAG, "Progress can't be less than zero");
             return;
         }
-        if (progress > mInnerPieMaxProgress) {
-            Log.w(TAG, "Max progress can't be less than zero");
+        long maxProgress = getLongMaxProgress();
+        if (maxProgress > 0 && progress > maxProgress) {
+            Log.w(TAG, "Progress can't exceed max progress");
             return;
         }
-        mInnerPieProgress = progress;
-        if (isMainThread()) {
-            invalidate();
+        if (mProgressState.setProgress(progress)) {
+            scheduleInvalidate();
+            trackMilestones();
         } else {
-            postInvalidate();
+            countMetric(ProgressMetrics.COUNTER_SKIPPED);
         }
     }
 
     /**
-     * 获取当前进度.
+     * 获取当前进度. 超过 Integer.MAX_VALUE 时返回 Integer.MAX_VALUE.
      *
      * @return
+     * @see #getLongProgress()
      */
     public int getProgress() {
-        return mInnerPieProgress;
+        return (int) Math.min(getLongProgress(), Integer.MAX_VALUE);
     }
 
     /**
-     * 获取最大进度.
+     * 获取最大进度. 超过 Integer.MAX_VALUE 时返回 Integer.MAX_VALUE.
      *
      * @return
+     * @see #getLongMaxProgress()
      */
     public int getMaxProgress() {
-        return mInnerPieMaxProgress;
+        return (int) Math.min(getLongMaxProgress(), Integer.MAX_VALUE);
     }
 
     /**
-     * 将当前进度清零.
+     * 获取 long 类型的当前进度.
+     *
+     * @return
+     */
+    public long getLongProgress() {
+        return mProgressState.get().getProgress();
+    }
+
+    /**
+     * 获取 long 类型的最大进度.
+     *
+     * @return
+     */
+    public long getLongMaxProgress() {
+        return mProgressState.get().getMaxProgress();
+    }
+
+    /**
+     * 是否因为总大小未知 (最大进度为0) 而处于不确定进度的状态.
+     *
+     * @return
+     */
+    public boolean isProgressUnknown() {
+        return mProgressState.get().isIndeterminate();
+    }
+
+    /**
+     * 将当前进度清零. 可以在任意线程中调用. 刷新不受最大刷新频率的限制;
+     * 设置了里程碑时, 即使进度本来就是0也会回调 {@link MilestoneTracker.Listener#onReset(MilestoneTracker)}.
      */
     public void resetProgress() {
-        mInnerPieProgress = 0;
+        if (mProgressState.reset()) {
+            scheduleInvalidate();
+        }
+        MilestoneTracker tracker = mMilestoneTracker;
+        if (tracker != null) {
+            tracker.reset();
+        }
+    }
+
+    /**
+     * 设置样式. 多个控件可以共用同一个样式对象.
+     *
+     * @param style
+     */
+    public void setStyle(ProgressCircleStyle style) {
+        mDrawable.setStyle(style);
+    }
+
+    /**
+     * 获取样式.
+     *
+     * @return
+     */
+    public ProgressCircleStyle getStyle() {
+        return mDrawable.getStyle();
+    }
+
+    /**
+     * 设置圆的外边框半径. 实际绘制时不会超过控件宽高中较小者的1/2.
+     *
+     * @param outerRadius 外边框半径, 单位px.
+     */
+    public void setCircleOuterRadius(float outerRadius) {
+        setStyle(getStyle().buildUpon().setCircleOuterRadius(outerRadius).build());
+    }
+
+    /**
+     * 设置圆边框的宽度. 实际绘制时不会超过圆的外边框半径.
+     *
+     * @param borderWidth 边框宽度, 单位px.
+     */
+    public void setCircleBorderWidth(float borderWidth) {
+        setStyle(getStyle().buildUpon().setCircleBorderWidth(borderWidth).build());
+    }
+
+    /**
+     * 设置进度文字的大小.
+     *
+     * @param textSize 文字大小, 单位px.
+     */
+    public void setProgressTextSize(float textSize) {
+        setStyle(getStyle().buildUpon().setProgressTextSize(textSize).build());
+    }
+
+    /**
+     * 设置进度文字的颜色.
+     *
+     * @param textColor
+     */
+    public void setProgressTextColor(int textColor) {
+        setStyle(getStyle().buildUpon().setProgressTextColor(textColor).build());
+    }
+
+    /**
+     * 设置是否显示进度文字.
+     *
+     * @param showProgressText
+     */
+    public void setShowProgressText(boolean showProgressText) {
+        setStyle(getStyle().buildUpon().setShowProgressText(showProgressText).build());
+    }
+
+    /**
+     * 设置静态图层 (圆的边框) 的缓存方式.
+     *
+     * @param mode {@link #STATIC_LAYER_NONE}, {@link #STATIC_LAYER_PICTURE} 或 {@link #STATIC_LAYER_BITMAP}
+     */
+    public void setStaticLayerMode(int mode) {
+        mStaticLayerMode = mode;
+        mDrawable.setStaticLayerMode(mode);
+    }
+
+    /**
+     * 获取静态图层的缓存方式.
+     *
+     * @return
+     */
+    public int getStaticLayerMode() {
+        return mStaticLayerMode;
+    }
+
+    /**
+     * 设置绘制方式. 精灵图模式下进度的精度为1%, 图集由 {@link SpriteAtlasCache} 缓存.
+     *
+     * @param mode {@link #RENDER_MODE_NORMAL} 或 {@link #RENDER_MODE_SPRITE}
+     */
+    public void setRenderMode(int mode) {
+        mRenderMode = mode;
+        mDrawable.setRenderMode(mode);
+    }
+
+    /**
+     * 获取绘制方式.
+     *
+     * @return
+     */
+    public int getRenderMode() {
+        return mRenderMode;
+    }
+
+    /**
+     * 设置是否是不确定进度的旋转模式. 所有圆的动画都由同一个帧时钟驱动, 只有添加到窗口中并且可见时才会转动.
+     *
+     * @param indeterminate
+     */
+    public void setIndeterminate(boolean indeterminate) {
+        mIndeterminate = indeterminate;
+        mDrawable.setIndeterminate(indeterminate);
+    }
+
+    /**
+     * 是否是不确定进度的旋转模式.
+     *
+     * @return
+     */
+    public boolean isIndeterminate() {
+        return mIndeterminate;
+    }
+
+    /**
+     * 设置进度变化时是否平滑地过渡到新的进度. 和旋转模式一样由同一个帧时钟驱动.
+     *
+     * @param smoothProgress
+     */
+    public void setSmoothProgress(boolean smoothProgress) {
+        mSmoothProgress = smoothProgress;
+        mDrawable.setSmoothProgress(smoothProgress);
+    }
+
+    /**
+     * 是否平滑地过渡到新的进度.
+     *
+     * @return
+     */
+    public boolean isSmoothProgress() {
+        return mSmoothProgress;
+    }
+
+    /**
+     * 在延迟 {@link #setShowDelay(int)} 之后显示. 如果在这之前就调用了 {@link #hide()}, 则不会显示.
+     * 已经显示时只取消待执行的隐藏. 只能在主线程中调用.
+     * <p>
+     * 和 {@link #hide()} 配合使用时只在 VISIBLE 和 INVISIBLE 之间切换, 不会改变控件占用的空间, 所以不会触发重新布局.
+     * 例如加载图片时在开始加载时调用 {@link #show()}, 在加载结束时调用 {@link #hide()}, 命中缓存时控件根本不会闪现.
+     */
+    public void show() {
+        mDismissed = false;
+        sMainHandler.removeCallbacks(mDelayedHideRunnable);
+        mPostedHide = false;
+        if (mShowStartTime != -1 && getVisibility() == VISIBLE) {
+            return;
+        }
+        mShowStartTime = -1;
+        if (!mPostedShow) {
+            mPostedShow = true;
+            sMainHandler.postDelayed(mDelayedShowRunnable, mShowDelay);
+        }
+    }
+
+    /**
+     * 隐藏 (INVISIBLE). 还没有显示时取消待执行的显示; 已经显示但还不到 {@link #setMinShowTime(int)} 时,
+     * 等到满足最短显示时长后再隐藏. 只能在主线程中调用.
+     */
+    public void hide() {
+        mDismissed = true;
+        sMainHandler.removeCallbacks(mDelayedShowRunnable);
+        mPostedShow = false;
+        long shownTime = SystemClock.uptimeMillis() - mShowStartTime;
+        if (mShowStartTime == -1 || shownTime >= mMinShowTime) {
+            mShowStartTime = -1;
+            setVisibility(INVISIBLE);
+        } else if (!mPostedHide) {
+            mPostedHide = true;
+            sMainHandler.postDelayed(mDelayedHideRunnable, mMinShowTime - shownTime);
+        }
+    }
+
+    /**
+     * 设置调用 {@link #show()} 之后延迟显示的时长.
+     *
+     * @param showDelay 单位ms, 为0时在下一次消息循环中显示.
+     */
+    public void setShowDelay(int showDelay) {
+        mShowDelay = Math.max(showDelay, 0);
+    }
+
+    /**
+     * 获取调用 {@link #show()} 之后延迟显示的时长.
+     *
+     * @return 单位ms
+     */
+    public int getShowDelay() {
+        return mShowDelay;
+    }
+
+    /**
+     * 设置通过 {@link #show()} 显示之后至少保持显示的时长.
+     *
+     * @param minShowTime 单位ms, 为0时 {@link #hide()} 立即隐藏.
+     */
+    public void setMinShowTime(int minShowTime) {
+        mMinShowTime = Math.max(minShowTime, 0);
+    }
+
+    /**
+     * 获取通过 {@link #show()} 显示之后至少保持显示的时长.
+     *
+     * @return 单位ms
+     */
+    public int getMinShowTime() {
+        return mMinShowTime;
+    }
+
+    /**
+     * 设置进度变化时的最大刷新频率. 超过时把期间的更新合并到间隔结束时的那一次刷新中.
+     * 进度清零或者达到最大进度时总是立即刷新, 不会因为限速而停在旧的画面上. 旋转和平滑进度的动画不受影响.
+     *
+     * @param rate 单位Hz. 为 {@link #REDRAW_RATE_UNLIMITED} 时不限制, 为 {@link #REDRAW_RATE_DEFAULT}
+     *             时使用 {@link #setDefaultMaxRedrawRate(float)} 的设置.
+     */
+    public void setMaxRedrawRate(float rate) {
+        mMaxRedrawRate = rate < 0 ? REDRAW_RATE_DEFAULT : rate;
+    }
+
+    /**
+     * 获取进度变化时的最大刷新频率.
+     *
+     * @return 单位Hz
+     */
+    public float getMaxRedrawRate() {
+        return mMaxRedrawRate;
+    }
+
+    /**
+     * 设置低功耗状态下的最大刷新频率. 低功耗状态下实际使用的是这个值和 {@link #setMaxRedrawRate(float)} 中更低的那个.
+     *
+     * @param rate 单位Hz. 为 {@link #REDRAW_RATE_UNLIMITED} 时不额外限制, 为 {@link #REDRAW_RATE_DEFAULT}
+     *             时使用 {@link #setDefaultLowPowerMaxRedrawRate(float)} 的设置.
+     * @see #setLowPowerHint(boolean)
+     */
+    public void setLowPowerMaxRedrawRate(float rate) {
+        mLowPowerMaxRedrawRate = rate < 0 ? REDRAW_RATE_DEFAULT : rate;
+    }
+
+    /**
+     * 获取低功耗状态下的最大刷新频率.
+     *
+     * @return 单位Hz
+     */
+    public float getLowPowerMaxRedrawRate() {
+        return mLowPowerMaxRedrawRate;
+    }
+
+    /**
+     * 设置所有没有单独设置的控件在进度变化时的最大刷新频率. 只能在主线程中调用.
+     *
+     * @param rate 单位Hz, 为 {@link #REDRAW_RATE_UNLIMITED} 时不限制. 默认不限制.
+     */
+    public static void setDefaultMaxRedrawRate(float rate) {
+        sDefaultMaxRedrawRate = Math.max(rate, REDRAW_RATE_UNLIMITED);
+    }
+
+    /**
+     * 获取全局的最大刷新频率.
+     *
+     * @return 单位Hz
+     */
+    public static float getDefaultMaxRedrawRate() {
+        return sDefaultMaxRedrawRate;
+    }
+
+    /**
+     * 设置所有没有单独设置的控件在低功耗状态下的最大刷新频率. 只能在主线程中调用.
+     *
+     * @param rate 单位Hz, 为 {@link #REDRAW_RATE_UNLIMITED} 时不额外限制. 默认为 {@link #DEF_LOW_POWER_MAX_REDRAW_RATE}.
+     */
+    public static void setDefaultLowPowerMaxRedrawRate(float rate) {
+        sDefaultLowPowerMaxRedrawRate = Math.max(rate, REDRAW_RATE_UNLIMITED);
+    }
+
+    /**
+     * 获取低功耗状态下全局的最大刷新频率.
+     *
+     * @return 单位Hz
+     */
+    public static float getDefaultLowPowerMaxRedrawRate() {
+        return sDefaultLowPowerMaxRedrawRate;
+    }
+
+    /**
+     * 声明应用是否处于后台或者低功耗的界面, 例如常亮的下载界面. 为 true 时, 或者系统开启了省电模式 (Android 5.0 及以上) 时,
+     * 所有控件都使用低功耗状态下的最大刷新频率.
+     *
+     * @param lowPower
+     */
+    public static void setLowPowerHint(boolean lowPower) {
+        LowPowerState.setLowPowerHint(lowPower);
+    }
+
+    /**
+     * 获取应用是否声明了处于低功耗状态.
+     *
+     * @return
+     */
+    public static boolean getLowPowerHint() {
+        return LowPowerState.getLowPowerHint();
+    }
+
+    /**
+     * 设置进度文字的格式化器. 会覆盖 {@link #setLabelMode(int)} 的设置.
+     *
+     * @param formatter 为 null 时使用默认的百分比文字.
+     */
+    public void setProgressTextFormatter(ProgressTextFormatter formatter) {
+        mLabelMode = LABEL_PERCENT;
+        mDrawable.setProgressTextFormatter(formatter);
+    }
+
+    /**
+     * 设置进度文字显示的内容. 显示速率或剩余时间时, 如果还没有设置速率估算器, 会自动创建一个默认的.
+     *
+     * @param labelMode {@link #LABEL_PERCENT}, {@link #LABEL_RATE} 或 {@link #LABEL_REMAINING_TIME}
+     */
+    public void setLabelMode(int labelMode) {
+        mLabelMode = labelMode;
+        if (labelMode == LABEL_PERCENT) {
+            mDrawable.setProgressTextFormatter(null);
+            return;
+        }
+        if (mRateEstimator == null) {
+            mRateEstimator = new RateEstimator();
+        }
+        mDrawable.setProgressTextFormatter(new RateTextFormatter(mRateEstimator,
+                labelMode == LABEL_RATE ? RateTextFormatter.MODE_RATE : RateTextFormatter.MODE_REMAINING_TIME));
+    }
+
+    /**
+     * 获取进度文字显示的内容.
+     *
+     * @return
+     */
+    public int getLabelMode() {
+        return mLabelMode;
+    }
+
+    /**
+     * 设置速率估算器. 之后每次在主线程中显示新的进度时, 都会以当前时间记录一次采样, 速率和剩余时间可以通过
+     * {@link RateEstimator#getRate()}, {@link RateEstimator#getRemainingMillis()} 读取, 或者通过
+     * {@link RateEstimator#setListener(RateEstimator.Listener)} 接收变化的通知.
+     * <p>
+     * 工作线程两次刷新之间的多次更新会被合并, 但估算只依赖于进度的增量和经过的时间, 所以不受影响.
+     * 控件不能被看到时不会采样, 重新能被看到时的第一次采样就是这段时间内的平均速率. 只能在主线程中调用.
+     *
+     * @param estimator 为 null 时不再估算速率. 进度文字正在显示速率或剩余时间时不能为 null.
+     */
+    public void setRateEstimator(RateEstimator estimator) {
+        if (estimator == null && mLabelMode != LABEL_PERCENT) {
+            throw new IllegalStateException("Label mode " + mLabelMode + " requires a rate estimator");
+        }
+        mRateEstimator = estimator;
+        if (mLabelMode != LABEL_PERCENT) {
+            // 让格式化器读取新的估算器.
+            setLabelMode(mLabelMode);
+        }
+    }
+
+    /**
+     * 获取速率估算器.
+     *
+     * @return 没有设置时返回 null.
+     */
+    public RateEstimator getRateEstimator() {
+        return mRateEstimator;
+    }
+
+    /**
+     * 获取负责绘制的 Drawable.
+     *
+     * @return
+     */
+    public ProgressCircleDrawable getProgressDrawable() {
+        return mDrawable;
+    }
+
+    /**
+     * 设置合并多个进度来源的聚合器. 设置之后这个控件显示的就是所有来源合并后的进度,
+     * 各个来源在任意线程中更新进度即可, 不需要再调用 {@link #setProgress(int, int)}. 进度变化后每一帧最多读取一次.
+     * 同一个聚合器可以同时设置给多个控件. 只有添加到窗口中时才会监听聚合器, 所以聚合器不会一直引用这个控件.
+     * 只能在主线程中调用.
+     *
+     * @param aggregator 为 null 时取消关联.
+     */
+    public void setProgressAggregator(ProgressAggregator aggregator) {
+        if (aggregator == mProgressAggregator) {
+            return;
+        }
+        if (!mAttachedToWindow) {
+            // 添加到窗口中时再注册监听并读取.
+            mProgressAggregator = aggregator;
+            return;
+        }
+        if (mProgressAggregator != null) {
+            mProgressAggregator.removeListener(mAggregatorListener);
+        }
+        mProgressAggregator = aggregator;
+        if (aggregator != null) {
+            aggregator.addListener(mAggregatorListener);
+            pullAggregatedProgress();
+        }
+    }
+
+    /**
+     * 获取合并多个进度来源的聚合器.
+     *
+     * @return
+     */
+    public ProgressAggregator getProgressAggregator() {
+        return mProgressAggregator;
+    }
+
+    /**
+     * 是否只允许进度单调递增.
+     *
+     * @return
+     */
+    public boolean isMonotonicProgress() {
+        return mMonotonicProgress;
+    }
+
+    /**
+     * 设置是否只允许进度单调递增. 开启后, 在最大进度不变的情况下, 比当前进度小的更新会被直接丢弃,
+     * 适用于多个线程池线程乱序上报同一个任务进度的场景. {@link #resetProgress()} 不受此限制.
+     *
+     * @param monotonicProgress
+     */
+    public void setMonotonicProgress(boolean monotonicProgress) {
+        mMonotonicProgress = monotonicProgress;
+        mProgressState.setMonotonic(monotonicProgress);
+    }
+
+    /**
+     * 设置进度越过里程碑, 完成或者清零时的回调. 设置时立即用当前的进度更新一次, 已经越过的里程碑会立即回调.
+     * 回调在创建 tracker 时指定的 Executor 中执行, 需要在主线程中成批地回调时使用 {@link #getMainThreadExecutor()}.
+     *
+     * @param tracker 为 null 时不再回调.
+     */
+    public void setMilestoneTracker(MilestoneTracker tracker) {
+        mMilestoneTracker = tracker;
+        trackMilestones();
+    }
+
+    /**
+     * 获取进度越过里程碑, 完成或者清零时的回调.
+     *
+     * @return
+     */
+    public MilestoneTracker getMilestoneTracker() {
+        return mMilestoneTracker;
+    }
+
+    /**
+     * 获取在主线程中执行任务的 Executor, 所有控件共用一个. 用于创建在主线程中回调的 {@link MilestoneTracker}.
+     *
+     * @return
+     */
+    public static Executor getMainThreadExecutor() {
+        return sMainThreadExecutor;
+    }
+
+    /**
+     * 设置这个控件的运行统计. 开启了进程内全局的统计 ({@link ProgressMetrics#enableGlobal()}) 时, 事件也会同时计入全局的统计.
+     *
+     * @param metrics 为 null 时不再统计.
+     */
+    public void setMetrics(ProgressMetrics metrics) {
+        mMetrics = metrics;
+    }
+
+    /**
+     * 获取这个控件的运行统计.
+     *
+     * @return
+     */
+    public ProgressMetrics getMetrics() {
+        return mMetrics;
     }
 
     /*--------------------------- 私有方法 ---------------------------------*/
@@ -174,7 +886,6 @@ public class ProgressCircle extends View {
         initDefValues(context);
         initCustomAttrs(context, attrs, defStyleAttr);
         initActualValues();
-        initPaint();
     }
 
     /**
@@ -185,17 +896,18 @@ public class ProgressCircle extends View {
     private void initDefValues(Context context) {
         mDefSize = DensityUtils.dip2px(context, DEF_SIZE_IN_DP);
 
-        mCircleBorderColor = DEF_CIRCLE_BORDER_COLOR;
-        mCircleBorderWidth = DensityUtils.dip2px(getContext(), DEF_CIRCLE_BORDER_WIDTH_IN_DP);
-        mCircleOuterRadius = mDefSize / 2;
-        mInnerPieColor = DEF_INNER_PIE_COLOR;
+        mDrawable = new ProgressCircleDrawable(context);
         mInnerPieMaxProgress = DEF_MAX_PROGRESS;
         mInnerPieProgress = DEF_PROGRESS;
-        mInnerPieStartingAngle = DEF_PIE_STARGING_ANGLE;
+        mShowDelay = DEF_SHOW_DELAY_MS;
+        mMinShowTime = DEF_MIN_SHOW_TIME_MS;
+        LowPowerState.register(context);
     }
 
     /**
-     * 获取自定义属性的值
+     * 获取自定义属性的值.
+     * 如果通过 progressCircleStyle 属性引用了 style 资源, 则直接使用该资源对应的共享样式; 如果还直接设置了样式属性,
+     * 则以该样式为基础创建一个该控件独有的样式.
      *
      * @param context
      * @param attrs
@@ -206,6 +918,12 @@ public class ProgressCircle extends View {
         }
 
         TypedArray a = context.getTheme().obtainStyledAttributes(attrs, R.styleable.ProgressCircle, defStyleAttr, 0);
+        ProgressCircleStyle style = mDrawable.getStyle();
+        int styleResId = a.getResourceId(R.styleable.ProgressCircle_progressCircleStyle, 0);
+        if (styleResId != 0) {
+            style = ProgressCircleStyle.fromResource(context, styleResId);
+        }
+        ProgressCircleStyle.Builder styleBuilder = null;
         int indexCount = a.getIndexCount();
         for (int i = 0; i < indexCount; i++) {
             int index = a.getIndex(i);
@@ -218,22 +936,11 @@ public class ProgressCircle extends View {
             // 在 library module 中不能使用 switch 来遍历资源文件中定义的id, 但可以转为使用if来判断.
             // http://stackoverflow.com/questions/8476912/menu-item-ids-in-an-android-library-project
 
-            if (index == R.styleable.ProgressCircle_circleBorderColor) {
-                mCircleBorderColor = a.getColor(index, DEF_CIRCLE_BORDER_COLOR);
-            }
-            if (index == R.styleable.ProgressCircle_circleBorderWidth) {
-                // getDimension(), getDimensionPixelSize(), getDimensionPixelOffset()的对比:
-                // 不同点:
-                //      getDimension()方法返回 float.
-                //      getDimensionPixelSize(), getDimensionPixelOffset()方法都返回 int. (一个四舍五入, 一个直接舍弃小数部分).
-                // 相同点: 都会将我们设置的dp为单位的数值自动转换为以px为单位的数值, 所以无需我们操心了, 具体看源码.
-                mCircleBorderWidth = a.getDimension(index, mCircleBorderWidth);
-            }
-            if (index == R.styleable.ProgressCircle_circleOuterRadius) {
-                mCircleOuterRadius = a.getDimension(index, mCircleOuterRadius);
-            }
-            if (index == R.styleable.ProgressCircle_innerPieColor) {
-                mInnerPieColor = a.getColor(index, DEF_INNER_PIE_COLOR);
+            if (ProgressCircleStyle.isStyleAttribute(index)) {
+                if (styleBuilder == null) {
+                    styleBuilder = style.buildUpon();
+                }
+                styleBuilder.applyAttribute(a, index);
             }
             if (index == R.styleable.ProgressCircle_innerPieMaxProgress) {
                 // getInt() 和 getInteger()方法的区别:
@@ -244,10 +951,41 @@ public class ProgressCircle extends View {
             if (index == R.styleable.ProgressCircle_innerPieProgress) {
                 mInnerPieProgress = a.getInt(index, DEF_PROGRESS);
             }
-            if (index == R.styleable.ProgressCircle_innerPieStartingAngle) {
-                mInnerPieStartingAngle = a.getFloat(index, DEF_PIE_STARGING_ANGLE);
+            if (index == R.styleable.ProgressCircle_staticLayerMode) {
+                mStaticLayerMode = a.getInt(index, STATIC_LAYER_NONE);
+            }
+            if (index == R.styleable.ProgressCircle_monotonicProgress) {
+                mMonotonicProgress = a.getBoolean(index, false);
+            }
+            if (index == R.styleable.ProgressCircle_renderMode) {
+                mRenderMode = a.getInt(index, RENDER_MODE_NORMAL);
+            }
+            if (index == R.styleable.ProgressCircle_progressIndeterminate) {
+                mIndeterminate = a.getBoolean(index, false);
             }
+            if (index == R.styleable.ProgressCircle_smoothProgress) {
+                mSmoothProgress = a.getBoolean(index, false);
+            }
+            if (index == R.styleable.ProgressCircle_labelMode) {
+                mLabelMode = a.getInt(index, LABEL_PERCENT);
+            }
+            if (index == R.styleable.ProgressCircle_showDelay) {
+                setShowDelay(a.getInt(index, DEF_SHOW_DELAY_MS));
+            }
+            if (index == R.styleable.ProgressCircle_minShowTime) {
+                setMinShowTime(a.getInt(index, DEF_MIN_SHOW_TIME_MS));
+            }
+            if (index == R.styleable.ProgressCircle_maxRedrawRate) {
+                setMaxRedrawRate(a.getFloat(index, REDRAW_RATE_DEFAULT));
+            }
+            if (index == R.styleable.ProgressCircle_lowPowerMaxRedrawRate) {
+                setLowPowerMaxRedrawRate(a.getFloat(index, REDRAW_RATE_DEFAULT));
+            }
+        }
+        if (styleBuilder != null) {
+            style = styleBuilder.build();
         }
+        mDrawable.setStyle(style);
 
         a.recycle();
     }
@@ -256,144 +994,349 @@ public class ProgressCircle extends View {
      * 初始化一些实际使用的变量的数值, 这些变量通常是由多个自定义变量经过组合计算得到的.
      */
     private void initActualValues() {
-        mCircleRadius = mCircleOuterRadius - mCircleBorderWidth / 2;
+        mProgressState = new AtomicProgress(mInnerPieProgress, mInnerPieMaxProgress);
+        mProgressState.setMonotonic(mMonotonicProgress);
+        mDrawable.updateProgress(mInnerPieProgress, mInnerPieMaxProgress);
+        mDrawable.setStaticLayerMode(mStaticLayerMode);
+        mDrawable.setRenderMode(mRenderMode);
+        mDrawable.setIndeterminate(mIndeterminate);
+        mDrawable.setSmoothProgress(mSmoothProgress);
+        if (mLabelMode != LABEL_PERCENT) {
+            setLabelMode(mLabelMode);
+        }
+        // 添加到窗口中之前不需要任何动画.
+        mDrawable.setVisible(false, false);
+        mDrawable.setCallback(this);
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        mAttachedToWindow = true;
+        if (mProgressAggregator != null) {
+            mProgressAggregator.addListener(mAggregatorListener);
+        }
+        updateDrawableVisibility();
+        // 变为可见时已经读取过了, 否则在这里读取一次, 使 getProgress() 等返回最新的进度.
+        if (!mVisibleToUser) {
+            pullAggregatedProgress();
+        }
+        // 离开窗口时被取消的延迟显示任务重新开始计时.
+        if (mPostedShow) {
+            sMainHandler.postDelayed(mDelayedShowRunnable, mShowDelay);
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        mAttachedToWindow = false;
+        // 聚合器可能比界面存活得更久, 离开窗口后不再监听, 以免一直引用这个控件以及它所在的 Activity.
+        if (mProgressAggregator != null) {
+            mProgressAggregator.removeListener(mAggregatorListener);
+        }
+        updateDrawableVisibility();
+        // 取消还没有执行的刷新任务, 重新添加到窗口中时会补画一次.
+        sMainHandler.removeCallbacks(mInvalidateRunnable);
+        mProgressUpdateScheduled.set(false);
+        sMainHandler.removeCallbacks(mScheduleSourcePullRunnable);
+        AnimationTicker.getInstance().removeListener(mSourcePullFrameListener);
+        mSourcePullScheduled.set(false);
+        // 延迟显示的任务保留标记, 重新添加到窗口中时再投递; 离开窗口后已经看不到了, 延迟隐藏的任务直接执行.
+        sMainHandler.removeCallbacks(mDelayedShowRunnable);
+        if (mPostedHide) {
+            sMainHandler.removeCallbacks(mDelayedHideRunnable);
+            mDelayedHideRunnable.run();
+        }
+        // 离开窗口后不再引用共享的静态图层, 重新显示时重新获取. 图层本身由 StaticLayerCache 在内存不足时释放.
+        mDrawable.releaseCaches();
+    }
+
+    @Override
+    protected void onVisibilityChanged(View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        updateDrawableVisibility();
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        updateDrawableVisibility();
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        mDrawable.setBounds(0, 0, w, h);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        // 一次性读取 (当前进度, 最大进度) 的快照, 保证本次绘制使用的两个数值来自同一次更新.
+        ProgressMetrics metrics = mMetrics;
+        ProgressMetrics globalMetrics = ProgressMetrics.getGlobal();
+        boolean measured = metrics != null || globalMetrics != null;
+        long drawStartNanos = measured ? System.nanoTime() : 0;
+        ProgressState progressState = mProgressState.get();
+        mDrawable.updateProgress(progressState.getProgress(), progressState.getMaxProgress());
+        mDrawable.draw(canvas);
+        if (measured) {
+            long durationNanos = System.nanoTime() - drawStartNanos;
+            if (metrics != null) {
+                metrics.recordDraw(durationNanos);
+            }
+            if (globalMetrics != null) {
+                globalMetrics.recordDraw(durationNanos);
+            }
+        }
+    }
+
+    @Override
+    protected boolean verifyDrawable(Drawable who) {
+        return who == mDrawable || super.verifyDrawable(who);
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int widthSpecSize = MeasureSpec.getSize(widthMeasureSpec);
+        int widthSpecMode = MeasureSpec.getMode(widthMeasureSpec);
+        int heightSpecSize = MeasureSpec.getSize(heightMeasureSpec);
+        int heightSpecMode = MeasureSpec.getMode(heightMeasureSpec);
+
+        int measuredWidth = widthSpecSize;
+        int measuredHeight = heightSpecSize;
+
+        // 如果layout文件中设置layout_width 为 wrap_content, 那么就使用默认的宽度
+        if (widthSpecMode == MeasureSpec.AT_MOST) {
+            measuredWidth = (int) (mDefSize + 0.5f);
+        }
+        // 如果layout文件中设置layout_height 为 wrap_content, 那么就使用默认的高度
+        if (heightSpecMode == MeasureSpec.AT_MOST) {
+            measuredHeight = (int) (mDefSize + 0.5f);
+        }
+
+        setMeasuredDimension(measuredWidth, measuredHeight);
     }
 
     /**
-     * 初始化画笔
+     * 更新进度. 可以在任意线程中调用.
+     *
+     * @param progress    当前进度
+     * @param maxProgress 最大进度
      */
-    private void initPaint() {
-        initBorderPaint();
-        initContentPaint();
-        initProgressTextPaint();
+    private void updateProgress(long progress, long maxProgress) {
+        if (mProgressState.set(progress, maxProgress)) {
+            scheduleInvalidate();
+            trackMilestones();
+        } else {
+            countMetric(ProgressMetrics.COUNTER_SKIPPED);
+        }
     }
 
     /**
-     * 初始化绘制边框的画笔
+     * 刷新界面. 可以在任意线程中调用.
+     * 工作线程中调用时, 只在没有待执行的刷新任务时才向主线程投递一次, 这样即使工作线程每读取一块数据就更新一次进度,
+     * 主线程每帧也最多只会刷新一次, 并且刷新时绘制的是 mProgressState 中最新的进度.
+     * 不能被看到时什么也不做, 重新能被看到时会补画.
      */
-    private void initBorderPaint() {
-        mBorderPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-        mBorderPaint.setColor(mCircleBorderColor);
-        mBorderPaint.setStyle(Paint.Style.STROKE);
-        mBorderPaint.setStrokeWidth(mCircleBorderWidth);
+    private void scheduleInvalidate() {
+        // 调用之前 mProgressState 已经写入了新的进度, 而主线程是先修改 mVisibleToUser 再读取 mProgressState 补画的,
+        // 所以这里读到 false 时, 主线程补画时一定能读到新的进度, 不会丢失.
+        if (!mVisibleToUser) {
+            countMetric(ProgressMetrics.COUNTER_SKIPPED);
+            return;
+        }
+        if (isMainThread()) {
+            applyProgressWithinRateCap();
+        } else if (mProgressUpdateScheduled.compareAndSet(false, true)) {
+            sMainHandler.post(mInvalidateRunnable);
+        } else if (isFinalState(mProgressState.get())) {
+            // 待执行的刷新任务可能因为限速被推迟了, 最终状态不能等待, 再投递一次立即执行的.
+            sMainHandler.post(mInvalidateRunnable);
+        } else {
+            countMetric(ProgressMetrics.COUNTER_COALESCED);
+        }
     }
 
     /**
-     * 初始化绘制圆内扇形的画笔
+     * 在主线程中刷新进度, 但不超过最大刷新频率. 距离上一次刷新还不到间隔时, 推迟到间隔结束时再刷新, 期间的更新都会合并到那一次.
+     * 最终状态总是立即刷新.
      */
-    private void initContentPaint() {
-        mContentPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-        mContentPaint.setColor(mInnerPieColor);
-        mContentPaint.setStyle(Paint.Style.FILL);
+    private void applyProgressWithinRateCap() {
+        long interval = getRedrawInterval();
+        if (interval <= 0 || isFinalState(mProgressState.get())) {
+            applyProgressToDrawable();
+            return;
+        }
+        long now = SystemClock.uptimeMillis();
+        long delay = mLastProgressRedrawTime + interval - now;
+        if (delay > 0) {
+            if (mProgressUpdateScheduled.compareAndSet(false, true)) {
+                sMainHandler.postDelayed(mInvalidateRunnable, delay);
+            } else {
+                countMetric(ProgressMetrics.COUNTER_COALESCED);
+            }
+            return;
+        }
+        if (applyProgressToDrawable()) {
+            mLastProgressRedrawTime = now;
+        }
     }
 
     /**
-     * 初始化绘制进度百分比文字描述的画笔
+     * 根据当前是否处于低功耗状态, 计算两次刷新之间的最短间隔.
+     *
+     * @return 单位ms, 不限制时返回0.
      */
-    private void initProgressTextPaint() {
-        mProgressTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-        mProgressTextPaint.setColor(Color.BLACK);
-        mProgressTextPaint.setTextSize(DensityUtils.sp2px(getContext(), 15));
+    private long getRedrawInterval() {
+        float rate = mMaxRedrawRate == REDRAW_RATE_DEFAULT ? sDefaultMaxRedrawRate : mMaxRedrawRate;
+        if (LowPowerState.isLowPower()) {
+            float lowPowerRate = mLowPowerMaxRedrawRate == REDRAW_RATE_DEFAULT
+                    ? sDefaultLowPowerMaxRedrawRate : mLowPowerMaxRedrawRate;
+            if (lowPowerRate > 0 && (rate <= 0 || lowPowerRate < rate)) {
+                rate = lowPowerRate;
+            }
+        }
+        return rate <= 0 ? 0 : (long) (1000 / rate);
     }
 
-    @Override
-    protected void onDraw(Canvas canvas) {
-        // 为了保证圆的外边框半径不能超过控件本身的1/2尺寸, 并且圆的边框厚度不能超过圆的外边框半径,
-        // 需要重新计算相关数值.
-        recalcValues();
-        drawCircle(canvas);
-        drawInnerPie(canvas);
-        drawProgressPercentText(canvas);
+    /**
+     * 是否是不能被限速推迟的最终状态: 进度清零, 或者达到了最大进度.
+     *
+     * @param progressState
+     * @return
+     */
+    private static boolean isFinalState(ProgressState progressState) {
+        long progress = progressState.getProgress();
+        long maxProgress = progressState.getMaxProgress();
+        return progress == 0 || maxProgress > 0 && progress >= maxProgress;
     }
 
     /**
-     * 绘制扇形外边的圆
+     * 在主线程中把最新的进度交给 Drawable, 由它判断是否有肉眼可见的变化, 只在有变化时才刷新界面.
      *
-     * @param canvas
+     * @return 是否刷新了
      */
-    private void drawCircle(Canvas canvas) {
-        // 圆心的两个坐标也是相对于该控件自身左上角的点的距离, 不是相对于其父控件左上角的点的距离.
-        canvas.drawCircle(mHalfSize, mHalfSize, mCircleRadius, mBorderPaint);
+    private boolean applyProgressToDrawable() {
+        ProgressState progressState = mProgressState.get();
+        if (mRateEstimator != null) {
+            // 先采样, 这样 Drawable 判断文字是否变化时使用的就是最新的速率.
+            mRateEstimator.update(progressState.getProgress(), progressState.getMaxProgress(), System.nanoTime());
+        }
+        boolean invalidated = mDrawable.setProgress(progressState.getProgress(), progressState.getMaxProgress());
+        countMetric(invalidated ? ProgressMetrics.COUNTER_INVALIDATE : ProgressMetrics.COUNTER_SKIPPED);
+        return invalidated;
     }
 
     /**
-     * 绘制圆内的扇形
-     *
-     * @param canvas
+     * 把最新的进度交给里程碑. 没有越过里程碑时只是和两个预先算好的边界比较一次.
      */
-    private void drawInnerPie(Canvas canvas) {
-        if (mInnerArcRectF == null) {
-            float innerCircleOffset = mHalfSize - mCircleInnerRadius;
-            mInnerArcRectF = new RectF(innerCircleOffset, innerCircleOffset,
-                    getWidth() - innerCircleOffset, getHeight() - innerCircleOffset);
+    private void trackMilestones() {
+        MilestoneTracker tracker = mMilestoneTracker;
+        if (tracker != null) {
+            ProgressState progressState = mProgressState.get();
+            tracker.update(progressState.getProgress(), progressState.getMaxProgress());
         }
-        float sweepAngle = 1.0f * 360 * mInnerPieProgress / mInnerPieMaxProgress;
-        // 绘制弧线/扇形时的坐标, 或者外围矩形的坐标是相对于该控件自身左上角的点的距离, 不是相对于其父控件左上角的点的距离.
-        canvas.drawArc(mInnerArcRectF, mInnerPieStartingAngle, sweepAngle, true, mContentPaint);
     }
 
     /**
-     * 绘制进度百分比的文字
+     * 把一次事件计入这个控件的统计和全局的统计. 都没有开启时只有两次 null 判断.
      *
-     * @param canvas
+     * @param counter
      */
-    private void drawProgressPercentText(Canvas canvas) {
-        String progressPercentText;
-        if (mInnerPieMaxProgress == 100) {
-            progressPercentText = mInnerPieProgress + "%";
-        } else {
-            // 获取以100为最大进度时的当前进度值.
-            int convertedProgress = (int) (1.0f * mInnerPieProgress / mInnerPieMaxProgress * 100);
-            progressPercentText = convertedProgress + "%";
+    private void countMetric(int counter) {
+        ProgressMetrics metrics = mMetrics;
+        if (metrics != null) {
+            metrics.increment(counter);
+        }
+        metrics = ProgressMetrics.getGlobal();
+        if (metrics != null) {
+            metrics.increment(counter);
         }
-        // 当文字刚好处于垂直居中时的基准线X坐标值
-        // Paint.measureText(String): 获取给定文字的宽度
-        float baselineX = canvas.getWidth() / 2 - mProgressTextPaint.measureText(progressPercentText) / 2;
-        // 当文字刚好处于垂直居中时的基准线Y坐标值(这个坐标对应的水平线一般都是位于水平居中线的下方, 可以自己推算).
-        //      关于文字的 ascent, descent, baseline, top, bottom 的知识以及该计算式请见爱哥的文章:
-        //      自定义控件其实很简单1/4 (http://blog.csdn.net/aigestudio/article/details/41447349)
-        float baselineY = canvas.getHeight() / 2 - (mProgressTextPaint.ascent() + mProgressTextPaint.descent()) / 2;
-        canvas.drawText(progressPercentText, baselineX, baselineY, mProgressTextPaint);
     }
 
     /**
-     * 为了保证圆的外边框半径不能超过控件本身的1/2尺寸, 并且圆的边框厚度不能超过圆的外边框半径, 需要重新计算
-     * 相关数值, 例如: 实际的外边框半径, 实际的内边框半径, 实际使用 drawCircle()方法绘制圆时需要传入的半径等.
+     * 获取在进度登记表中的订阅. 只能在主线程中调用.
+     *
+     * @return 没有订阅时返回 null.
      */
-    private void recalcValues() {
-        // 实际宽高的1/2
-        mHalfSize = getWidth() >> 1;
-        // 重新计算圆的外边框半径, 确保其值不能超过该控件本身的1/2尺寸.
-        mCircleOuterRadius = Math.min(mHalfSize, mCircleOuterRadius);
-        // 重新计算圆的边框厚度, 确保其值不能超过圆的外边框半径.
-        mCircleBorderWidth = Math.min(mCircleOuterRadius, mCircleBorderWidth);
+    ProgressRegistry.Binding getRegistryBinding() {
+        return mRegistryBinding;
+    }
 
-        // 重新计算使用 drawCircle()方法绘制圆时需要传入的半径值
-        mCircleRadius = mCircleOuterRadius - mCircleBorderWidth / 2;
-        // 重新计算圆的内边框的半径
-        mCircleInnerRadius = mCircleRadius - mCircleBorderWidth / 2;
+    /**
+     * 设置在进度登记表中的订阅. 只由 {@link ProgressRegistry} 在主线程中调用.
+     *
+     * @param binding 为 null 时表示取消订阅.
+     */
+    void setRegistryBinding(ProgressRegistry.Binding binding) {
+        mRegistryBinding = binding;
     }
 
-    @Override
-    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
-        int widthSpecSize = MeasureSpec.getSize(widthMeasureSpec);
-        int widthSpecMode = MeasureSpec.getMode(widthMeasureSpec);
-        int heightSpecSize = MeasureSpec.getSize(heightMeasureSpec);
-        int heightSpecMode = MeasureSpec.getMode(heightMeasureSpec);
+    /**
+     * 订阅的进度登记表中的键的进度变化了. 可以在任意线程中调用, 只安排下一帧在主线程中重新读取,
+     * 读取时按控件当前订阅的位置读取, 所以这期间控件重新订阅了其他的键也不会显示错误的进度.
+     */
+    void onRegistryProgressChanged() {
+        scheduleSourcePull();
+    }
 
-        int measuredWidth = widthSpecSize;
-        int measuredHeight = heightSpecSize;
+    /**
+     * 安排下一帧在主线程中读取聚合器和进度登记表. 可以在任意线程中调用.
+     * 不能被看到时不读取, 重新能被看到时再读取.
+     */
+    private void scheduleSourcePull() {
+        if (mVisibleToUser && mSourcePullScheduled.compareAndSet(false, true)) {
+            if (isMainThread()) {
+                AnimationTicker.getInstance().addListener(mSourcePullFrameListener);
+            } else {
+                sMainHandler.post(mScheduleSourcePullRunnable);
+            }
+        }
+    }
 
-        // 如果layout文件中设置layout_width 为 wrap_content, 那么就使用默认的宽度
-        if (widthSpecMode == MeasureSpec.AT_MOST) {
-            measuredWidth = (int) (mDefSize + 0.5f);
+    /**
+     * 在主线程中读取订阅的进度登记表中的进度并显示.
+     */
+    private void pullRegistryProgress() {
+        ProgressRegistry.Binding binding = mRegistryBinding;
+        if (binding != null) {
+            binding.registry.pull(this);
         }
-        // 如果layout文件中设置layout_height 为 wrap_content, 那么就使用默认的高度
-        if (heightSpecMode == MeasureSpec.AT_MOST) {
-            measuredHeight = (int) (mDefSize + 0.5f);
+    }
+
+    /**
+     * 在主线程中读取聚合器合并后的进度并显示.
+     */
+    private void pullAggregatedProgress() {
+        ProgressAggregator aggregator = mProgressAggregator;
+        if (aggregator == null) {
+            return;
         }
+        aggregator.snapshot(mAggregatorSnapshot);
+        // 还没有任何来源的总大小已知时, 最大进度为0, 显示为不确定进度.
+        updateProgress(mAggregatorSnapshot.getProgress(), mAggregatorSnapshot.getTotal());
+    }
 
-        setMeasuredDimension(measuredWidth, measuredHeight);
+    /**
+     * 只有添加到窗口中, 并且自身, 所有父控件以及窗口都可见时, 才能被看到, Drawable 才是可见的, 才会注册到共享的帧时钟中做动画.
+     * 从不能被看到变为能被看到时, 把期间记录的最新进度补画一次.
+     */
+    private void updateDrawableVisibility() {
+        // 父类的构造方法中也可能回调 onVisibilityChanged(), 此时还没有初始化.
+        if (mDrawable == null) {
+            return;
+        }
+        boolean visible = mAttachedToWindow && getWindowVisibility() == VISIBLE && isShown();
+        boolean becameVisible = visible && !mVisibleToUser;
+        mVisibleToUser = visible;
+        mDrawable.setVisible(visible, false);
+        if (becameVisible) {
+            // Drawable 只在和上一次绘制的相比有肉眼可见的变化时才会刷新.
+            applyProgressToDrawable();
+            pullAggregatedProgress();
+            pullRegistryProgress();
+        }
     }
 
     /**
@@ -0,0 +1,782 @@
+package com.clevergump.progresscircle.library;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.view.View;
+
+import com.clevergump.progresscircle.library.core.PercentLabels;
+import com.clevergump.progresscircle.library.core.ProgressMath;
+import com.clevergump.progresscircle.library.core.ProgressTextFormatter;
+import com.clevergump.progresscircle.library.utils.DensityUtils;
+
+/**
+ * 能显示加载进度的圆的 Drawable 版本.
+ * <p>
+ * 不需要额外的 View, 可以直接通过 ImageView.setImageDrawable() 设置, 也可以作为前景或者放在 LayerDrawable 中使用.
+ * 进度可以通过 {@link #setLevel(int)} 设置 (0 ~ {@link #MAX_LEVEL}), 也可以通过 {@link #setProgress(int, int)}
+ * 设置精确的进度. {@link ProgressCircle} 内部也是使用这个类来绘制的, 所以两者的绘制效果完全相同.
+ * <p>
+ * 除非特别说明, 所有方法都只能在主线程中调用.
+ */
+public class ProgressCircleDrawable extends Drawable {
+
+    // 通过 setLevel() 设置进度时的最大进度, 和 Android 系统中 Drawable 的最大 level 相同.
+    public static final int MAX_LEVEL = 10000;
+
+    // 表示还没有绘制过扇形.
+    private static final float NOT_DRAWN = -1;
+    // 进度变化后不需要刷新
+    private static final int CHANGE_NONE = 0;
+    // 进度变化后只需要刷新扇形变化的那一部分区域
+    private static final int CHANGE_PIE = 1;
+    // 进度变化后需要刷新全部区域
+    private static final int CHANGE_ALL = 2;
+    // 不确定进度时旋转的扇形扫过的角度
+    private static final float INDETERMINATE_SWEEP_ANGLE = 90;
+    // 不确定进度时扇形旋转一圈的时间, 单位纳秒.
+    private static final long INDETERMINATE_PERIOD_NANOS = 1000000000L;
+    // 平滑进度动画的时间常数, 单位纳秒. 每经过这么长的时间, 显示的扇形和实际进度之间的差距缩小到原来的 1/e.
+    private static final long SMOOTH_TIME_CONSTANT_NANOS = 100000000L;
+    // 平滑进度动画的第一帧没有上一帧的时间时, 假设两帧之间的间隔, 单位纳秒.
+    private static final long DEFAULT_FRAME_NANOS = 16000000L;
+    // 显示的扇形和实际进度相差不到这个角度时直接对齐并结束动画.
+    private static final float SMOOTH_SNAP_ANGLE = 0.5f;
+
+    // 绘制静态图层中的内容, 也就是圆的边框. 图层在所有控件之间共享, 所以不能引用某一个 Drawable.
+    static final StaticLayer.Painter STATIC_LAYER_PAINTER = new StaticLayer.Painter() {
+        @Override
+        public void drawStaticContent(Canvas canvas, CircleGeometry geometry, int alpha, ColorFilter colorFilter) {
+            Paint borderPaint = geometry.getBorderPaint();
+            if (alpha != 255 || colorFilter != null) {
+                borderPaint = applyPaintOverrides(borderPaint, new Paint(), alpha, colorFilter);
+            }
+            drawCircle(canvas, geometry, borderPaint);
+        }
+    };
+
+    // 样式. 包含了样式属性以及绘制时使用的画笔, 可能被多个控件或 Drawable 共用.
+    private ProgressCircleStyle mStyle;
+    // 没有设置 bounds 时使用的默认宽高
+    private final int mIntrinsicSize;
+    // 当前尺寸和样式下的几何数据 (半径, 边框宽度, 圆心, 扇形的外框等). 绘制时只读取其中预先计算好的数值.
+    private CircleGeometry mGeometry;
+
+    // 当前进度
+    private long mProgress;
+    // 最大进度
+    private long mMaxProgress = PercentLabels.MAX_PERCENT;
+
+    // 自定义的进度文字格式化器. 为 null 时使用默认的百分比文字.
+    private ProgressTextFormatter mProgressTextFormatter;
+    // 自定义格式化器写入文字时使用的可复用数组. 绘制完成后保存的就是当前显示的文字.
+    private final char[] mProgressTextBuffer = new char[ProgressTextFormatter.MAX_TEXT_LENGTH];
+    // 判断自定义格式化器生成的文字是否变化时使用的可复用数组.
+    private final char[] mCompareTextBuffer = new char[ProgressTextFormatter.MAX_TEXT_LENGTH];
+
+    // 上一次绘制的扇形扫过的角度, 用于判断进度变化后扇形是否有肉眼可见的变化.
+    private float mDrawnSweepAngle = NOT_DRAWN;
+    // 上一次绘制的百分比 (使用默认的百分比文字时).
+    private int mDrawnPercent;
+    // 上一次绘制的自定义文字的长度 (使用自定义格式化器时), 文字内容保存在 mProgressTextBuffer 中.
+    private int mDrawnTextLength;
+    // 只需要刷新扇形变化的那一部分区域时, 保存该区域的可复用矩形.
+    private final Rect mDirtyRect = new Rect();
+
+    // 静态图层的缓存方式
+    private int mStaticLayerMode = ProgressCircle.STATIC_LAYER_NONE;
+    // 所有控件共用的静态图层缓存
+    private final StaticLayerCache mStaticLayerCache;
+    // 当前使用的静态图层. 缓存方式为 STATIC_LAYER_NONE 或者还没有绘制过时为 null.
+    private StaticLayer mStaticLayer;
+
+    // 绘制方式
+    private int mRenderMode = ProgressCircle.RENDER_MODE_NORMAL;
+    // 精灵图模式下使用的图集缓存
+    private final SpriteAtlasCache mSpriteAtlasCache;
+    // 上一次是否是通过精灵图绘制的
+    private boolean mDrawnAsSprite;
+    // 无法创建图集 (尺寸过大等) 的几何数据. 尺寸或样式变化之前直接绘制, 不再重复尝试创建.
+    private CircleGeometry mSpriteUnavailableGeometry;
+    // 从图集中复制一帧时使用的可复用矩形
+    private final Rect mSpriteSrcRect = new Rect();
+    private final Rect mSpriteDstRect = new Rect();
+
+    // 是否是不确定进度的旋转模式
+    private boolean mIndeterminate;
+    // 是否平滑地过渡到新的进度
+    private boolean mSmoothProgress;
+    // 平滑进度模式下当前显示的扇形扫过的角度
+    private float mDisplayedSweepAngle;
+    // 不确定进度模式下扇形当前旋转的角度
+    private float mIndeterminateRotation;
+    // 不确定进度模式下开始旋转时的帧时间, 为0表示还没有开始.
+    private long mIndeterminateStartNanos;
+    // 上一帧动画的时间, 为0表示还没有开始.
+    private long mLastFrameNanos;
+    // 是否已经注册到了共享的帧时钟中
+    private boolean mAnimating;
+    // 接收共享帧时钟每一帧的通知
+    private final AnimationTicker.Listener mFrameListener = new AnimationTicker.Listener() {
+        @Override
+        public boolean onAnimationFrame(long frameTimeNanos) {
+            return advanceAnimation(frameTimeNanos);
+        }
+    };
+
+    // 透明度, 0 ~ 255.
+    private int mAlpha = 255;
+    // 颜色过滤器
+    private ColorFilter mColorFilter;
+    // 设置了透明度或颜色过滤器时, 样式中的画笔是共享的, 不能修改, 所以复制一份再修改.
+    private Paint mBorderPaintOverride;
+    private Paint mContentPaintOverride;
+    private Paint mTextPaintOverride;
+    // 设置了透明度或颜色过滤器时, 绘制精灵图使用的画笔.
+    private Paint mSpritePaint;
+
+    /**
+     * 使用默认样式创建.
+     *
+     * @param context
+     */
+    public ProgressCircleDrawable(Context context) {
+        this(context, ProgressCircleStyle.getDefault(context));
+    }
+
+    /**
+     * 使用指定的样式创建.
+     *
+     * @param context
+     * @param style
+     */
+    public ProgressCircleDrawable(Context context, ProgressCircleStyle style) {
+        mStyle = style;
+        mIntrinsicSize = DensityUtils.dip2px(context, ProgressCircle.DEF_SIZE_IN_DP);
+        mSpriteAtlasCache = SpriteAtlasCache.getInstance(context);
+        mStaticLayerCache = StaticLayerCache.getInstance(context);
+    }
+
+    /**
+     * 设置当前进度并在需要时刷新. 只有扇形或文字有肉眼可见的变化时才会刷新.
+     *
+     * @param progress    当前进度
+     * @param maxProgress 最大进度. 不大于0表示总大小未知, 此时显示为不确定进度的旋转模式.
+     * @return 是否刷新了
+     */
+    public boolean setProgress(long progress, long maxProgress) {
+        int change = applyProgress(progress, maxProgress);
+        if (change == CHANGE_NONE) {
+            return false;
+        }
+        if (change == CHANGE_ALL) {
+            invalidateSelf();
+        } else {
+            // Drawable.Callback 只能刷新整个 Drawable, 宿主是 View 时可以只刷新变化的区域.
+            Callback callback = getCallback();
+            if (callback instanceof View) {
+                ((View) callback).invalidate(mDirtyRect);
+            } else {
+                invalidateSelf();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 获取当前进度.
+     *
+     * @return
+     */
+    public long getProgress() {
+        return mProgress;
+    }
+
+    /**
+     * 获取最大进度.
+     *
+     * @return
+     */
+    public long getMaxProgress() {
+        return mMaxProgress;
+    }
+
+    /**
+     * 设置样式. 多个控件或 Drawable 可以共用同一个样式对象.
+     *
+     * @param style
+     */
+    public void setStyle(ProgressCircleStyle style) {
+        if (style == mStyle) {
+            return;
+        }
+        mStyle = style;
+        // 几何数据和样式绑定, 样式变化后在下次绘制前重新获取.
+        mGeometry = null;
+        invalidateSelf();
+    }
+
+    /**
+     * 获取样式.
+     *
+     * @return
+     */
+    public ProgressCircleStyle getStyle() {
+        return mStyle;
+    }
+
+    /**
+     * 设置进度文字的格式化器.
+     *
+     * @param formatter 为 null 时使用默认的百分比文字.
+     */
+    public void setProgressTextFormatter(ProgressTextFormatter formatter) {
+        mProgressTextFormatter = formatter;
+        invalidateSelf();
+    }
+
+    /**
+     * 设置静态图层 (圆的边框) 的缓存方式.
+     *
+     * @param mode {@link ProgressCircle#STATIC_LAYER_NONE}, {@link ProgressCircle#STATIC_LAYER_PICTURE}
+     *             或 {@link ProgressCircle#STATIC_LAYER_BITMAP}
+     */
+    public void setStaticLayerMode(int mode) {
+        if (mode == mStaticLayerMode) {
+            return;
+        }
+        mStaticLayerMode = mode;
+        mStaticLayer = null;
+        invalidateSelf();
+    }
+
+    /**
+     * 获取静态图层的缓存方式.
+     *
+     * @return
+     */
+    public int getStaticLayerMode() {
+        return mStaticLayerMode;
+    }
+
+    /**
+     * 设置是否是不确定进度的旋转模式. 旋转模式下不显示进度文字, 进度的更新会被保存, 但不会显示.
+     * 只有 {@link #isVisible()} 为 true 时才会转动.
+     *
+     * @param indeterminate
+     */
+    public void setIndeterminate(boolean indeterminate) {
+        if (indeterminate == mIndeterminate) {
+            return;
+        }
+        boolean wasIndeterminate = isShowingIndeterminate();
+        mIndeterminate = indeterminate;
+        if (wasIndeterminate != isShowingIndeterminate()) {
+            onIndeterminateStateChanged();
+            invalidateSelf();
+        }
+    }
+
+    /**
+     * 是否是不确定进度的旋转模式. 只表示是否调用过 setIndeterminate(true), 总大小未知时也会显示为旋转模式.
+     *
+     * @return
+     */
+    public boolean isIndeterminate() {
+        return mIndeterminate;
+    }
+
+    /**
+     * 设置进度变化时是否平滑地过渡到新的进度. 开启后扇形会以越来越慢的速度逐渐追上实际进度, 进度文字仍然立即显示实际进度.
+     *
+     * @param smoothProgress
+     */
+    public void setSmoothProgress(boolean smoothProgress) {
+        if (smoothProgress == mSmoothProgress) {
+            return;
+        }
+        mSmoothProgress = smoothProgress;
+        mDisplayedSweepAngle = ProgressMath.sweepAngle(mProgress, mMaxProgress);
+        updateAnimationState();
+    }
+
+    /**
+     * 是否平滑地过渡到新的进度.
+     *
+     * @return
+     */
+    public boolean isSmoothProgress() {
+        return mSmoothProgress;
+    }
+
+    /**
+     * 设置绘制方式. 精灵图模式只在使用默认的百分比文字时生效, 设置了自定义的进度文字格式化器时仍然直接绘制.
+     *
+     * @param mode {@link ProgressCircle#RENDER_MODE_NORMAL} 或 {@link ProgressCircle#RENDER_MODE_SPRITE}
+     */
+    public void setRenderMode(int mode) {
+        if (mode == mRenderMode) {
+            return;
+        }
+        mRenderMode = mode;
+        invalidateSelf();
+    }
+
+    /**
+     * 获取绘制方式.
+     *
+     * @return
+     */
+    public int getRenderMode() {
+        return mRenderMode;
+    }
+
+    /**
+     * 不再引用静态图层等共享的缓存, 下次绘制时会重新获取. 缓存本身由 {@link StaticLayerCache} 在内存不足时释放.
+     */
+    public void releaseCaches() {
+        mStaticLayer = null;
+    }
+
+    @Override
+    public void draw(Canvas canvas) {
+        Rect bounds = getBounds();
+        CircleGeometry geometry = mGeometry;
+        if (geometry == null || !geometry.matches(bounds.width(), bounds.height(), mStyle)) {
+            geometry = mStyle.obtainGeometry(bounds.width(), bounds.height());
+            mGeometry = geometry;
+        }
+        // 几何数据中的坐标都是相对于 bounds 左上角的.
+        boolean translated = bounds.left != 0 || bounds.top != 0;
+        int saveCount = 0;
+        if (translated) {
+            saveCount = canvas.save();
+            canvas.translate(bounds.left, bounds.top);
+        }
+        mDrawnAsSprite = isSpriteRenderMode() && drawSprite(canvas, geometry);
+        if (!mDrawnAsSprite) {
+            if (mStaticLayerMode != ProgressCircle.STATIC_LAYER_NONE) {
+                obtainStaticLayer(geometry).draw(canvas);
+            } else {
+                drawCircle(canvas, geometry);
+            }
+            drawInnerPie(canvas, geometry);
+            if (mStyle.isShowProgressText() && !isShowingIndeterminate()) {
+                drawProgressPercentText(canvas, geometry);
+            }
+        }
+        if (translated) {
+            canvas.restoreToCount(saveCount);
+        }
+    }
+
+    @Override
+    protected boolean onLevelChange(int level) {
+        // 返回 true 时 Drawable.setLevel() 会自动调用 invalidateSelf().
+        return applyProgress(level, MAX_LEVEL) != CHANGE_NONE;
+    }
+
+    /**
+     * 不可见时不会注册到共享的帧时钟中, 也就不会有任何动画. {@link ProgressCircle} 会在离开窗口或被隐藏时设置为不可见.
+     */
+    @Override
+    public boolean setVisible(boolean visible, boolean restart) {
+        boolean changed = super.setVisible(visible, restart);
+        updateAnimationState();
+        return changed;
+    }
+
+    @Override
+    protected void onBoundsChange(Rect bounds) {
+        super.onBoundsChange(bounds);
+        mGeometry = mStyle.obtainGeometry(bounds.width(), bounds.height());
+    }
+
+    @Override
+    public int getIntrinsicWidth() {
+        return mIntrinsicSize;
+    }
+
+    @Override
+    public int getIntrinsicHeight() {
+        return mIntrinsicSize;
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        if (alpha == mAlpha) {
+            return;
+        }
+        mAlpha = alpha;
+        onPaintOverridesChanged();
+    }
+
+    @Override
+    public int getAlpha() {
+        return mAlpha;
+    }
+
+    @Override
+    public void setColorFilter(ColorFilter colorFilter) {
+        mColorFilter = colorFilter;
+        onPaintOverridesChanged();
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+
+    /*--------------------------- 供 ProgressCircle 使用的方法 ---------------------------*/
+
+    /**
+     * 只更新进度, 不判断是否需要刷新. 用于在绘制之前同步最新的进度.
+     *
+     * @param progress
+     * @param maxProgress
+     */
+    void updateProgress(long progress, long maxProgress) {
+        boolean wasIndeterminate = isShowingIndeterminate();
+        mProgress = progress;
+        mMaxProgress = maxProgress;
+        if (wasIndeterminate != isShowingIndeterminate()) {
+            onIndeterminateStateChanged();
+        }
+    }
+
+    /*--------------------------- 私有方法 ---------------------------------*/
+
+    /**
+     * 更新进度, 并判断需要刷新的范围.
+     * 对于尺寸较小的圆和较大的最大进度 (例如以字节为单位的下载进度), 绝大多数进度更新都不会带来可见的变化.
+     *
+     * @param progress    当前进度
+     * @param maxProgress 最大进度
+     * @return {@link #CHANGE_NONE}, {@link #CHANGE_PIE} 或 {@link #CHANGE_ALL}. 为 CHANGE_PIE 时需要刷新的区域保存在
+     * mDirtyRect 中.
+     */
+    private int applyProgress(long progress, long maxProgress) {
+        boolean wasIndeterminate = isShowingIndeterminate();
+        updateProgress(progress, maxProgress);
+        if (wasIndeterminate != isShowingIndeterminate()) {
+            return CHANGE_ALL;
+        }
+        if (wasIndeterminate) {
+            // 旋转模式下由每一帧的动画负责刷新.
+            return CHANGE_NONE;
+        }
+        CircleGeometry geometry = mGeometry;
+        if (mSmoothProgress) {
+            // 扇形由每一帧的动画负责刷新, 这里只需要处理文字的变化.
+            updateAnimationState();
+            if (geometry == null || mDrawnSweepAngle == NOT_DRAWN) {
+                return CHANGE_ALL;
+            }
+            return mStyle.isShowProgressText() && isTextChanged(progress, maxProgress) ? CHANGE_ALL : CHANGE_NONE;
+        }
+        if (geometry == null || mDrawnSweepAngle == NOT_DRAWN) {
+            return CHANGE_ALL;
+        }
+        if (mDrawnAsSprite) {
+            // 精灵图只有 0% ~ 100% 这些帧, 百分比不变时画面就不会变化.
+            return ProgressMath.percent(progress, maxProgress) != mDrawnPercent ? CHANGE_ALL : CHANGE_NONE;
+        }
+        float sweepAngle = ProgressMath.sweepAngle(progress, maxProgress);
+        boolean sweepChanged = isSweepVisuallyChanged(geometry, mDrawnSweepAngle, sweepAngle);
+        if (mStyle.isShowProgressText()) {
+            return sweepChanged || isTextChanged(progress, maxProgress) ? CHANGE_ALL : CHANGE_NONE;
+        }
+        if (!sweepChanged) {
+            return CHANGE_NONE;
+        }
+        geometry.getSectorBounds(mStyle.getInnerPieStartingAngle(), mDrawnSweepAngle, sweepAngle, mDirtyRect);
+        Rect bounds = getBounds();
+        mDirtyRect.offset(bounds.left, bounds.top);
+        return CHANGE_PIE;
+    }
+
+    /**
+     * 是否使用精灵图绘制.
+     *
+     * @return
+     */
+    private boolean isSpriteRenderMode() {
+        return mRenderMode == ProgressCircle.RENDER_MODE_SPRITE && mProgressTextFormatter == null
+                && !isShowingIndeterminate() && !mSmoothProgress;
+    }
+
+    /**
+     * 是否显示为不确定进度的旋转模式: 调用了 setIndeterminate(true), 或者总大小未知.
+     *
+     * @return
+     */
+    private boolean isShowingIndeterminate() {
+        return mIndeterminate || mMaxProgress <= 0;
+    }
+
+    /**
+     * 进入或离开不确定进度的旋转模式后, 从头开始旋转, 平滑进度也从实际进度开始.
+     */
+    private void onIndeterminateStateChanged() {
+        mIndeterminateStartNanos = 0;
+        mIndeterminateRotation = 0;
+        mDisplayedSweepAngle = ProgressMath.sweepAngle(mProgress, mMaxProgress);
+        updateAnimationState();
+    }
+
+    /**
+     * 根据当前的状态注册到共享的帧时钟中, 或者从中移除.
+     * 只有可见, 并且处于旋转模式或者平滑进度还没有追上实际进度时才需要每一帧的通知.
+     */
+    private void updateAnimationState() {
+        boolean visible = isVisible();
+        float targetSweepAngle = ProgressMath.sweepAngle(mProgress, mMaxProgress);
+        if (mSmoothProgress && !visible) {
+            // 不可见时不做动画, 直接对齐到实际进度.
+            mDisplayedSweepAngle = targetSweepAngle;
+        }
+        boolean needed = visible && (isShowingIndeterminate() || mSmoothProgress && mDisplayedSweepAngle != targetSweepAngle);
+        if (needed && !mAnimating) {
+            mAnimating = true;
+            mLastFrameNanos = 0;
+            AnimationTicker.getInstance().addListener(mFrameListener);
+        } else if (!needed && mAnimating) {
+            mAnimating = false;
+            AnimationTicker.getInstance().removeListener(mFrameListener);
+        }
+    }
+
+    /**
+     * 在共享帧时钟的每一帧中更新动画并刷新.
+     *
+     * @param frameTimeNanos
+     * @return 是否还需要下一帧
+     */
+    private boolean advanceAnimation(long frameTimeNanos) {
+        if (!mAnimating) {
+            return false;
+        }
+        boolean running = false;
+        if (isShowingIndeterminate()) {
+            if (mIndeterminateStartNanos == 0) {
+                mIndeterminateStartNanos = frameTimeNanos;
+            }
+            long elapsed = (frameTimeNanos - mIndeterminateStartNanos) % INDETERMINATE_PERIOD_NANOS;
+            mIndeterminateRotation = 360f * elapsed / INDETERMINATE_PERIOD_NANOS;
+            running = true;
+        } else if (mSmoothProgress) {
+            float targetSweepAngle = ProgressMath.sweepAngle(mProgress, mMaxProgress);
+            long elapsed = mLastFrameNanos == 0 ? DEFAULT_FRAME_NANOS : frameTimeNanos - mLastFrameNanos;
+            float fraction = (float) (1 - Math.exp(-(double) elapsed / SMOOTH_TIME_CONSTANT_NANOS));
+            mDisplayedSweepAngle += (targetSweepAngle - mDisplayedSweepAngle) * fraction;
+            if (Math.abs(targetSweepAngle - mDisplayedSweepAngle) < SMOOTH_SNAP_ANGLE) {
+                mDisplayedSweepAngle = targetSweepAngle;
+            } else {
+                running = true;
+            }
+        }
+        mLastFrameNanos = frameTimeNanos;
+        mAnimating = running;
+        invalidateSelf();
+        return running;
+    }
+
+    /**
+     * 从共享的图集中复制当前百分比对应的一帧.
+     *
+     * @param canvas
+     * @param geometry
+     * @return 无法创建图集时返回 false, 此时需要直接绘制.
+     */
+    private boolean drawSprite(Canvas canvas, CircleGeometry geometry) {
+        if (geometry.equals(mSpriteUnavailableGeometry)) {
+            return false;
+        }
+        SpriteAtlas atlas = mSpriteAtlasCache.obtain(geometry);
+        if (atlas == null) {
+            mSpriteUnavailableGeometry = geometry;
+            return false;
+        }
+        int percent = ProgressMath.percent(mProgress, mMaxProgress);
+        atlas.draw(canvas, percent, mSpritePaint, mSpriteSrcRect, mSpriteDstRect);
+        mDrawnPercent = percent;
+        mDrawnSweepAngle = ProgressMath.sweepAngle(percent, PercentLabels.MAX_PERCENT);
+        return true;
+    }
+
+    /**
+     * 绘制扇形外边的圆
+     *
+     * @param canvas
+     * @param geometry
+     */
+    private void drawCircle(Canvas canvas, CircleGeometry geometry) {
+        drawCircle(canvas, geometry, overridePaint(geometry.getBorderPaint(), mBorderPaintOverride));
+    }
+
+    private static void drawCircle(Canvas canvas, CircleGeometry geometry, Paint borderPaint) {
+        // 圆心的两个坐标也是相对于该控件自身左上角的点的距离, 不是相对于其父控件左上角的点的距离.
+        canvas.drawCircle(geometry.centerX, geometry.centerY, geometry.circleRadius, borderPaint);
+    }
+
+    /**
+     * 获取当前几何数据和画笔设置对应的静态图层. 只有这些参数变化或者图层被缓存淘汰之后才需要查找缓存.
+     *
+     * @param geometry
+     * @return
+     */
+    private StaticLayer obtainStaticLayer(CircleGeometry geometry) {
+        StaticLayer layer = mStaticLayer;
+        if (layer == null || !layer.matches(geometry, mStaticLayerMode, mAlpha, mColorFilter)) {
+            layer = mStaticLayerCache.obtain(STATIC_LAYER_PAINTER, geometry, mStaticLayerMode, mAlpha, mColorFilter);
+            mStaticLayer = layer;
+        }
+        return layer;
+    }
+
+    /**
+     * 绘制圆内的扇形
+     *
+     * @param canvas
+     * @param geometry
+     */
+    private void drawInnerPie(Canvas canvas, CircleGeometry geometry) {
+        float startAngle = mStyle.getInnerPieStartingAngle();
+        float sweepAngle;
+        if (isShowingIndeterminate()) {
+            startAngle += mIndeterminateRotation;
+            sweepAngle = INDETERMINATE_SWEEP_ANGLE;
+        } else if (mSmoothProgress) {
+            sweepAngle = mDisplayedSweepAngle;
+        } else {
+            sweepAngle = ProgressMath.sweepAngle(mProgress, mMaxProgress);
+        }
+        mDrawnSweepAngle = sweepAngle;
+        // 绘制弧线/扇形时的坐标, 或者外围矩形的坐标是相对于该控件自身左上角的点的距离, 不是相对于其父控件左上角的点的距离.
+        canvas.drawArc(geometry.getInnerArcRect(), startAngle, sweepAngle, true,
+                overridePaint(mStyle.getContentPaint(), mContentPaintOverride));
+    }
+
+    /**
+     * 绘制进度百分比的文字. 整个过程不会创建新的对象.
+     *
+     * @param canvas
+     * @param geometry
+     */
+    private void drawProgressPercentText(Canvas canvas, CircleGeometry geometry) {
+        Paint textPaint = overridePaint(mStyle.getProgressTextPaint(), mTextPaintOverride);
+        char[] text;
+        int textLength;
+        float textWidth;
+        if (mProgressTextFormatter == null) {
+            // 获取以100为最大进度时的当前进度值, 然后直接使用预先生成的文字和测量好的宽度.
+            int percent = ProgressMath.percent(mProgress, mMaxProgress);
+            text = PercentLabels.get(percent);
+            textLength = text.length;
+            textWidth = mStyle.getPercentLabelWidth(percent);
+            mDrawnPercent = percent;
+        } else {
+            text = mProgressTextBuffer;
+            textLength = mProgressTextFormatter.format(mProgress, mMaxProgress, text);
+            textWidth = textPaint.measureText(text, 0, textLength);
+            mDrawnTextLength = textLength;
+        }
+        // 当文字刚好处于水平居中时的基准线X坐标值
+        float baselineX = geometry.centerX - textWidth / 2;
+        // 当文字刚好处于垂直居中时的基准线Y坐标值(这个坐标对应的水平线一般都是位于水平居中线的下方, 可以自己推算).
+        float baselineY = geometry.centerY + mStyle.getTextBaselineOffset();
+        canvas.drawText(text, 0, textLength, baselineX, baselineY, textPaint);
+    }
+
+    /**
+     * 判断扇形的扫过角度变化后, 在圆周上移动的弧长是否达到了1个像素. 变为空或者变为整圆时总是认为有变化.
+     *
+     * @param geometry 当前的几何数据
+     * @param oldSweep 变化前的扫过角度
+     * @param newSweep 变化后的扫过角度
+     * @return
+     */
+    private static boolean isSweepVisuallyChanged(CircleGeometry geometry, float oldSweep, float newSweep) {
+        if (oldSweep == newSweep) {
+            return false;
+        }
+        if (newSweep == 0 || newSweep == 360) {
+            return true;
+        }
+        double arcLength = Math.toRadians(Math.abs(newSweep - oldSweep)) * geometry.innerRadius;
+        return arcLength >= 1;
+    }
+
+    /**
+     * 判断进度文字和上一次绘制的相比是否有变化.
+     *
+     * @param progress    当前进度
+     * @param maxProgress 最大进度
+     * @return
+     */
+    private boolean isTextChanged(long progress, long maxProgress) {
+        if (mProgressTextFormatter == null) {
+            return ProgressMath.percent(progress, maxProgress) != mDrawnPercent;
+        }
+        int length = mProgressTextFormatter.format(progress, maxProgress, mCompareTextBuffer);
+        if (length != mDrawnTextLength) {
+            return true;
+        }
+        for (int i = 0; i < length; i++) {
+            if (mCompareTextBuffer[i] != mProgressTextBuffer[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 透明度或颜色过滤器变化后, 重新创建或清除复制的画笔.
+     */
+    private void onPaintOverridesChanged() {
+        if (mAlpha == 255 && mColorFilter == null) {
+            mBorderPaintOverride = null;
+            mContentPaintOverride = null;
+            mTextPaintOverride = null;
+            mSpritePaint = null;
+        } else {
+            if (mBorderPaintOverride == null) {
+                mBorderPaintOverride = new Paint();
+                mContentPaintOverride = new Paint();
+                mTextPaintOverride = new Paint();
+                mSpritePaint = new Paint();
+            }
+            mSpritePaint.setAlpha(mAlpha);
+            mSpritePaint.setColorFilter(mColorFilter);
+        }
+        // 边框可能已经被录制到静态图层中了, 下次绘制时换成对应新设置的图层.
+        mStaticLayer = null;
+        invalidateSelf();
+    }
+
+    /**
+     * 如果设置了透明度或颜色过滤器, 返回应用了这些设置的画笔副本, 否则直接返回样式中共享的画笔.
+     *
+     * @param sharedPaint 样式中共享的画笔
+     * @param override    复制的画笔, 没有设置透明度和颜色过滤器时为 null.
+     * @return
+     */
+    private Paint overridePaint(Paint sharedPaint, Paint override) {
+        if (override == null) {
+            return sharedPaint;
+        }
+        return applyPaintOverrides(sharedPaint, override, mAlpha, mColorFilter);
+    }
+
+    private static Paint applyPaintOverrides(Paint sharedPaint, Paint override, int alpha, ColorFilter colorFilter) {
+        override.set(sharedPaint);
+        override.setAlpha(Color.alpha(sharedPaint.getColor()) * alpha / 255);
+        override.setColorFilter(colorFilter);
+        return override;
+    }
+}
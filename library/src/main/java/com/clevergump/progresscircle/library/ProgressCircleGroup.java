@@ -0,0 +1,180 @@
+package com.clevergump.progresscircle.library;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.clevergump.progresscircle.library.core.ProgressUpdateBuffer;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 批量分发进度的调度器, 适用于同时显示几百个圆, 并且每个圆的进度都由不同的工作线程更新的界面.
+ * <p>
+ * 工作线程通过 {@link #publish(int, long, long)} 发布 (id, 当前进度, 最大进度), 只写入无锁的 {@link ProgressUpdateBuffer}.
+ * 不管有多少个 id 被更新, 每一帧都只在主线程中执行一次帧回调, 在这一次回调中把所有待处理的进度设置给对应的圆,
+ * 两次回调之间同一个 id 的多次更新只保留最后一次. 圆只有在扇形或文字有肉眼可见的变化时才会刷新.
+ * <p>
+ * 除了 {@link #publish(int, long, long)} 之外, 所有方法都只能在主线程中调用.
+ */
+public class ProgressCircleGroup {
+
+    /**
+     * 每一帧批量设置进度后的回调, 用于统计.
+     */
+    public interface OnBatchAppliedListener {
+
+        /**
+         * @param appliedCount   这一帧中设置了进度的 id 的数量
+         * @param coalescedCount 上一帧之后被合并掉 (没有单独处理) 的更新次数
+         */
+        void onBatchApplied(int appliedCount, int coalescedCount);
+    }
+
+    // 主线程的 Handler, 工作线程通过它把帧回调的注册切换到主线程.
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+    // 所有 id 最新的进度
+    private final ProgressUpdateBuffer mBuffer;
+    // 每个 id 对应的圆, 没有绑定时为 null.
+    private final ProgressCircle[] mCircles;
+    // 是否已经安排了下一次帧回调. 保证同一时刻最多只有一个待执行的帧回调.
+    private final AtomicBoolean mFrameScheduled = new AtomicBoolean(false);
+    // 统计回调
+    private OnBatchAppliedListener mOnBatchAppliedListener;
+    // 上一帧设置了进度的 id 的数量
+    private int mLastAppliedCount;
+    // 上一帧之前被合并掉的更新次数
+    private int mLastCoalescedCount;
+    // 所有帧中被合并掉的更新次数之和
+    private long mTotalCoalescedCount;
+
+    // 把每个 id 的最新进度设置给对应的圆.
+    private final ProgressUpdateBuffer.Receiver mApplyReceiver = new ProgressUpdateBuffer.Receiver() {
+        @Override
+        public void onProgress(int id, long progress, long maxProgress) {
+            ProgressCircle circle = mCircles[id];
+            if (circle != null) {
+                circle.setProgress(progress, maxProgress);
+            }
+        }
+    };
+    // 在共享的帧时钟中注册的帧回调, 只执行一次.
+    private final AnimationTicker.Listener mFrameListener = new AnimationTicker.Listener() {
+        @Override
+        public boolean onAnimationFrame(long frameTimeNanos) {
+            applyPendingUpdates();
+            return false;
+        }
+    };
+    // 在主线程中注册帧回调的任务
+    private final Runnable mScheduleFrameRunnable = new Runnable() {
+        @Override
+        public void run() {
+            AnimationTicker.getInstance().addListener(mFrameListener);
+        }
+    };
+
+    /**
+     * @param capacity id 的取值范围为 [0, capacity)
+     */
+    public ProgressCircleGroup(int capacity) {
+        mBuffer = new ProgressUpdateBuffer(capacity);
+        mCircles = new ProgressCircle[capacity];
+    }
+
+    /**
+     * 发布一个 id 的最新进度. 可以在任意线程中调用, 不会创建任何对象.
+     *
+     * @param id          [0, capacity)
+     * @param progress    当前进度
+     * @param maxProgress 最大进度, 为0表示总大小未知.
+     */
+    public void publish(int id, long progress, long maxProgress) {
+        if (progress < 0 || maxProgress < 0) {
+            throw new IllegalArgumentException("Progress can't be less than zero");
+        }
+        if (mBuffer.publish(id, progress, maxProgress) && mFrameScheduled.compareAndSet(false, true)) {
+            sMainHandler.post(mScheduleFrameRunnable);
+        }
+    }
+
+    /**
+     * 把圆绑定到一个 id 上. 如果这个 id 已经发布过进度, 立即显示最后一次发布的进度.
+     * 例如在列表的 Adapter 中, 每次复用 item 时都把圆绑定到当前位置对应的 id 上.
+     *
+     * @param id
+     * @param circle
+     */
+    public void bind(int id, ProgressCircle circle) {
+        // 同一个圆只能绑定一个 id, 复用时先解除之前的绑定.
+        for (int i = 0; i < mCircles.length; i++) {
+            if (mCircles[i] == circle) {
+                mCircles[i] = null;
+            }
+        }
+        mCircles[id] = circle;
+        mBuffer.peek(id, mApplyReceiver);
+    }
+
+    /**
+     * 解除一个 id 的绑定. 之后这个 id 发布的进度仍然会被保存, 但不会显示.
+     * 不再使用的圆应该及时解除绑定, 否则会一直被这个对象引用.
+     *
+     * @param id
+     */
+    public void unbind(int id) {
+        mCircles[id] = null;
+    }
+
+    /**
+     * 设置每一帧批量设置进度后的统计回调.
+     *
+     * @param listener
+     */
+    public void setOnBatchAppliedListener(OnBatchAppliedListener listener) {
+        mOnBatchAppliedListener = listener;
+    }
+
+    /**
+     * 获取上一帧中设置了进度的 id 的数量.
+     *
+     * @return
+     */
+    public int getLastAppliedCount() {
+        return mLastAppliedCount;
+    }
+
+    /**
+     * 获取上一帧之前被合并掉的更新次数.
+     *
+     * @return
+     */
+    public int getLastCoalescedCount() {
+        return mLastCoalescedCount;
+    }
+
+    /**
+     * 获取所有帧中被合并掉的更新次数之和.
+     *
+     * @return
+     */
+    public long getTotalCoalescedCount() {
+        return mTotalCoalescedCount;
+    }
+
+    /**
+     * 在帧回调中把所有待处理的进度设置给对应的圆.
+     */
+    private void applyPendingUpdates() {
+        // 先清除标记再读取, 这样读取过程中发布的进度一定会再安排一次帧回调.
+        mFrameScheduled.set(false);
+        int appliedCount = mBuffer.drain(mApplyReceiver);
+        int coalescedCount = mBuffer.takeCoalescedCount();
+        mLastAppliedCount = appliedCount;
+        mLastCoalescedCount = coalescedCount;
+        mTotalCoalescedCount += coalescedCount;
+        if (mOnBatchAppliedListener != null) {
+            mOnBatchAppliedListener.onBatchApplied(appliedCount, coalescedCount);
+        }
+    }
+}
@@ -0,0 +1,441 @@
+package com.clevergump.progresscircle.library;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.util.SparseArray;
+
+import com.clevergump.progresscircle.library.core.PercentLabels;
+import com.clevergump.progresscircle.library.utils.DensityUtils;
+
+/**
+ * 进度圆的样式, 创建后不可修改.
+ * <p>
+ * 样式中包含了解析好的各个样式属性以及绘制时使用的画笔, 多个 {@link ProgressCircle} 可以共用同一个样式对象,
+ * 不必每个控件都重复解析属性和创建画笔. 例如在 RecyclerView 中有几百个使用相同样式的进度圆时,
+ * 只需要在布局中通过 progressCircleStyle 属性引用同一个 style 资源即可.
+ * <p>
+ * 样式中的画笔是共享的, 只能读取, 不能修改. 需要修改样式时, 使用 {@link #buildUpon()} 创建一个新的样式.
+ * 除了 {@link Builder} 以外, 所有方法都只能在主线程中调用.
+ */
+public final class ProgressCircleStyle {
+
+    /*---------------------------- 常量 -------------------------------*/
+
+    // 圆边框的默认颜色
+    private static final int DEF_CIRCLE_BORDER_COLOR = Color.parseColor("#33B5E5");
+    // 圆内扇形的默认颜色
+    private static final int DEF_INNER_PIE_COLOR = Color.parseColor("#33B5E5");
+    // 绘制扇形的默认起始角度.
+    private static final float DEF_PIE_STARGING_ANGLE = -90;
+    // 进度文字的默认颜色
+    private static final int DEF_PROGRESS_TEXT_COLOR = Color.BLACK;
+
+    // 从 style 资源创建的样式的缓存, key 是 style 资源的id.
+    private static final SparseArray<ProgressCircleStyle> sResourceStyles = new SparseArray<ProgressCircleStyle>();
+    // 默认样式的缓存
+    private static ProgressCircleStyle sDefaultStyle;
+    // 缓存的样式是在哪个配置下创建的. 尺寸和文字大小依赖屏幕密度和字体缩放, 颜色可能依赖夜间模式,
+    // 这些配置中的任何一个变化时都需要清除缓存.
+    private static float sCachedDensity;
+    private static float sCachedFontScale;
+    private static int sCachedUiMode;
+
+    /*--------------------------- 样式属性 -------------------------------*/
+
+    // 圆边框的颜色
+    private final int mCircleBorderColor;
+    // 圆边框的宽度
+    private final float mCircleBorderWidth;
+    // 圆的外边框的半径
+    private final float mCircleOuterRadius;
+    // 内部扇形的颜色
+    private final int mInnerPieColor;
+    // 绘制扇形的起始角度
+    private final float mInnerPieStartingAngle;
+    // 进度文字的大小
+    private final float mProgressTextSize;
+    // 进度文字的颜色
+    private final int mProgressTextColor;
+    // 是否显示进度文字
+    private final boolean mShowProgressText;
+
+    /*--------------------------- 共享的绘制数据 ---------------------------*/
+
+    // 绘制圆的画笔
+    private final Paint mBorderPaint;
+    // 绘制圆内扇形的画笔
+    private final Paint mContentPaint;
+    // 绘制进度百分比文字描述的画笔
+    private final Paint mProgressTextPaint;
+
+    // 0% ~ 100% 每个百分比文字的宽度, 第一次绘制文字时才测量.
+    private float[] mPercentLabelWidths;
+    // 文字垂直居中时, 基准线相对于圆心的Y轴偏移量.
+    private float mTextBaselineOffset;
+    // 最近一次使用的几何数据. 同一个列表中的进度圆尺寸通常都相同, 所以缓存一个就足够了.
+    private CircleGeometry mCachedGeometry;
+
+    private ProgressCircleStyle(Builder builder) {
+        mCircleBorderColor = builder.mCircleBorderColor;
+        mCircleBorderWidth = builder.mCircleBorderWidth;
+        mCircleOuterRadius = builder.mCircleOuterRadius;
+        mInnerPieColor = builder.mInnerPieColor;
+        mInnerPieStartingAngle = builder.mInnerPieStartingAngle;
+        mProgressTextSize = builder.mProgressTextSize;
+        mProgressTextColor = builder.mProgressTextColor;
+        mShowProgressText = builder.mShowProgressText;
+
+        mBorderPaint = createBorderPaint(mCircleBorderColor, mCircleBorderWidth);
+
+        mContentPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        mContentPaint.setColor(mInnerPieColor);
+        mContentPaint.setStyle(Paint.Style.FILL);
+
+        mProgressTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        mProgressTextPaint.setColor(mProgressTextColor);
+        mProgressTextPaint.setTextSize(mProgressTextSize);
+    }
+
+    /**
+     * 获取默认样式.
+     *
+     * @param context
+     * @return
+     */
+    public static ProgressCircleStyle getDefault(Context context) {
+        checkConfiguration(context);
+        if (sDefaultStyle == null) {
+            sDefaultStyle = new Builder(context).build();
+        }
+        return sDefaultStyle;
+    }
+
+    /**
+     * 从 style 资源创建样式. 同一个资源在同一个配置 (屏幕密度, 字体缩放, 夜间模式) 下只会解析一次, 之后直接返回缓存的样式.
+     * 缓存的样式和主题无关, 如果 style 中引用了主题属性并且在配置不变的情况下切换了主题, 需要先调用 {@link #clearCache()}.
+     *
+     * @param context
+     * @param styleResId style 资源的id, 其中的属性名和 ProgressCircle 的自定义属性相同.
+     * @return
+     */
+    public static ProgressCircleStyle fromResource(Context context, int styleResId) {
+        checkConfiguration(context);
+        ProgressCircleStyle style = sResourceStyles.get(styleResId);
+        if (style == null) {
+            Builder builder = new Builder(context);
+            TypedArray a = context.obtainStyledAttributes(styleResId, R.styleable.ProgressCircle);
+            int indexCount = a.getIndexCount();
+            for (int i = 0; i < indexCount; i++) {
+                builder.applyAttribute(a, a.getIndex(i));
+            }
+            a.recycle();
+            style = builder.build();
+            sResourceStyles.put(styleResId, style);
+        }
+        return style;
+    }
+
+    /**
+     * 清除默认样式和从 style 资源创建的样式的缓存. 屏幕密度, 字体缩放和夜间模式变化时会自动清除, 例如切换主题之后需要手动调用.
+     */
+    public static void clearCache() {
+        sResourceStyles.clear();
+        sDefaultStyle = null;
+    }
+
+    /**
+     * 如果 context 的配置和缓存的样式创建时的配置不同, 清除缓存.
+     *
+     * @param context
+     */
+    private static void checkConfiguration(Context context) {
+        Resources res = context.getResources();
+        float density = res.getDisplayMetrics().density;
+        Configuration config = res.getConfiguration();
+        if (density != sCachedDensity || config.fontScale != sCachedFontScale || config.uiMode != sCachedUiMode) {
+            clearCache();
+            sCachedDensity = density;
+            sCachedFontScale = config.fontScale;
+            sCachedUiMode = config.uiMode;
+        }
+    }
+
+    /**
+     * 判断 ProgressCircle 的某个自定义属性是否属于样式属性.
+     *
+     * @param index R.styleable.ProgressCircle_xxx
+     * @return
+     */
+    static boolean isStyleAttribute(int index) {
+        return index == R.styleable.ProgressCircle_circleBorderColor
+                || index == R.styleable.ProgressCircle_circleBorderWidth
+                || index == R.styleable.ProgressCircle_circleOuterRadius
+                || index == R.styleable.ProgressCircle_innerPieColor
+                || index == R.styleable.ProgressCircle_innerPieStartingAngle
+                || index == R.styleable.ProgressCircle_progressTextSize
+                || index == R.styleable.ProgressCircle_progressTextColor
+                || index == R.styleable.ProgressCircle_showProgressText;
+    }
+
+    /**
+     * 以当前样式为基础, 创建一个可以修改属性的 Builder.
+     *
+     * @return
+     */
+    public Builder buildUpon() {
+        return new Builder(this);
+    }
+
+    public int getCircleBorderColor() {
+        return mCircleBorderColor;
+    }
+
+    public float getCircleBorderWidth() {
+        return mCircleBorderWidth;
+    }
+
+    public float getCircleOuterRadius() {
+        return mCircleOuterRadius;
+    }
+
+    public int getInnerPieColor() {
+        return mInnerPieColor;
+    }
+
+    public float getInnerPieStartingAngle() {
+        return mInnerPieStartingAngle;
+    }
+
+    public float getProgressTextSize() {
+        return mProgressTextSize;
+    }
+
+    public int getProgressTextColor() {
+        return mProgressTextColor;
+    }
+
+    public boolean isShowProgressText() {
+        return mShowProgressText;
+    }
+
+    /*--------------------------- 供绘制使用的方法 ---------------------------*/
+
+    Paint getBorderPaint() {
+        return mBorderPaint;
+    }
+
+    Paint getContentPaint() {
+        return mContentPaint;
+    }
+
+    Paint getProgressTextPaint() {
+        return mProgressTextPaint;
+    }
+
+    /**
+     * 获取指定百分比文字的宽度.
+     *
+     * @param percent
+     * @return
+     */
+    float getPercentLabelWidth(int percent) {
+        if (mPercentLabelWidths == null) {
+            measureTextMetrics();
+        }
+        return mPercentLabelWidths[percent];
+    }
+
+    /**
+     * 获取文字垂直居中时, 基准线相对于圆心的Y轴偏移量.
+     *
+     * @return
+     */
+    float getTextBaselineOffset() {
+        if (mPercentLabelWidths == null) {
+            measureTextMetrics();
+        }
+        return mTextBaselineOffset;
+    }
+
+    /**
+     * 获取该样式在指定尺寸下的几何数据. 尺寸和上一次相同时直接返回缓存的对象.
+     *
+     * @param width  控件宽度
+     * @param height 控件高度
+     * @return
+     */
+    CircleGeometry obtainGeometry(int width, int height) {
+        CircleGeometry geometry = mCachedGeometry;
+        if (geometry == null || !geometry.matches(width, height, this)) {
+            geometry = CircleGeometry.create(width, height, this);
+            mCachedGeometry = geometry;
+        }
+        return geometry;
+    }
+
+    /**
+     * 创建绘制边框的画笔
+     *
+     * @param color       边框颜色
+     * @param strokeWidth 边框宽度
+     * @return
+     */
+    static Paint createBorderPaint(int color, float strokeWidth) {
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setColor(color);
+        paint.setStyle(Paint.Style.STROKE);
+        paint.setStrokeWidth(strokeWidth);
+        return paint;
+    }
+
+    /**
+     * 测量每个百分比文字的宽度, 并计算文字垂直居中时基准线的偏移量.
+     */
+    private void measureTextMetrics() {
+        float[] widths = new float[PercentLabels.MAX_PERCENT + 1];
+        for (int percent = 0; percent <= PercentLabels.MAX_PERCENT; percent++) {
+            char[] label = PercentLabels.get(percent);
+            // Paint.measureText(): 获取给定文字的宽度
+            widths[percent] = mProgressTextPaint.measureText(label, 0, label.length);
+        }
+        // 关于文字的 ascent, descent, baseline, top, bottom 的知识以及该计算式请见爱哥的文章:
+        //      自定义控件其实很简单1/4 (http://blog.csdn.net/aigestudio/article/details/41447349)
+        mTextBaselineOffset = -(mProgressTextPaint.ascent() + mProgressTextPaint.descent()) / 2;
+        mPercentLabelWidths = widths;
+    }
+
+    /**
+     * 用于创建 {@link ProgressCircleStyle} 的 Builder. 所有尺寸的单位都是px.
+     */
+    public static final class Builder {
+        private int mCircleBorderColor;
+        private float mCircleBorderWidth;
+        private float mCircleOuterRadius;
+        private int mInnerPieColor;
+        private float mInnerPieStartingAngle;
+        private float mProgressTextSize;
+        private int mProgressTextColor;
+        private boolean mShowProgressText;
+
+        /**
+         * 以默认值为基础创建 Builder.
+         *
+         * @param context
+         */
+        public Builder(Context context) {
+            mCircleBorderColor = DEF_CIRCLE_BORDER_COLOR;
+            mCircleBorderWidth = DensityUtils.dip2px(context, ProgressCircle.DEF_CIRCLE_BORDER_WIDTH_IN_DP);
+            mCircleOuterRadius = DensityUtils.dip2px(context, ProgressCircle.DEF_SIZE_IN_DP) / 2f;
+            mInnerPieColor = DEF_INNER_PIE_COLOR;
+            mInnerPieStartingAngle = DEF_PIE_STARGING_ANGLE;
+            mProgressTextSize = DensityUtils.sp2px(context, ProgressCircle.DEF_PROGRESS_TEXT_SIZE_IN_SP);
+            mProgressTextColor = DEF_PROGRESS_TEXT_COLOR;
+            mShowProgressText = true;
+        }
+
+        /**
+         * 以已有的样式为基础创建 Builder.
+         *
+         * @param style
+         */
+        public Builder(ProgressCircleStyle style) {
+            mCircleBorderColor = style.mCircleBorderColor;
+            mCircleBorderWidth = style.mCircleBorderWidth;
+            mCircleOuterRadius = style.mCircleOuterRadius;
+            mInnerPieColor = style.mInnerPieColor;
+            mInnerPieStartingAngle = style.mInnerPieStartingAngle;
+            mProgressTextSize = style.mProgressTextSize;
+            mProgressTextColor = style.mProgressTextColor;
+            mShowProgressText = style.mShowProgressText;
+        }
+
+        public Builder setCircleBorderColor(int circleBorderColor) {
+            mCircleBorderColor = circleBorderColor;
+            return this;
+        }
+
+        public Builder setCircleBorderWidth(float circleBorderWidth) {
+            mCircleBorderWidth = circleBorderWidth;
+            return this;
+        }
+
+        public Builder setCircleOuterRadius(float circleOuterRadius) {
+            mCircleOuterRadius = circleOuterRadius;
+            return this;
+        }
+
+        public Builder setInnerPieColor(int innerPieColor) {
+            mInnerPieColor = innerPieColor;
+            return this;
+        }
+
+        public Builder setInnerPieStartingAngle(float innerPieStartingAngle) {
+            mInnerPieStartingAngle = innerPieStartingAngle;
+            return this;
+        }
+
+        public Builder setProgressTextSize(float progressTextSize) {
+            mProgressTextSize = progressTextSize;
+            return this;
+        }
+
+        public Builder setProgressTextColor(int progressTextColor) {
+            mProgressTextColor = progressTextColor;
+            return this;
+        }
+
+        public Builder setShowProgressText(boolean showProgressText) {
+            mShowProgressText = showProgressText;
+            return this;
+        }
+
+        /**
+         * 读取一个样式属性的值. 不是样式属性时什么也不做.
+         *
+         * @param a
+         * @param index R.styleable.ProgressCircle_xxx
+         */
+        Builder applyAttribute(TypedArray a, int index) {
+            // 在 library module 中不能使用 switch 来遍历资源文件中定义的id, 但可以转为使用if来判断.
+            // http://stackoverflow.com/questions/8476912/menu-item-ids-in-an-android-library-project
+            if (index == R.styleable.ProgressCircle_circleBorderColor) {
+                mCircleBorderColor = a.getColor(index, DEF_CIRCLE_BORDER_COLOR);
+            }
+            if (index == R.styleable.ProgressCircle_circleBorderWidth) {
+                // getDimension(), getDimensionPixelSize(), getDimensionPixelOffset()的对比:
+                // 不同点:
+                //      getDimension()方法返回 float.
+                //      getDimensionPixelSize(), getDimensionPixelOffset()方法都返回 int. (一个四舍五入, 一个直接舍弃小数部分).
+                // 相同点: 都会将我们设置的dp为单位的数值自动转换为以px为单位的数值, 所以无需我们操心了, 具体看源码.
+                mCircleBorderWidth = a.getDimension(index, mCircleBorderWidth);
+            }
+            if (index == R.styleable.ProgressCircle_circleOuterRadius) {
+                mCircleOuterRadius = a.getDimension(index, mCircleOuterRadius);
+            }
+            if (index == R.styleable.ProgressCircle_innerPieColor) {
+                mInnerPieColor = a.getColor(index, DEF_INNER_PIE_COLOR);
+            }
+            if (index == R.styleable.ProgressCircle_innerPieStartingAngle) {
+                mInnerPieStartingAngle = a.getFloat(index, DEF_PIE_STARGING_ANGLE);
+            }
+            if (index == R.styleable.ProgressCircle_progressTextSize) {
+                mProgressTextSize = a.getDimension(index, mProgressTextSize);
+            }
+            if (index == R.styleable.ProgressCircle_progressTextColor) {
+                mProgressTextColor = a.getColor(index, DEF_PROGRESS_TEXT_COLOR);
+            }
+            if (index == R.styleable.ProgressCircle_showProgressText) {
+                mShowProgressText = a.getBoolean(index, true);
+            }
+            return this;
+        }
+
+        public ProgressCircleStyle build() {
+            return new ProgressCircleStyle(this);
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.clevergump.progresscircle.library;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.os.Build;
+import android.os.SystemClock;
+import android.support.v4.util.LruCache;
+
+import com.clevergump.progresscircle.library.core.PercentLabels;
+import com.clevergump.progresscircle.library.core.ProgressMath;
+
+/**
+ * 把进度圆绘制到 Bitmap 中, 用于通知栏或 RemoteViews 这些不能使用自定义 View 的地方. 绘制的内容和 {@link ProgressCircle} 相同.
+ * <p>
+ * 进度按百分比分为 0% ~ 100% 共101帧, 另外还有总大小未知时的一帧. 绘制好的帧保存在一个容量很小的缓存中,
+ * 从缓存中移除的 Bitmap 放回复用池, 绘制新的帧时优先从复用池中取出, 所以进度不断变化时也只会创建几个 Bitmap.
+ * <p>
+ * 通知的更新过于频繁时会被系统丢弃, 所以 {@link #nextUpdate(long, long)} 只在画面变化, 并且距离上一次更新超过
+ * {@link #setMinUpdateInterval(long)} 时才返回需要发送的 Bitmap. 进度达到 100% 时总是立即返回.
+ * 因为间隔不够而没有返回的最后一帧会被记住, 如果之后很久都没有新的进度, 调用者需要在
+ * {@link #getPendingUpdateDelay()} 之后调用 {@link #flushPendingUpdate()} 补发这一帧, 否则通知会一直停留在旧的画面上.
+ * <p>
+ * 不是线程安全的, 通常只在负责下载的后台线程中使用. 返回的 Bitmap 只能在下一次调用这个类的方法之前使用,
+ * 例如设置给 Notification 之后立即调用 NotificationManager.notify(), 之后这个 Bitmap 可能被复用.
+ */
+public class ProgressNotificationRenderer {
+
+    // 默认的两次更新之间的最短间隔, 单位ms. 系统限制每个应用每秒最多更新5次左右的通知.
+    public static final long DEF_MIN_UPDATE_INTERVAL_MS = 200;
+    // 默认缓存的帧数
+    public static final int DEF_MAX_CACHED_FRAMES = 4;
+
+    // 总大小未知时那一帧的编号
+    private static final int INDETERMINATE_FRAME = PercentLabels.MAX_PERCENT + 1;
+    // 还没有更新过时的帧编号
+    private static final int NO_FRAME = -1;
+    // 复用池的容量
+    private static final int POOL_SIZE = 2;
+
+    // 负责绘制的 Drawable, 和控件中的相同.
+    private final ProgressCircleDrawable mDrawable;
+    // Bitmap 的宽高
+    private final int mSize;
+    // 绘制到 Bitmap 中使用的 Canvas, 每次绘制时切换目标 Bitmap.
+    private final Canvas mCanvas = new Canvas();
+    // 帧编号到 Bitmap 的缓存. 帧编号不超过127, Integer.valueOf() 不会创建新的对象.
+    private final LruCache<Integer, Bitmap> mFrames;
+    // 从缓存中移除后可以复用的 Bitmap
+    private final Bitmap[] mPool = new Bitmap[POOL_SIZE];
+    // 复用池中 Bitmap 的数量
+    private int mPoolCount;
+    // 两次更新之间的最短间隔, 单位ms.
+    private long mMinUpdateInterval = DEF_MIN_UPDATE_INTERVAL_MS;
+    // 上一次更新的帧编号
+    private int mLastUpdateFrame = NO_FRAME;
+    // 上一次更新的时间
+    private long mLastUpdateTime;
+    // 因为距离上一次更新不到最短间隔而没有返回的帧编号, 没有时为 NO_FRAME.
+    private int mPendingFrame = NO_FRAME;
+
+    /**
+     * 使用默认样式创建.
+     *
+     * @param context
+     * @param size    Bitmap 的宽高, 单位px. 作为通知的大图标时可以使用 android.R.dimen.notification_large_icon_width.
+     */
+    public ProgressNotificationRenderer(Context context, int size) {
+        this(context, size, ProgressCircleStyle.getDefault(context), DEF_MAX_CACHED_FRAMES);
+    }
+
+    /**
+     * @param context
+     * @param size            Bitmap 的宽高, 单位px.
+     * @param style           样式
+     * @param maxCachedFrames 最多缓存的帧数
+     */
+    public ProgressNotificationRenderer(Context context, int size, ProgressCircleStyle style, int maxCachedFrames) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Size must be positive");
+        }
+        mSize = size;
+        mDrawable = new ProgressCircleDrawable(context, style);
+        mDrawable.setBounds(0, 0, size, size);
+        // 不可见时不会注册到帧时钟中做动画, 总大小未知时只绘制静止的一帧.
+        mDrawable.setVisible(false, false);
+        mFrames = new LruCache<Integer, Bitmap>(Math.max(maxCachedFrames, 1)) {
+            @Override
+            protected void entryRemoved(boolean evicted, Integer key, Bitmap oldValue, Bitmap newValue) {
+                recycleToPool(oldValue);
+            }
+        };
+    }
+
+    /**
+     * 获取指定进度对应的帧. 缓存中没有时绘制一帧.
+     *
+     * @param progress    当前进度
+     * @param maxProgress 最大进度, 为0表示总大小未知.
+     * @return
+     */
+    public Bitmap render(long progress, long maxProgress) {
+        return renderFrame(frameOf(progress, maxProgress));
+    }
+
+    /**
+     * 判断是否需要更新通知, 需要时返回对应的帧.
+     * 画面和上一次更新的相同, 或者距离上一次更新还不到最短间隔时返回 null; 达到 100% 时只要画面变化就立即返回.
+     * 因为间隔不够而返回 null 时, 这一帧会被记住, 见 {@link #flushPendingUpdate()}.
+     *
+     * @param progress    当前进度
+     * @param maxProgress 最大进度, 为0表示总大小未知.
+     * @return 不需要更新时返回 null.
+     */
+    public Bitmap nextUpdate(long progress, long maxProgress) {
+        int frame = frameOf(progress, maxProgress);
+        if (frame == mLastUpdateFrame) {
+            // 画面回到了上一次更新的样子, 之前记住的帧也不需要再补发了.
+            mPendingFrame = NO_FRAME;
+            return null;
+        }
+        long now = SystemClock.elapsedRealtime();
+        if (frame != PercentLabels.MAX_PERCENT && mLastUpdateFrame != NO_FRAME
+                && now - mLastUpdateTime < mMinUpdateInterval) {
+            mPendingFrame = frame;
+            return null;
+        }
+        return deliver(frame, now);
+    }
+
+    /**
+     * 补发 {@link #nextUpdate(long, long)} 因为间隔不够而没有返回的最后一帧.
+     *
+     * @return 没有需要补发的帧, 或者距离上一次更新还不到最短间隔时返回 null.
+     */
+    public Bitmap flushPendingUpdate() {
+        if (mPendingFrame == NO_FRAME) {
+            return null;
+        }
+        long now = SystemClock.elapsedRealtime();
+        if (now - mLastUpdateTime < mMinUpdateInterval) {
+            return null;
+        }
+        return deliver(mPendingFrame, now);
+    }
+
+    /**
+     * 获取还要等待多久才能调用 {@link #flushPendingUpdate()} 补发没有返回的帧.
+     *
+     * @return 单位ms. 现在就可以补发时返回0, 没有需要补发的帧时返回 -1.
+     */
+    public long getPendingUpdateDelay() {
+        if (mPendingFrame == NO_FRAME) {
+            return -1;
+        }
+        return Math.max(mLastUpdateTime + mMinUpdateInterval - SystemClock.elapsedRealtime(), 0);
+    }
+
+    /**
+     * 设置两次更新之间的最短间隔.
+     *
+     * @param intervalMillis 单位ms
+     */
+    public void setMinUpdateInterval(long intervalMillis) {
+        mMinUpdateInterval = intervalMillis;
+    }
+
+    /**
+     * 获取两次更新之间的最短间隔.
+     *
+     * @return 单位ms
+     */
+    public long getMinUpdateInterval() {
+        return mMinUpdateInterval;
+    }
+
+    /**
+     * 清除上一次更新的记录, 下一次调用 {@link #nextUpdate(long, long)} 时一定会返回. 例如开始一个新的下载任务时.
+     */
+    public void resetUpdates() {
+        mLastUpdateFrame = NO_FRAME;
+        mPendingFrame = NO_FRAME;
+    }
+
+    /**
+     * 释放所有缓存的帧. 释放之后仍然可以继续使用.
+     */
+    public void release() {
+        mFrames.evictAll();
+        for (int i = 0; i < mPoolCount; i++) {
+            mPool[i] = null;
+        }
+        mPoolCount = 0;
+        mDrawable.releaseCaches();
+    }
+
+    /**
+     * 记录这次更新并返回对应的帧.
+     */
+    private Bitmap deliver(int frame, long now) {
+        mLastUpdateFrame = frame;
+        mLastUpdateTime = now;
+        mPendingFrame = NO_FRAME;
+        return renderFrame(frame);
+    }
+
+    /**
+     * 获取一帧. 缓存中没有时绘制并放入缓存.
+     */
+    private Bitmap renderFrame(int frame) {
+        Bitmap bitmap = mFrames.get(frame);
+        if (bitmap == null) {
+            bitmap = drawFrame(frame);
+            mFrames.put(frame, bitmap);
+        }
+        return bitmap;
+    }
+
+    /**
+     * 计算进度对应的帧编号.
+     */
+    private static int frameOf(long progress, long maxProgress) {
+        if (maxProgress <= 0) {
+            return INDETERMINATE_FRAME;
+        }
+        return ProgressMath.percent(progress, maxProgress);
+    }
+
+    /**
+     * 绘制一帧. 优先使用复用池中的 Bitmap.
+     *
+     * @param frame
+     * @return
+     */
+    private Bitmap drawFrame(int frame) {
+        Bitmap bitmap;
+        if (mPoolCount > 0) {
+            bitmap = mPool[--mPoolCount];
+            mPool[mPoolCount] = null;
+            bitmap.eraseColor(Color.TRANSPARENT);
+        } else {
+            bitmap = Bitmap.createBitmap(mSize, mSize, Bitmap.Config.ARGB_8888);
+        }
+        // 按百分比绘制, 这样同一帧的画面和实际进度的细微差别无关.
+        if (frame == INDETERMINATE_FRAME) {
+            mDrawable.updateProgress(0, 0);
+        } else {
+            mDrawable.updateProgress(frame, PercentLabels.MAX_PERCENT);
+        }
+        mCanvas.setBitmap(bitmap);
+        mDrawable.draw(mCanvas);
+        // 不再引用目标 Bitmap. Android 3.0 之前不能设置为 null.
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+            mCanvas.setBitmap(null);
+        }
+        return bitmap;
+    }
+
+    private void recycleToPool(Bitmap bitmap) {
+        if (mPoolCount < POOL_SIZE) {
+            mPool[mPoolCount++] = bitmap;
+        }
+    }
+}
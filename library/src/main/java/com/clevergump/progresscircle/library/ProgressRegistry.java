@@ -0,0 +1,181 @@
+package com.clevergump.progresscircle.library;
+
+import com.clevergump.progresscircle.library.core.PackedProgress;
+import com.clevergump.progresscircle.library.core.ProgressSlotTable;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * 以 URI 或任务 id 为键的进度登记表, 用于列表中 item 被复用, 而下载任务仍然在后台运行的场景.
+ * <p>
+ * 工作线程只按键更新进度, 不需要知道当前是哪个控件在显示这个任务. 控件通过 {@link #bind(ProgressCircle, String)}
+ * 订阅一个键, 订阅时直接从登记表中读取这个键当前的进度, 所以复用的 item 重新绑定后会立即显示正确的进度.
+ * 工作线程只写入数值并通知订阅的控件, 控件在主线程中按自己当前订阅的位置重新读取, 所以通知的过程中控件被重新绑定到其他的键,
+ * 也不会显示旧的键的进度.
+ * <p>
+ * 每个键的进度打包成一个 long 值 ({@link PackedProgress}) 保存在 {@link ProgressSlotTable} 中, 没有任何装箱.
+ * 没有控件订阅的键, 更新进度时只需要查找键 (不会创建对象) 并写入数组中的一个位置. 键的位置在移除之后如何复用,
+ * 以及如何判断订阅已经失效, 见 {@link ProgressSlotTable}.
+ * <p>
+ * 登记表只弱引用订阅的控件, 所以比界面存活得更久的登记表不会使已经销毁的 Activity 无法回收.
+ */
+public class ProgressRegistry {
+
+    // 每个键的进度以及订阅的控件
+    private final ProgressSlotTable<Binding> mTable;
+
+    /**
+     * @param capacity 最多同时登记的键的数量
+     */
+    public ProgressRegistry(int capacity) {
+        mTable = new ProgressSlotTable<Binding>(capacity);
+    }
+
+    /**
+     * 更新一个键的进度. 可以在任意线程中调用. 键还没有登记时自动登记.
+     * 只写入数值并通知订阅的控件, 控件在主线程中重新读取.
+     *
+     * @param key         URI 或任务 id
+     * @param progress    当前进度
+     * @param maxProgress 最大进度, 为0表示总大小未知.
+     * @return 登记的键已经达到上限, 无法登记时返回 false.
+     */
+    public boolean update(String key, long progress, long maxProgress) {
+        if (progress < 0 || maxProgress < 0) {
+            throw new IllegalArgumentException("Progress can't be less than zero");
+        }
+        long packed = PackedProgress.pack(progress, maxProgress);
+        int slot = mTable.beginUpdate(key);
+        if (slot < 0) {
+            return false;
+        }
+        Binding binding = mTable.finishUpdate(slot, packed);
+        if (binding != null) {
+            ProgressCircle subscriber = binding.get();
+            if (subscriber != null) {
+                subscriber.onRegistryProgressChanged();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 移除一个键, 例如任务完成, 失败或者取消之后. 订阅这个键的控件会被自动取消订阅, 并保留当前显示的进度.
+     * 可以在任意线程中调用.
+     *
+     * @param key
+     * @return 这个键没有登记时返回 false.
+     */
+    public boolean remove(String key) {
+        // 控件自身记录的订阅信息只在主线程中修改, 这里只清除登记表一侧的记录, 并让代数加1.
+        // 控件下次读取时发现代数变化, 会自己取消订阅; 之后控件取消订阅时只会比较并清除, 不会影响其他键.
+        return mTable.remove(key);
+    }
+
+    /**
+     * 判断一个键是否已经登记. 可以在任意线程中调用.
+     *
+     * @param key
+     * @return
+     */
+    public boolean contains(String key) {
+        return mTable.contains(key);
+    }
+
+    /**
+     * 让控件订阅一个键, 并立即显示这个键当前的进度. 这个键还没有进度时将控件的进度清零.
+     * 控件之前订阅的键会被自动取消订阅. 每个键同一时刻只能有一个控件订阅, 后订阅的控件会替换掉之前的控件,
+     * 之前的控件也会被取消订阅.
+     * <p>
+     * 只能订阅已经通过 {@link #update(String, long, long)} 登记过的键, 不会为订阅而登记新的键,
+     * 否则已经结束的任务的键会一直占用位置. 键没有登记时控件的进度清零.
+     * 只能在主线程中调用.
+     *
+     * @param circle
+     * @param key
+     * @return 键没有登记时返回 false.
+     */
+    public boolean bind(ProgressCircle circle, String key) {
+        unbind(circle);
+        while (true) {
+            int slot = mTable.find(key);
+            if (slot < 0) {
+                circle.resetProgress();
+                return false;
+            }
+            // 先读取代数, 再确认键仍然对应这个位置. 确认之后键才被移除时代数一定会变化, 控件读取时能发现.
+            int generation = mTable.getGeneration(slot);
+            if (mTable.find(key) != slot) {
+                continue;
+            }
+            Binding binding = new Binding(this, circle, slot, generation);
+            Binding displaced = mTable.setSubscriber(slot, binding);
+            // 订阅只在主线程中进行, 所以被替换掉的一定是这个键之前的订阅 (或者已经失效的订阅), 直接让那个控件取消订阅.
+            if (displaced != null) {
+                ProgressCircle displacedCircle = displaced.get();
+                if (displacedCircle != null && displacedCircle.getRegistryBinding() == displaced) {
+                    displacedCircle.setRegistryBinding(null);
+                }
+            }
+            circle.setRegistryBinding(binding);
+            pull(circle);
+            return true;
+        }
+    }
+
+    /**
+     * 取消控件的订阅. 只能在主线程中调用.
+     *
+     * @param circle
+     */
+    public void unbind(ProgressCircle circle) {
+        Binding binding = circle.getRegistryBinding();
+        if (binding == null || binding.registry != this) {
+            return;
+        }
+        mTable.clearSubscriber(binding.slot, binding);
+        circle.setRegistryBinding(null);
+    }
+
+    /**
+     * 读取控件当前订阅的键的最新进度并显示. 这个键已经被移除时取消订阅, 保留控件当前的进度. 只能在主线程中调用.
+     *
+     * @param circle
+     */
+    void pull(ProgressCircle circle) {
+        Binding binding = circle.getRegistryBinding();
+        if (binding == null || binding.registry != this) {
+            return;
+        }
+        // 先读取数值再检查代数: 位置被复用之前代数一定已经变化了, 所以代数没有变化时读到的一定是这个键的数值.
+        long packed = mTable.get(binding.slot);
+        if (mTable.getGeneration(binding.slot) != binding.generation) {
+            unbind(circle);
+            return;
+        }
+        if (packed == PackedProgress.NONE) {
+            circle.resetProgress();
+        } else {
+            circle.setProgress(PackedProgress.progressOf(packed), PackedProgress.maxOf(packed));
+        }
+    }
+
+    /**
+     * 控件的一次订阅, 创建后不可修改. 同时也是登记表中对控件的弱引用.
+     */
+    static final class Binding extends WeakReference<ProgressCircle> {
+        // 订阅的登记表
+        final ProgressRegistry registry;
+        // 在登记表中订阅的位置
+        final int slot;
+        // 订阅时这个位置的代数. 位置上的键被移除后代数会变化, 据此判断订阅是否已经失效.
+        final int generation;
+
+        Binding(ProgressRegistry registry, ProgressCircle circle, int slot, int generation) {
+            super(circle);
+            this.registry = registry;
+            this.slot = slot;
+            this.generation = generation;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.clevergump.progresscircle.library;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+import com.clevergump.progresscircle.library.core.PercentLabels;
+import com.clevergump.progresscircle.library.core.ProgressMath;
+
+/**
+ * 把某个样式在某个尺寸下 0% ~ 100% 的所有帧预先绘制到同一张 Bitmap 中的图集.
+ * <p>
+ * 每一帧都包含边框, 扇形以及百分比文字, 按行排列在网格中. 绘制时只需要一次 drawBitmap() 把对应的那一格复制到画布上,
+ * 省去了每一帧都进行抗锯齿的 drawArc() 和 drawText() 的开销. 创建后不可修改, 由 {@link SpriteAtlasCache} 缓存和共享.
+ */
+final class SpriteAtlas {
+
+    // 帧的数量, 每1%一帧.
+    static final int FRAME_COUNT = PercentLabels.MAX_PERCENT + 1;
+    // 图集的宽高都不能超过这个值, 否则一些老设备上无法作为纹理上传到 GPU.
+    private static final int MAX_ATLAS_DIMENSION = 2048;
+
+    // 每一帧的宽度
+    final int frameWidth;
+    // 每一帧的高度
+    final int frameHeight;
+    // 每一行的帧数
+    private final int mColumns;
+    // 保存所有帧的 Bitmap
+    private final Bitmap mBitmap;
+
+    private SpriteAtlas(int frameWidth, int frameHeight, int columns, Bitmap bitmap) {
+        this.frameWidth = frameWidth;
+        this.frameHeight = frameHeight;
+        mColumns = columns;
+        mBitmap = bitmap;
+    }
+
+    /**
+     * 根据几何数据 (其中包含了尺寸和样式) 绘制所有帧.
+     *
+     * @param geometry
+     * @return 尺寸为0, 或者图集会超过最大尺寸时返回 null, 此时应该直接绘制.
+     */
+    static SpriteAtlas create(CircleGeometry geometry) {
+        int frameWidth = geometry.width;
+        int frameHeight = geometry.height;
+        if (frameWidth <= 0 || frameHeight <= 0) {
+            return null;
+        }
+        int columns = (int) Math.ceil(Math.sqrt(FRAME_COUNT));
+        int rows = (FRAME_COUNT + columns - 1) / columns;
+        if (frameWidth * columns > MAX_ATLAS_DIMENSION || frameHeight * rows > MAX_ATLAS_DIMENSION) {
+            return null;
+        }
+        Bitmap bitmap;
+        try {
+            bitmap = Bitmap.createBitmap(frameWidth * columns, frameHeight * rows, Bitmap.Config.ARGB_8888);
+        } catch (OutOfMemoryError e) {
+            return null;
+        }
+        Canvas canvas = new Canvas(bitmap);
+        ProgressCircleStyle style = geometry.style;
+        for (int percent = 0; percent < FRAME_COUNT; percent++) {
+            int saveCount = canvas.save();
+            canvas.translate(percent % columns * frameWidth, percent / columns * frameHeight);
+            drawFrame(canvas, geometry, style, percent);
+            canvas.restoreToCount(saveCount);
+        }
+        return new SpriteAtlas(frameWidth, frameHeight, columns, bitmap);
+    }
+
+    /**
+     * 把指定百分比对应的帧绘制到画布的 (0, 0) 位置.
+     *
+     * @param canvas
+     * @param percent 0 ~ 100
+     * @param paint   可以为 null. 设置了透明度或颜色过滤器时传入应用了这些设置的画笔.
+     * @param srcRect 可复用的矩形, 用于保存源区域.
+     * @param dstRect 可复用的矩形, 用于保存目标区域.
+     */
+    void draw(Canvas canvas, int percent, Paint paint, Rect srcRect, Rect dstRect) {
+        int left = percent % mColumns * frameWidth;
+        int top = percent / mColumns * frameHeight;
+        srcRect.set(left, top, left + frameWidth, top + frameHeight);
+        dstRect.set(0, 0, frameWidth, frameHeight);
+        canvas.drawBitmap(mBitmap, srcRect, dstRect, paint);
+    }
+
+    /**
+     * 获取图集占用的内存字节数.
+     *
+     * @return
+     */
+    int getByteCount() {
+        return mBitmap.getRowBytes() * mBitmap.getHeight();
+    }
+
+    /**
+     * 绘制一帧, 效果和 {@link ProgressCircleDrawable} 使用默认百分比文字时直接绘制的效果相同.
+     * 测试中会把这里的绘制操作和直接绘制的操作逐一对比.
+     *
+     * @param canvas
+     * @param geometry
+     * @param style
+     * @param percent
+     */
+    static void drawFrame(Canvas canvas, CircleGeometry geometry, ProgressCircleStyle style, int percent) {
+        canvas.drawCircle(geometry.centerX, geometry.centerY, geometry.circleRadius, geometry.getBorderPaint());
+        canvas.drawArc(geometry.getInnerArcRect(), style.getInnerPieStartingAngle(),
+                ProgressMath.sweepAngle(percent, PercentLabels.MAX_PERCENT), true, style.getContentPaint());
+        if (style.isShowProgressText()) {
+            char[] text = PercentLabels.get(percent);
+            float baselineX = geometry.centerX - style.getPercentLabelWidth(percent) / 2;
+            float baselineY = geometry.centerY + style.getTextBaselineOffset();
+            canvas.drawText(text, 0, text.length, baselineX, baselineY, style.getProgressTextPaint());
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.clevergump.progresscircle.library;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.Build;
+import android.support.v4.util.LruCache;
+
+/**
+ * 精灵图模式 ({@link ProgressCircle#RENDER_MODE_SPRITE}) 下使用的图集缓存, 整个进程共用一个.
+ * <p>
+ * 以 (样式, 像素尺寸) 为键, 相同样式和尺寸的所有控件共用同一张图集. 缓存的总大小按字节数限制, 超过时淘汰最久没有使用的图集.
+ * Android 4.0 及以上的系统中会自动响应 onTrimMemory(), 更低的版本可以在 Application 或 Activity 的 onTrimMemory()/
+ * onLowMemory() 中手动调用 {@link #trimMemory(int)}.
+ * <p>
+ * 只能在主线程中使用.
+ */
+public final class SpriteAtlasCache {
+
+    // 默认最多使用应用最大可用内存的 1/16.
+    private static final int DEF_MAX_SIZE_DIVISOR = 16;
+
+    private static SpriteAtlasCache sInstance;
+
+    private final LruCache<CircleGeometry, SpriteAtlas> mCache;
+
+    private SpriteAtlasCache(int maxSizeInBytes) {
+        mCache = new LruCache<CircleGeometry, SpriteAtlas>(maxSizeInBytes) {
+            @Override
+            protected int sizeOf(CircleGeometry key, SpriteAtlas value) {
+                return value.getByteCount();
+            }
+        };
+    }
+
+    /**
+     * 获取缓存的唯一实例. 第一次调用时会注册内存不足时的回调.
+     *
+     * @param context
+     * @return
+     */
+    public static SpriteAtlasCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new SpriteAtlasCache((int) (Runtime.getRuntime().maxMemory() / DEF_MAX_SIZE_DIVISOR));
+            // ComponentCallbacks2 是 Android 4.0 才加入的, 放在单独的类中, 避免低版本的系统加载这个类时出错.
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+                context.getApplicationContext().registerComponentCallbacks(new TrimMemoryCallbacks());
+            }
+        }
+        return sInstance;
+    }
+
+    /**
+     * 根据内存紧张的程度释放图集. 取值和 ComponentCallbacks2.onTrimMemory() 的参数相同.
+     *
+     * @param level
+     */
+    public void trimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            mCache.evictAll();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            mCache.trimToSize(mCache.maxSize() / 2);
+        }
+    }
+
+    /**
+     * 释放所有图集.
+     */
+    public void clear() {
+        mCache.evictAll();
+    }
+
+    /**
+     * 获取当前所有图集占用的内存字节数.
+     *
+     * @return
+     */
+    public int getMemoryUsage() {
+        return mCache.size();
+    }
+
+    /**
+     * 获取最多允许占用的内存字节数.
+     *
+     * @return
+     */
+    public int getMaxMemory() {
+        return mCache.maxSize();
+    }
+
+    /**
+     * 获取命中次数. 精灵图模式下每绘制一帧查找一次.
+     *
+     * @return
+     */
+    public int getHitCount() {
+        return mCache.hitCount();
+    }
+
+    /**
+     * 获取未命中的次数, 也就是需要重新绘制图集的次数.
+     *
+     * @return
+     */
+    public int getMissCount() {
+        return mCache.missCount();
+    }
+
+    /**
+     * 获取命中率, 0 ~ 1. 还没有查找过时返回0.
+     *
+     * @return
+     */
+    public float getHitRate() {
+        int hitCount = mCache.hitCount();
+        int total = hitCount + mCache.missCount();
+        return total == 0 ? 0 : (float) hitCount / total;
+    }
+
+    /**
+     * 查找几何数据对应的图集, 没有时创建并放入缓存.
+     * 被淘汰的图集不会主动 recycle(), 因为硬件加速时可能还有显示列表在引用它, 交给 GC 回收.
+     *
+     * @param geometry
+     * @return 无法创建图集时返回 null.
+     */
+    SpriteAtlas obtain(CircleGeometry geometry) {
+        SpriteAtlas atlas = mCache.get(geometry);
+        if (atlas == null) {
+            atlas = SpriteAtlas.create(geometry);
+            if (atlas != null) {
+                mCache.put(geometry, atlas);
+            }
+        }
+        return atlas;
+    }
+
+    /**
+     * 响应系统内存不足时的回调.
+     */
+    private static class TrimMemoryCallbacks implements ComponentCallbacks2 {
+
+        @Override
+        public void onTrimMemory(int level) {
+            if (sInstance != null) {
+                sInstance.trimMemory(level);
+            }
+        }
+
+        @Override
+        public void onConfigurationChanged(Configuration newConfig) {
+        }
+
+        @Override
+        public void onLowMemory() {
+            if (sInstance != null) {
+                sInstance.clear();
+            }
+        }
+    }
+}
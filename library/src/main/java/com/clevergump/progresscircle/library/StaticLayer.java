@@ -0,0 +1,143 @@
+package com.clevergump.progresscircle.library;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Picture;
+import android.os.Build;
+
+/**
+ * 静态图层.
+ * <p>
+ * 圆的边框等在进度变化时不会变化的内容, 每个尺寸/样式只录制一次到 {@link Picture} 中 (或者绘制到一个 {@link Bitmap} 中),
+ * 之后每一帧直接把录制好的内容画到 Canvas 上, 不必再次进行抗锯齿的光栅化. 只有扇形和文字才需要每一帧动态绘制.
+ * <p>
+ * 每个图层只对应一组 (几何数据, 缓存方式, 透明度, 颜色过滤器), 创建后不可修改, 由 {@link StaticLayerCache} 在所有控件之间共享.
+ */
+final class StaticLayer {
+
+    // 估算 Picture 占用的内存时使用的字节数. Picture 中只录制了一个绘制命令, 实际占用很小.
+    private static final int PICTURE_BYTE_COUNT = 1024;
+
+    /**
+     * 负责绘制静态内容.
+     */
+    interface Painter {
+        /**
+         * 绘制所有静态内容.
+         *
+         * @param canvas      画布, 尺寸和控件相同.
+         * @param geometry    几何数据
+         * @param alpha       透明度, 0 ~ 255.
+         * @param colorFilter 颜色过滤器, 可以为 null.
+         */
+        void drawStaticContent(Canvas canvas, CircleGeometry geometry, int alpha, ColorFilter colorFilter);
+    }
+
+    private final Painter mPainter;
+    final CircleGeometry geometry;
+    // 使用的缓存方式, ProgressCircle.STATIC_LAYER_PICTURE 或者 ProgressCircle.STATIC_LAYER_BITMAP
+    final int mode;
+    final int alpha;
+    final ColorFilter colorFilter;
+
+    private Picture mPicture;
+    private Bitmap mBitmap;
+    // 被缓存淘汰后为 true, 使用者需要重新从缓存中获取.
+    private boolean mReleased;
+
+    StaticLayer(Painter painter, CircleGeometry geometry, int mode, int alpha, ColorFilter colorFilter) {
+        mPainter = painter;
+        this.geometry = geometry;
+        this.mode = mode;
+        this.alpha = alpha;
+        this.colorFilter = colorFilter;
+    }
+
+    /**
+     * 判断该图层是否可以用于给定的参数.
+     *
+     * @param geometry
+     * @param mode
+     * @param alpha
+     * @param colorFilter
+     * @return
+     */
+    boolean matches(CircleGeometry geometry, int mode, int alpha, ColorFilter colorFilter) {
+        return !mReleased && this.geometry.equals(geometry) && this.mode == mode && this.alpha == alpha
+                && this.colorFilter == colorFilter;
+    }
+
+    /**
+     * 将静态内容画到 Canvas 上, 第一次绘制时先录制.
+     *
+     * @param canvas
+     */
+    void draw(Canvas canvas) {
+        if (geometry.width <= 0 || geometry.height <= 0) {
+            return;
+        }
+        if (usePicture(canvas)) {
+            if (mPicture == null) {
+                recordPicture();
+            }
+            canvas.drawPicture(mPicture);
+        } else {
+            if (mBitmap == null) {
+                renderBitmap();
+            }
+            canvas.drawBitmap(mBitmap, 0, 0, null);
+        }
+    }
+
+    /**
+     * 估算该图层最多占用的内存字节数. 可能退回使用 Bitmap 时按 Bitmap 的大小计算.
+     *
+     * @return
+     */
+    int getByteCount() {
+        if (mode == ProgressCircle.STATIC_LAYER_PICTURE && Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            return PICTURE_BYTE_COUNT;
+        }
+        return Math.max(geometry.width, 0) * Math.max(geometry.height, 0) * 4;
+    }
+
+    /**
+     * 释放录制的内容, 由缓存在淘汰该图层时调用. Bitmap 不会主动 recycle(), 因为硬件加速时上一次录制的显示列表可能还在引用它,
+     * 只丢掉引用, 交给 GC 回收.
+     */
+    void release() {
+        mReleased = true;
+        mPicture = null;
+        mBitmap = null;
+    }
+
+    /**
+     * 判断是否可以使用 Picture. 开启硬件加速的 Canvas 从 Android 6.0 开始才支持 drawPicture(), 更低的版本使用 Bitmap.
+     *
+     * @param canvas
+     * @return
+     */
+    private boolean usePicture(Canvas canvas) {
+        if (mode != ProgressCircle.STATIC_LAYER_PICTURE) {
+            return false;
+        }
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.M
+                || Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB
+                || !canvas.isHardwareAccelerated();
+    }
+
+    private void recordPicture() {
+        Picture picture = new Picture();
+        Canvas recordingCanvas = picture.beginRecording(geometry.width, geometry.height);
+        mPainter.drawStaticContent(recordingCanvas, geometry, alpha, colorFilter);
+        picture.endRecording();
+        mPicture = picture;
+    }
+
+    private void renderBitmap() {
+        Bitmap bitmap = Bitmap.createBitmap(geometry.width, geometry.height, Bitmap.Config.ARGB_8888);
+        mPainter.drawStaticContent(new Canvas(bitmap), geometry, alpha, colorFilter);
+        mBitmap = bitmap;
+    }
+}
@@ -0,0 +1,183 @@
+package com.clevergump.progresscircle.library;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.ColorFilter;
+import android.os.Build;
+import android.support.v4.util.LruCache;
+
+/**
+ * 静态图层 ({@link ProgressCircle#STATIC_LAYER_PICTURE}, {@link ProgressCircle#STATIC_LAYER_BITMAP}) 的缓存, 整个进程共用一个.
+ * <p>
+ * 以 (几何数据, 缓存方式, 透明度, 颜色过滤器) 为键, 相同尺寸和样式的所有控件共用同一个录制好的边框, 控件从窗口上移除时不会释放.
+ * 缓存的总大小按字节数限制, 超过时淘汰最久没有使用的图层. Android 4.0 及以上的系统中会自动响应 onTrimMemory(),
+ * 更低的版本可以在 Application 或 Activity 的 onTrimMemory()/onLowMemory() 中手动调用 {@link #trimMemory(int)}.
+ * <p>
+ * 只能在主线程中使用.
+ */
+public final class StaticLayerCache {
+
+    // 默认最多使用应用最大可用内存的 1/32.
+    private static final int DEF_MAX_SIZE_DIVISOR = 32;
+
+    private static StaticLayerCache sInstance;
+
+    private final LruCache<Key, StaticLayer> mCache;
+
+    private StaticLayerCache(int maxSizeInBytes) {
+        mCache = new LruCache<Key, StaticLayer>(maxSizeInBytes) {
+            @Override
+            protected int sizeOf(Key key, StaticLayer value) {
+                return value.getByteCount();
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, Key key, StaticLayer oldValue, StaticLayer newValue) {
+                // 正在使用该图层的控件会在下次绘制时发现它已经被释放, 重新从缓存中获取.
+                oldValue.release();
+            }
+        };
+    }
+
+    /**
+     * 获取缓存的唯一实例. 第一次调用时会注册内存不足时的回调.
+     *
+     * @param context
+     * @return
+     */
+    public static StaticLayerCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new StaticLayerCache((int) (Runtime.getRuntime().maxMemory() / DEF_MAX_SIZE_DIVISOR));
+            // ComponentCallbacks2 是 Android 4.0 才加入的, 放在单独的类中, 避免低版本的系统加载这个类时出错.
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+                context.getApplicationContext().registerComponentCallbacks(new TrimMemoryCallbacks());
+            }
+        }
+        return sInstance;
+    }
+
+    /**
+     * 根据内存紧张的程度释放图层. 取值和 ComponentCallbacks2.onTrimMemory() 的参数相同.
+     *
+     * @param level
+     */
+    public void trimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            mCache.evictAll();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            mCache.trimToSize(mCache.maxSize() / 2);
+        }
+    }
+
+    /**
+     * 释放所有图层.
+     */
+    public void clear() {
+        mCache.evictAll();
+    }
+
+    /**
+     * 获取当前所有图层估算占用的内存字节数.
+     *
+     * @return
+     */
+    public int getMemoryUsage() {
+        return mCache.size();
+    }
+
+    /**
+     * 获取最多允许占用的内存字节数.
+     *
+     * @return
+     */
+    public int getMaxMemory() {
+        return mCache.maxSize();
+    }
+
+    /**
+     * 查找给定参数对应的图层, 没有时创建并放入缓存. 图层中的内容在第一次绘制时才录制.
+     * 只在尺寸, 样式, 缓存方式, 透明度或颜色过滤器变化, 或者图层被淘汰之后才需要调用, 不是每一帧都调用.
+     *
+     * @param painter     创建新图层时用来绘制静态内容, 不能持有控件等对象.
+     * @param geometry
+     * @param mode
+     * @param alpha
+     * @param colorFilter
+     * @return
+     */
+    StaticLayer obtain(StaticLayer.Painter painter, CircleGeometry geometry, int mode, int alpha,
+                       ColorFilter colorFilter) {
+        Key key = new Key(geometry, mode, alpha, colorFilter);
+        StaticLayer layer = mCache.get(key);
+        if (layer == null) {
+            layer = new StaticLayer(painter, geometry, mode, alpha, colorFilter);
+            mCache.put(key, layer);
+        }
+        return layer;
+    }
+
+    /**
+     * 缓存的键.
+     */
+    private static final class Key {
+        private final CircleGeometry mGeometry;
+        private final int mMode;
+        private final int mAlpha;
+        // 颜色过滤器没有实现 equals(), 按对象本身区分.
+        private final ColorFilter mColorFilter;
+
+        Key(CircleGeometry geometry, int mode, int alpha, ColorFilter colorFilter) {
+            mGeometry = geometry;
+            mMode = mode;
+            mAlpha = alpha;
+            mColorFilter = colorFilter;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return mGeometry.equals(other.mGeometry) && mMode == other.mMode && mAlpha == other.mAlpha
+                    && mColorFilter == other.mColorFilter;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = mGeometry.hashCode();
+            result = 31 * result + mMode;
+            result = 31 * result + mAlpha;
+            result = 31 * result + System.identityHashCode(mColorFilter);
+            return result;
+        }
+    }
+
+    /**
+     * 响应系统内存不足时的回调.
+     */
+    private static class TrimMemoryCallbacks implements ComponentCallbacks2 {
+
+        @Override
+        public void onTrimMemory(int level) {
+            if (sInstance != null) {
+                sInstance.trimMemory(level);
+            }
+        }
+
+        @Override
+        public void onConfigurationChanged(Configuration newConfig) {
+        }
+
+        @Override
+        public void onLowMemory() {
+            if (sInstance != null) {
+                sInstance.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.clevergump.progresscircle.library;
+
+import android.app.Activity;
+import android.content.Context;
+import android.graphics.Rect;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import org.robolectric.Robolectric;
+import org.robolectric.util.ActivityController;
+
+/**
+ * 记录刷新次数的进度圆. 测试中不会真正地按帧绘制, 所以用 {@link #needsDraw()} 表示下一帧是否需要调用 onDraw().
+ */
+class CountingProgressCircle extends ProgressCircle {
+
+    // 调用 invalidate 系列方法的次数
+    private int mInvalidateCount;
+    // 上一次绘制之后是否被刷新过
+    private boolean mDirty;
+
+    CountingProgressCircle(Context context) {
+        super(context);
+    }
+
+    /**
+     * 创建一个宽高都是 size 的圆, 添加到一个可见的 Activity 中并完成布局. 圆的外边框半径设置为 size 的1/2.
+     *
+     * @param size 宽高, 单位px.
+     * @return
+     */
+    static CountingProgressCircle attach(int size) {
+        ActivityController<Activity> controller = Robolectric.buildActivity(Activity.class).create();
+        Activity activity = controller.get();
+        CountingProgressCircle circle = new CountingProgressCircle(activity);
+        circle.setCircleOuterRadius(size / 2f);
+        FrameLayout root = new FrameLayout(activity);
+        root.addView(circle, new FrameLayout.LayoutParams(size, size));
+        activity.setContentView(root);
+        controller.start().resume().visible();
+        int spec = View.MeasureSpec.makeMeasureSpec(size, View.MeasureSpec.EXACTLY);
+        circle.measure(spec, spec);
+        circle.layout(0, 0, size, size);
+        // 通知窗口可见, 见 getWindowVisibility().
+        root.dispatchWindowVisibilityChanged(View.VISIBLE);
+        circle.drawFrame(new RecordingCanvas());
+        circle.resetInvalidateCount();
+        return circle;
+    }
+
+    /**
+     * 模拟一帧: 把圆绘制到指定的画布上, 并清除刷新标记.
+     *
+     * @param canvas
+     */
+    void drawFrame(RecordingCanvas canvas) {
+        mDirty = false;
+        onDraw(canvas);
+    }
+
+    boolean needsDraw() {
+        return mDirty;
+    }
+
+    int getInvalidateCount() {
+        return mInvalidateCount;
+    }
+
+    void resetInvalidateCount() {
+        mInvalidateCount = 0;
+    }
+
+    /**
+     * Robolectric 3 不会执行 ViewRootImpl 的遍历, 窗口的可见性一直是 GONE, 圆会认为自己不能被看到而不刷新.
+     * 添加到窗口中之后按窗口可见处理.
+     */
+    @Override
+    public int getWindowVisibility() {
+        return getWindowToken() != null ? VISIBLE : super.getWindowVisibility();
+    }
+
+    @Override
+    public void invalidate() {
+        onInvalidate();
+        super.invalidate();
+    }
+
+    @Override
+    public void invalidate(Rect dirty) {
+        onInvalidate();
+        super.invalidate(dirty);
+    }
+
+    @Override
+    public void invalidate(int l, int t, int r, int b) {
+        onInvalidate();
+        super.invalidate(l, t, r, b);
+    }
+
+    private void onInvalidate() {
+        mInvalidateCount++;
+        mDirty = true;
+    }
+}
@@ -0,0 +1,137 @@
+package com.clevergump.progresscircle.library;
+
+import org.junit.Assume;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+/**
+ * 以字节为单位的下载进度驱动不同尺寸的圆, 检查刷新次数, 每帧的绘制操作数和 onDraw() 的内存分配.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class DrawBudgetTest {
+
+    private static final int[] SIZES = {48, 100, 300};
+    // 每个尺寸下更新进度的次数, 也是最大进度.
+    private static final int UPDATES = 100000;
+    // 预热之后平均每次 onDraw() 允许分配的字节数, 只用来容忍偶尔的统计误差.
+    private static final long ALLOCATED_BYTES_PER_DRAW = 32;
+
+    @Test
+    public void withText_invalidatesOnlyOnVisibleChanges() throws Exception {
+        for (int size : SIZES) {
+            CountingProgressCircle circle = CountingProgressCircle.attach(size);
+            sweep(circle, new RecordingCanvas(), 3, null);
+            assertTrue("size " + size + ": " + circle.getInvalidateCount() + " invalidations",
+                    circle.getInvalidateCount() <= maxInvalidations(size));
+        }
+    }
+
+    @Test
+    public void withoutText_drawsCircleAndPieOnly() throws Exception {
+        for (int size : SIZES) {
+            CountingProgressCircle circle = CountingProgressCircle.attach(size);
+            circle.setShowProgressText(false);
+            circle.drawFrame(new RecordingCanvas());
+            circle.resetInvalidateCount();
+            sweep(circle, new RecordingCanvas(), 2, null);
+            assertTrue("size " + size + ": " + circle.getInvalidateCount() + " invalidations",
+                    circle.getInvalidateCount() <= maxInvalidations(size));
+        }
+    }
+
+    @Test
+    public void spriteMode_drawsOneBitmapPerPercent() throws Exception {
+        // 300px 的图集超过了最大尺寸, 会退回直接绘制.
+        for (int size : new int[]{48, 100}) {
+            CountingProgressCircle circle = CountingProgressCircle.attach(size);
+            circle.setRenderMode(ProgressCircle.RENDER_MODE_SPRITE);
+            circle.drawFrame(new RecordingCanvas());
+            circle.resetInvalidateCount();
+            int frames = sweep(circle, new RecordingCanvas(), 1, null);
+            // 0% 在开始之前已经画过了, 之后 1% ~ 100% 每个百分比正好一帧.
+            assertEquals("size " + size, 100, frames);
+            assertEquals("size " + size, 100, circle.getInvalidateCount());
+        }
+    }
+
+    @Test
+    public void onDraw_doesNotAllocateAfterWarmup() throws Exception {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+        for (int size : SIZES) {
+            CountingProgressCircle circle = CountingProgressCircle.attach(size);
+            RecordingCanvas canvas = new RecordingCanvas();
+            sweep(circle, canvas, 3, null);
+            circle.resetProgress();
+            circle.drawFrame(canvas);
+            long[] allocated = new long[1];
+            int frames = sweep(circle, canvas, 3, allocated);
+            long perDraw = allocated[0] / frames;
+            assertTrue("size " + size + ": " + perDraw + " bytes per onDraw()", perDraw <= ALLOCATED_BYTES_PER_DRAW);
+        }
+    }
+
+    /**
+     * 把进度从0逐字节地更新到 {@link #UPDATES}, 每次更新后如果圆被刷新了就绘制一帧.
+     *
+     * @param circle
+     * @param canvas
+     * @param maxDrawsPerFrame 每帧最多的绘制操作数
+     * @param allocated        不为 null 时把所有 onDraw() 分配的字节数累加到第一个元素中.
+     * @return 绘制的帧数
+     */
+    private static int sweep(CountingProgressCircle circle, RecordingCanvas canvas, int maxDrawsPerFrame,
+                             long[] allocated) {
+        com.sun.management.ThreadMXBean threads = allocated == null
+                ? null : (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long overhead = threads == null ? 0 : measureOverhead(threads, threadId);
+        int frames = 0;
+        for (int i = 0; i <= UPDATES; i++) {
+            int invalidateCount = circle.getInvalidateCount();
+            circle.setProgress(i, UPDATES);
+            assertTrue("more than one invalidation per update", circle.getInvalidateCount() - invalidateCount <= 1);
+            if (!circle.needsDraw()) {
+                continue;
+            }
+            canvas.resetDrawCount();
+            if (threads == null) {
+                circle.drawFrame(canvas);
+            } else {
+                long before = threads.getThreadAllocatedBytes(threadId);
+                circle.drawFrame(canvas);
+                allocated[0] += Math.max(threads.getThreadAllocatedBytes(threadId) - before - overhead, 0);
+            }
+            frames++;
+            assertTrue(canvas.getDrawCount() + " draws in one frame", canvas.getDrawCount() <= maxDrawsPerFrame);
+        }
+        return frames;
+    }
+
+    /**
+     * 每个百分比最多刷新一次, 加上扇形的边缘在圆周上每移动1个像素刷新一次, 再加上开始和结束时各一次.
+     */
+    private static int maxInvalidations(int size) {
+        return 101 + (int) Math.ceil(Math.PI * size) + 2;
+    }
+
+    /**
+     * 测量连续两次读取线程分配字节数本身带来的分配量.
+     */
+    private static long measureOverhead(com.sun.management.ThreadMXBean threads, long threadId) {
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < 1000; i++) {
+            long before = threads.getThreadAllocatedBytes(threadId);
+            min = Math.min(min, threads.getThreadAllocatedBytes(threadId) - before);
+        }
+        return min;
+    }
+}
@@ -0,0 +1,173 @@
+package com.clevergump.progresscircle.library;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * 在关键百分比处把圆绘制到 {@link RecordingCanvas} 上, 和基准文件中记录的绘制操作逐行对比.
+ * <p>
+ * Robolectric 不会真正地光栅化, 所以基准文件记录的是绘制操作及其参数, 而不是像素. 缓存, 精灵图这类优化只要绘制操作相同,
+ * 画出来的像素也就相同. 基准文件保存在 src/test/resources/golden/ 中, 缺少基准文件时测试失败.
+ * 有意修改了绘制效果之后, 通过 ./gradlew :library:testDebugUnitTest -PrecordGolden 重新录制所有基准文件,
+ * 检查无误后和代码一起提交.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class GoldenOpLogTest {
+
+    private static final File GOLDEN_DIR = new File("src/test/resources/golden");
+    // 为 true 时把本次的结果写入基准文件, 而不是和基准文件对比.
+    private static final boolean RECORD = Boolean.getBoolean("recordGolden");
+    private static final int[] SIZES = {48, 100};
+    private static final int[] KEY_PERCENTS = {0, 1, 25, 50, 75, 99, 100};
+
+    @Test
+    public void normalMode_matchesGoldenLogs() throws Exception {
+        for (int size : SIZES) {
+            CountingProgressCircle circle = CountingProgressCircle.attach(size);
+            for (int percent : KEY_PERCENTS) {
+                circle.setProgress(percent, 100);
+                assertGolden("normal_" + size + "_" + percent, record(circle));
+            }
+            // 总大小未知. Robolectric 中帧回调会立即执行, 旋转动画会一直执行下去, 所以先暂停主线程,
+            // 让扇形停在起始角度, 录制之后退出旋转模式再恢复.
+            ShadowLooper.pauseMainLooper();
+            circle.setProgress(0, 0);
+            assertGolden("normal_" + size + "_indeterminate", record(circle));
+            circle.setProgress(0, 100);
+            ShadowLooper.unPauseMainLooper();
+        }
+    }
+
+    @Test
+    @Config(shadows = ShadowRecordingPicture.class)
+    public void staticLayerModes_matchGoldenLogs() throws Exception {
+        assertStaticLayerMatchesGolden(ProgressCircle.STATIC_LAYER_PICTURE, "drawPicture");
+        assertStaticLayerMatchesGolden(ProgressCircle.STATIC_LAYER_BITMAP, "drawBitmap(");
+    }
+
+    @Test
+    public void spriteFrames_matchDirectDrawing() throws Exception {
+        for (int size : SIZES) {
+            CountingProgressCircle circle = CountingProgressCircle.attach(size);
+            ProgressCircleStyle style = circle.getStyle();
+            CircleGeometry geometry = style.obtainGeometry(size, size);
+            for (int percent = 0; percent <= 100; percent++) {
+                circle.setProgress(percent, 100);
+                RecordingCanvas canvas = new RecordingCanvas();
+                canvas.startLog();
+                SpriteAtlas.drawFrame(canvas, geometry, style, percent);
+                assertEquals("size " + size + ", " + percent + "%", record(circle), canvas.getLog());
+            }
+        }
+    }
+
+    @Test
+    public void spriteMode_copiesOneDistinctFramePerPercent() throws Exception {
+        for (int size : SIZES) {
+            CountingProgressCircle circle = CountingProgressCircle.attach(size);
+            circle.setRenderMode(ProgressCircle.RENDER_MODE_SPRITE);
+            Set<String> logs = new HashSet<String>();
+            for (int percent = 0; percent <= 100; percent++) {
+                circle.setProgress(percent, 100);
+                String log = record(circle);
+                assertTrue(log, log.startsWith("drawBitmap(") && log.indexOf('\n') == log.length() - 1);
+                logs.add(log);
+            }
+            assertEquals(101, logs.size());
+        }
+    }
+
+    /**
+     * 使用静态图层时, 每一帧的第一个操作是画出图层. 把它替换成图层中的内容之后, 应该和直接绘制的基准文件相同.
+     * Picture 中的内容通过 {@link ShadowRecordingPicture} 读取; Bitmap 中的像素无法读取, 改为把图层的绘制者画到
+     * {@link RecordingCanvas} 上.
+     *
+     * @param mode    静态图层的缓存方式
+     * @param layerOp 画出图层的操作的开头
+     */
+    private static void assertStaticLayerMatchesGolden(int mode, String layerOp) throws IOException {
+        // 基准文件只由直接绘制的结果录制.
+        if (RECORD) {
+            return;
+        }
+        for (int size : SIZES) {
+            CountingProgressCircle circle = CountingProgressCircle.attach(size);
+            circle.setStaticLayerMode(mode);
+            CircleGeometry geometry = circle.getStyle().obtainGeometry(size, size);
+            RecordingCanvas painterCanvas = new RecordingCanvas();
+            painterCanvas.startLog();
+            ProgressCircleDrawable.STATIC_LAYER_PAINTER.drawStaticContent(painterCanvas, geometry, 255, null);
+            for (int percent : KEY_PERCENTS) {
+                circle.setProgress(percent, 100);
+                RecordingCanvas canvas = new RecordingCanvas();
+                canvas.startLog();
+                circle.drawFrame(canvas);
+                String log = canvas.getLog();
+                String name = "normal_" + size + "_" + percent;
+                assertTrue(name + ": " + log, log.startsWith(layerOp));
+                String layerLog = canvas.getLastPicture() != null
+                        ? ShadowRecordingPicture.getLog(canvas.getLastPicture()) : painterCanvas.getLog();
+                assertGolden(name, layerLog + log.substring(log.indexOf('\n') + 1));
+            }
+        }
+    }
+
+    private static String record(CountingProgressCircle circle) {
+        RecordingCanvas canvas = new RecordingCanvas();
+        canvas.startLog();
+        circle.drawFrame(canvas);
+        return canvas.getLog();
+    }
+
+    private static void assertGolden(String name, String log) throws IOException {
+        File file = new File(GOLDEN_DIR, name + ".txt");
+        if (RECORD) {
+            GOLDEN_DIR.mkdirs();
+            write(file, log);
+            return;
+        }
+        assertTrue("Missing golden op log " + file.getPath() + ", record it with -PrecordGolden", file.exists());
+        assertEquals(name, read(file), log);
+    }
+
+    private static String read(File file) throws IOException {
+        Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+        try {
+            StringBuilder sb = new StringBuilder();
+            char[] buffer = new char[1024];
+            int count;
+            while ((count = reader.read(buffer)) != -1) {
+                sb.append(buffer, 0, count);
+            }
+            return sb.toString();
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static void write(File file, String content) throws IOException {
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.clevergump.progresscircle.library;
+
+import android.graphics.Bitmap;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import static org.junit.Assert.*;
+
+/**
+ * 检查通知的限速, 被丢弃的帧的补发, 以及帧缓存和复用池.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ProgressNotificationRendererTest {
+
+    private static final int SIZE = 48;
+
+    @Test
+    public void nextUpdate_rateLimitsAndFlushesDroppedFrame() throws Exception {
+        ProgressNotificationRenderer renderer = new ProgressNotificationRenderer(RuntimeEnvironment.application, SIZE);
+        assertNotNull(renderer.nextUpdate(0, 100));
+        assertEquals(-1, renderer.getPendingUpdateDelay());
+        // 画面没有变化.
+        assertNull(renderer.nextUpdate(0, 100));
+        // 距离上一次更新不到最短间隔, 记住这一帧.
+        assertNull(renderer.nextUpdate(10, 100));
+        assertNull(renderer.nextUpdate(20, 100));
+        assertTrue(renderer.getPendingUpdateDelay() > 0);
+        assertNull(renderer.flushPendingUpdate());
+
+        ShadowLooper.idleMainLooper(ProgressNotificationRenderer.DEF_MIN_UPDATE_INTERVAL_MS);
+        assertEquals(0, renderer.getPendingUpdateDelay());
+        Bitmap flushed = renderer.flushPendingUpdate();
+        assertSame(renderer.render(20, 100), flushed);
+        assertNull(renderer.flushPendingUpdate());
+        assertEquals(-1, renderer.getPendingUpdateDelay());
+
+        // 100% 总是立即返回.
+        assertNotNull(renderer.nextUpdate(100, 100));
+        // 回到上一次更新的画面时, 之前记住的帧不再补发.
+        ShadowLooper.idleMainLooper(ProgressNotificationRenderer.DEF_MIN_UPDATE_INTERVAL_MS);
+        assertNotNull(renderer.nextUpdate(50, 100));
+        assertNull(renderer.nextUpdate(60, 100));
+        assertNull(renderer.nextUpdate(50, 100));
+        ShadowLooper.idleMainLooper(ProgressNotificationRenderer.DEF_MIN_UPDATE_INTERVAL_MS);
+        assertNull(renderer.flushPendingUpdate());
+    }
+
+    @Test
+    public void evictedFrames_areReusedFromPool() throws Exception {
+        ProgressNotificationRenderer renderer = new ProgressNotificationRenderer(RuntimeEnvironment.application,
+                SIZE, ProgressCircleStyle.getDefault(RuntimeEnvironment.application), 1);
+        Bitmap first = renderer.render(0, 100);
+        assertSame(first, renderer.render(0, 100));
+        Bitmap second = renderer.render(1, 100);
+        assertNotSame(first, second);
+        // 第一帧被移出缓存后放入复用池, 下一个新的帧直接复用它.
+        assertSame(first, renderer.render(2, 100));
+        assertSame(second, renderer.render(3, 100));
+    }
+
+    @Test
+    public void release_dropsCachedAndPooledFrames() throws Exception {
+        ProgressNotificationRenderer renderer = new ProgressNotificationRenderer(RuntimeEnvironment.application,
+                SIZE, ProgressCircleStyle.getDefault(RuntimeEnvironment.application), 1);
+        Bitmap first = renderer.render(0, 100);
+        Bitmap second = renderer.render(1, 100);
+        renderer.release();
+        Bitmap afterRelease = renderer.render(1, 100);
+        assertNotSame(first, afterRelease);
+        assertNotSame(second, afterRelease);
+        assertEquals(SIZE, afterRelease.getWidth());
+        // 释放之后仍然可以继续使用, 缓存重新生效.
+        assertSame(afterRelease, renderer.render(1, 100));
+    }
+}
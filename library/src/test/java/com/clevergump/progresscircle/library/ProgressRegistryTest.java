@@ -0,0 +1,66 @@
+package com.clevergump.progresscircle.library;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.*;
+
+/**
+ * 检查控件订阅, 重新订阅以及键被移除之后进度登记表和控件两侧的订阅信息.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ProgressRegistryTest {
+
+    @Test
+    public void bind_unknownKey_doesNotRegister() throws Exception {
+        ProgressRegistry registry = new ProgressRegistry(1);
+        CountingProgressCircle circle = CountingProgressCircle.attach(48);
+        circle.setProgress(30, 100);
+        assertFalse(registry.bind(circle, "a"));
+        assertFalse(registry.contains("a"));
+        assertNull(circle.getRegistryBinding());
+        assertEquals(0, circle.getProgress());
+        // 唯一的位置没有被占用.
+        assertTrue(registry.update("b", 1, 2));
+    }
+
+    @Test
+    public void rebind_displacesPreviousCircle() throws Exception {
+        ProgressRegistry registry = new ProgressRegistry(4);
+        CountingProgressCircle first = CountingProgressCircle.attach(48);
+        CountingProgressCircle second = CountingProgressCircle.attach(48);
+        registry.update("a", 20, 100);
+        registry.update("b", 60, 100);
+
+        assertTrue(registry.bind(first, "a"));
+        assertEquals(20, first.getProgress());
+        // 重新订阅其他的键后立即显示新的键的进度, 旧的键的更新不再影响它.
+        assertTrue(registry.bind(first, "b"));
+        assertEquals(60, first.getProgress());
+        registry.update("a", 40, 100);
+        assertEquals(60, first.getProgress());
+
+        assertTrue(registry.bind(second, "b"));
+        assertNull(first.getRegistryBinding());
+        registry.update("b", 80, 100);
+        assertEquals(80, second.getProgress());
+        assertEquals(60, first.getProgress());
+    }
+
+    @Test
+    public void remove_unbindsOnNextPullAndKeepsProgress() throws Exception {
+        ProgressRegistry registry = new ProgressRegistry(1);
+        CountingProgressCircle circle = CountingProgressCircle.attach(48);
+        registry.update("a", 50, 100);
+        registry.bind(circle, "a");
+        assertTrue(registry.remove("a"));
+        // 同一个位置被新的键复用后, 代数已经变化, 控件读取时取消订阅而不是显示新的键的进度.
+        registry.update("b", 90, 100);
+        registry.pull(circle);
+        assertNull(circle.getRegistryBinding());
+        assertEquals(50, circle.getProgress());
+    }
+}
@@ -0,0 +1,151 @@
+package com.clevergump.progresscircle.library;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Picture;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+import java.util.Locale;
+
+/**
+ * 不真正绘制, 只记录绘制操作的 Canvas.
+ * <p>
+ * 默认只对绘制操作计数, 计数时不会创建任何对象, 可以用于统计 onDraw() 的内存分配. 调用 {@link #startLog()} 之后,
+ * 还会把每个操作及其参数按固定格式记录为一行文字, 用于和基准文件对比.
+ */
+class RecordingCanvas extends Canvas {
+
+    // 绘制操作 (不包括 save, translate 等) 的次数
+    private int mDrawCount;
+    // 每个操作一行的记录, 为 null 时不记录.
+    private StringBuilder mLog;
+    // 最近一次画出的 Picture
+    private Picture mLastPicture;
+
+    /**
+     * 开始记录每个操作的文字, 之前的记录会被清除.
+     */
+    void startLog() {
+        mLog = new StringBuilder();
+    }
+
+    /**
+     * 获取记录的文字.
+     *
+     * @return
+     */
+    String getLog() {
+        return mLog == null ? "" : mLog.toString();
+    }
+
+    /**
+     * 获取最近一次画出的 Picture, 没有时返回 null.
+     *
+     * @return
+     */
+    Picture getLastPicture() {
+        return mLastPicture;
+    }
+
+    int getDrawCount() {
+        return mDrawCount;
+    }
+
+    void resetDrawCount() {
+        mDrawCount = 0;
+    }
+
+    @Override
+    public boolean isHardwareAccelerated() {
+        return false;
+    }
+
+    @Override
+    public int save() {
+        log("save");
+        return 1;
+    }
+
+    @Override
+    public void restoreToCount(int saveCount) {
+        log("restoreToCount");
+    }
+
+    @Override
+    public void translate(float dx, float dy) {
+        if (mLog != null) {
+            log(String.format(Locale.US, "translate(%.2f, %.2f)", dx, dy));
+        }
+    }
+
+    @Override
+    public void drawCircle(float cx, float cy, float radius, Paint paint) {
+        mDrawCount++;
+        if (mLog != null) {
+            log(String.format(Locale.US, "drawCircle(%.2f, %.2f, %.2f) %s", cx, cy, radius, describe(paint)));
+        }
+    }
+
+    @Override
+    public void drawArc(RectF oval, float startAngle, float sweepAngle, boolean useCenter, Paint paint) {
+        mDrawCount++;
+        if (mLog != null) {
+            log(String.format(Locale.US, "drawArc([%.2f, %.2f, %.2f, %.2f], %.2f, %.2f, %b) %s",
+                    oval.left, oval.top, oval.right, oval.bottom, startAngle, sweepAngle, useCenter, describe(paint)));
+        }
+    }
+
+    @Override
+    public void drawText(char[] text, int index, int count, float x, float y, Paint paint) {
+        mDrawCount++;
+        if (mLog != null) {
+            log(String.format(Locale.US, "drawText(\"%s\", %.2f, %.2f) %s",
+                    new String(text, index, count), x, y, describe(paint)));
+        }
+    }
+
+    @Override
+    public void drawText(String text, float x, float y, Paint paint) {
+        mDrawCount++;
+        if (mLog != null) {
+            log(String.format(Locale.US, "drawText(\"%s\", %.2f, %.2f) %s", text, x, y, describe(paint)));
+        }
+    }
+
+    @Override
+    public void drawBitmap(Bitmap bitmap, Rect src, Rect dst, Paint paint) {
+        mDrawCount++;
+        if (mLog != null) {
+            log(String.format(Locale.US, "drawBitmap(%dx%d, %s, %s)",
+                    bitmap.getWidth(), bitmap.getHeight(), src.toShortString(), dst.toShortString()));
+        }
+    }
+
+    @Override
+    public void drawBitmap(Bitmap bitmap, float left, float top, Paint paint) {
+        mDrawCount++;
+        if (mLog != null) {
+            log(String.format(Locale.US, "drawBitmap(%dx%d, %.2f, %.2f)", bitmap.getWidth(), bitmap.getHeight(), left, top));
+        }
+    }
+
+    @Override
+    public void drawPicture(Picture picture) {
+        mDrawCount++;
+        mLastPicture = picture;
+        log("drawPicture");
+    }
+
+    private void log(String op) {
+        if (mLog != null) {
+            mLog.append(op).append('\n');
+        }
+    }
+
+    private static String describe(Paint paint) {
+        return String.format(Locale.US, "color=#%08x style=%s stroke=%.2f textSize=%.2f",
+                paint.getColor(), paint.getStyle(), paint.getStrokeWidth(), paint.getTextSize());
+    }
+}
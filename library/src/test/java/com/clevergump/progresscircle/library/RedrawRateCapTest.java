@@ -0,0 +1,61 @@
+package com.clevergump.progresscircle.library;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class RedrawRateCapTest {
+
+    @After
+    public void tearDown() throws Exception {
+        ProgressCircle.setLowPowerHint(false);
+    }
+
+    @Test
+    public void cappedCircle_coalescesUpdatesButFlushesFinalStates() throws Exception {
+        CountingProgressCircle circle = CountingProgressCircle.attach(100);
+        circle.setMaxRedrawRate(10);
+        assertCappedAt100Millis(circle);
+    }
+
+    @Test
+    public void lowPowerHint_usesLowPowerCap() throws Exception {
+        CountingProgressCircle circle = CountingProgressCircle.attach(100);
+        circle.setLowPowerMaxRedrawRate(10);
+        ProgressCircle.setLowPowerHint(true);
+        assertCappedAt100Millis(circle);
+    }
+
+    private static void assertCappedAt100Millis(CountingProgressCircle circle) {
+        RecordingCanvas canvas = new RecordingCanvas();
+        // 保证距离上一次刷新已经超过了间隔.
+        ShadowLooper.idleMainLooper(1000);
+        circle.setProgress(1, 100);
+        assertEquals(1, circle.getInvalidateCount());
+        circle.drawFrame(canvas);
+
+        for (int i = 2; i < 100; i++) {
+            circle.setProgress(i, 100);
+        }
+        assertEquals(1, circle.getInvalidateCount());
+
+        // 间隔结束时把期间的更新合并成一次刷新.
+        ShadowLooper.idleMainLooper(100);
+        assertEquals(2, circle.getInvalidateCount());
+        circle.drawFrame(canvas);
+
+        // 达到最大进度和清零都立即刷新.
+        circle.setProgress(100, 100);
+        assertEquals(3, circle.getInvalidateCount());
+        circle.drawFrame(canvas);
+        circle.resetProgress();
+        assertEquals(4, circle.getInvalidateCount());
+    }
+}
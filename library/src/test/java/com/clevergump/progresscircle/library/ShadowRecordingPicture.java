@@ -0,0 +1,45 @@
+package com.clevergump.progresscircle.library;
+
+import android.graphics.Canvas;
+import android.graphics.Picture;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.internal.ShadowExtractor;
+
+/**
+ * Robolectric 3.0 没有 {@link Picture} 的实现, 创建时会抛出异常. 这个 shadow 把录制的内容记录到 {@link RecordingCanvas} 中,
+ * 用于检查静态图层录制的绘制操作.
+ */
+@Implements(Picture.class)
+public class ShadowRecordingPicture {
+
+    // 最近一次录制使用的画布
+    private RecordingCanvas mCanvas;
+
+    // Picture() 委托给这个构造方法, 原来的实现在本地对象为0时会抛出异常.
+    public void __constructor__(long nativePicture) {
+    }
+
+    @Implementation
+    public Canvas beginRecording(int width, int height) {
+        mCanvas = new RecordingCanvas();
+        mCanvas.startLog();
+        return mCanvas;
+    }
+
+    @Implementation
+    public void endRecording() {
+    }
+
+    /**
+     * 获取 Picture 中录制的绘制操作.
+     *
+     * @param picture
+     * @return 还没有录制过时返回空字符串.
+     */
+    static String getLog(Picture picture) {
+        ShadowRecordingPicture shadow = (ShadowRecordingPicture) ShadowExtractor.extract(picture);
+        return shadow.mCanvas == null ? "" : shadow.mCanvas.getLog();
+    }
+}
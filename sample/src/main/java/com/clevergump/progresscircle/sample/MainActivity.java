@@ -1,20 +1,15 @@
 package com.clevergump.progresscircle.sample;
 
-import android.graphics.Bitmap;
 import android.os.Bundle;
 import android.support.v7.app.AppCompatActivity;
 import android.view.View;
 import android.widget.ImageView;
 
 import com.clevergump.progresscircle.library.ProgressCircle;
+import com.clevergump.progresscircle.uil.ProgressCircleLoadingListener;
 import com.nostra13.universalimageloader.core.DisplayImageOptions;
 import com.nostra13.universalimageloader.core.ImageLoader;
-import com.nostra13.universalimageloader.core.assist.FailReason;
 import com.nostra13.universalimageloader.core.assist.ImageScaleType;
-import com.nostra13.universalimageloader.core.listener.ImageLoadingProgressListener;
-import com.nostra13.universalimageloader.core.listener.SimpleImageLoadingListener;
-
-import java.lang.ref.WeakReference;
 
 public class MainActivity extends AppCompatActivity {
 
@@ -22,8 +17,8 @@ public class MainActivity extends AppCompatActivity {
     private ImageView mIv;
     private ProgressCircle mCircle;
     private DisplayImageOptions mDisplayImageOptions;
-    private ImageLoadingListenterImpl mLoadingListener;
-    private ImageLoadingProgressListenerImpl mProgressListener;
+    // 同时接收图片的加载过程和加载进度, 显示在 mCircle 上.
+    private ProgressCircleLoadingListener mLoadingListener;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -38,6 +33,13 @@ public class MainActivity extends AppCompatActivity {
         mCircle = (ProgressCircle) findViewById(R.id.progress_circle);
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        // 监听器引用了 mCircle, 不再需要加载进度时取消加载任务, 避免 Activity 在加载结束之前一直被引用.
+        ImageLoader.getInstance().cancelDisplayTask(mIv);
+    }
+
     private void initData() {
         mDisplayImageOptions = new DisplayImageOptions.Builder()
                 .showImageOnLoading(R.mipmap.ic_loading)
@@ -48,8 +50,7 @@ public class MainActivity extends AppCompatActivity {
                 .imageScaleType(ImageScaleType.IN_SAMPLE_POWER_OF_2)
                 .build();
 
-        mLoadingListener = new ImageLoadingListenterImpl(MainActivity.this);
-        mProgressListener = new ImageLoadingProgressListenerImpl(MainActivity.this);
+        mLoadingListener = new ProgressCircleLoadingListener(mCircle);
     }
 
     /**
@@ -58,7 +59,7 @@ public class MainActivity extends AppCompatActivity {
      * @param view
      */
     public void startLoadingImages(View view) {
-        ImageLoader.getInstance().displayImage(IMAGE_URI, mIv, mDisplayImageOptions, mLoadingListener, mProgressListener);
+        ImageLoader.getInstance().displayImage(IMAGE_URI, mIv, mDisplayImageOptions, mLoadingListener, mLoadingListener);
     }
 
     /**
@@ -70,74 +71,4 @@ public class MainActivity extends AppCompatActivity {
         ImageLoader.getInstance().clearMemoryCache();
         ImageLoader.getInstance().clearDiskCache();
     }
-
-    /**
-     * 图片加载过程的监听器
-     */
-    private static class ImageLoadingListenterImpl extends SimpleImageLoadingListener {
-        private final WeakReference<MainActivity> mWeakRefOuterActivity;
-
-        public ImageLoadingListenterImpl(MainActivity outerActivity) {
-            mWeakRefOuterActivity = new WeakReference<MainActivity>(outerActivity);
-        }
-
-        @Override
-        public void onLoadingStarted(String imageUri, View view) {
-            showCircle();
-        }
-
-        @Override
-        public void onLoadingComplete(String imageUri, View view, Bitmap loadedImage) {
-            hideCicle();
-        }
-
-        @Override
-        public void onLoadingCancelled(String imageUri, View view) {
-            hideCicle();
-        }
-
-        @Override
-        public void onLoadingFailed(String imageUri, View view, FailReason failReason) {
-            hideCicle();
-        }
-
-        /**
-         * 显示加载进度的圆
-         */
-        private void showCircle() {
-            MainActivity outerActivity = mWeakRefOuterActivity.get();
-            if (outerActivity != null) {
-                outerActivity.mCircle.setVisibility(View.VISIBLE);
-            }
-        }
-
-        /**
-         * 隐藏加载进度的圆
-         */
-        private void hideCicle() {
-            MainActivity outerActivity = mWeakRefOuterActivity.get();
-            if (outerActivity != null) {
-                outerActivity.mCircle.setVisibility(View.GONE);
-            }
-        }
-    }
-
-    /**
-     * 图片加载进度的监听器
-     */
-    private static class ImageLoadingProgressListenerImpl implements ImageLoadingProgressListener {
-        private final WeakReference<MainActivity> mWeakRefOuterActivity;
-
-        public ImageLoadingProgressListenerImpl(MainActivity outerActivity) {
-            mWeakRefOuterActivity = new WeakReference<MainActivity>(outerActivity);
-        }
-
-        @Override
-        public void onProgressUpdate(String imageUri, View view, int current, int total) {
-            MainActivity outerActivity = mWeakRefOuterActivity.get();
-            if (outerActivity != null) {
-                outerActivity.mCircle.setProgress(current, total);
-            }
-        }
-    }
-}
\ No newline at end of file
+}